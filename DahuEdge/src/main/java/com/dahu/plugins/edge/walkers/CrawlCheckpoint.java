@@ -0,0 +1,271 @@
+package com.dahu.plugins.edge.walkers;
+
+import com.dahu.plugins.edge.walkers.storage.CrateLeafBatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * What a walker thread has done so far in a crawl unit - the crawl message it is working on, and the changes to the
+ * crate it has yet to make: folders and files to insert, nodes to delete, and the folder stamps of the folders it has
+ * finished listing. So if the Edge server stops part way through a unit, the walker can pick up where it was.
+ *
+ * A checkpoint is only written once every document for these changes has been posted to Vector, or is in the spill
+ * file, so after a restart the changes go straight into the crate and the documents are not posted again. The crawl
+ * message of an unfinished unit goes back on the crawl queue. The files it had found are in the crate, so they are
+ * seen as unchanged and not posted again. With folder_change_detection, the folders it had finished also have their
+ * stamps, so they are not even listed again - without it, they are listed, but nothing in them is posted.
+ *
+ * A finished unit keeps its checkpoint until the crate has saved the changes - until then, a crash would lose them.
+ *
+ * A checkpoint is written to a temporary file, forced to disk, then moved over the last one, so there is always
+ * one whole checkpoint to read. Each is a file of its own, named so checkpoints sort in the order they were started.
+ *
+ * Applying a checkpoint twice is harmless - each change sets a folder or file to a state, like the crate journal.
+ */
+
+public class CrawlCheckpoint {
+
+    public static final String SUFFIX = ".checkpoint";
+
+    private static final int MAGIC = 0x44434b31; // "DCK1"
+
+    // checkpoints sort by this, across threads and restarts
+    private static final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private final String message;
+    private final boolean isFinished;
+    private final Set<String> branches;
+    private final CrateLeafBatch leaves;
+    private final Set<String> deletes;
+    private final Map<String,Long> stamps;
+    private final Set<String> changed;
+
+    /**
+     * @param _message crawl message of the unit
+     * @param _isFinished true if the walker has finished the unit
+     * @param _branches folders to insert into the crate
+     * @param _leaves files to insert into the crate
+     * @param _deletes folders and files to delete from the crate
+     * @param _stamps folders listed, with their last modified date
+     * @param _changed folders listed in which files were inserted, updated or deleted
+     */
+    public CrawlCheckpoint(String _message, boolean _isFinished, Set<String> _branches, CrateLeafBatch _leaves, Set<String> _deletes, Map<String,Long> _stamps, Set<String> _changed){
+        message = _message;
+        isFinished = _isFinished;
+        branches = _branches;
+        leaves = _leaves;
+        deletes = _deletes;
+        stamps = _stamps;
+        changed = _changed;
+    }
+
+    public String getMessage(){
+        return message;
+    }
+
+    public boolean isFinished(){
+        return isFinished;
+    }
+
+    public Set<String> getBranches(){
+        return branches;
+    }
+
+    public CrateLeafBatch getLeaves(){
+        return leaves;
+    }
+
+    public Set<String> getDeletes(){
+        return deletes;
+    }
+
+    public Map<String,Long> getStamps(){
+        return stamps;
+    }
+
+    public Set<String> getChanged(){
+        return changed;
+    }
+
+    /**
+     * @param _dir folder for checkpoints
+     * @param _serviceName name of the walker service
+     * @param _threadNumber walker thread
+     * @return a file for the checkpoint of a new crawl unit - after any checkpoint of this service before it
+     */
+    public static File newFile(File _dir, String _serviceName, int _threadNumber){
+        return new File(_dir, String.format("%s-%d-%019d%s", _serviceName, _threadNumber, sequence.incrementAndGet(), SUFFIX));
+    }
+
+    /**
+     * @return the sequence number of the last checkpoint file handed out - every checkpoint file handed out after this
+     * call has a higher one, and so does every checkpoint file handed out after a restart of the Edge server
+     */
+    public static long getSequence(){
+        return sequence.get();
+    }
+
+    /**
+     * @param _dir folder for checkpoints
+     * @param _serviceName name of the walker service
+     * @return checkpoints of every thread of the service, in the order they were started
+     */
+    public static List<File> find(File _dir, String _serviceName){
+        return find(_dir, _serviceName, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param _dir folder for checkpoints
+     * @param _serviceName name of the walker service
+     * @param _upTo sequence number, from getSequence(), of the last checkpoint to find
+     * @return checkpoints of every thread of the service, up to _upTo, in the order they were started - so threads that
+     * are crawling already do not have the checkpoints of the units they are working on recovered under them
+     */
+    public static List<File> find(File _dir, String _serviceName, long _upTo){
+        File[] files = _dir.listFiles((dir, name) -> name.startsWith(_serviceName + "-") && name.endsWith(SUFFIX)
+                && name.substring(_serviceName.length() + 1).matches("\\d+-\\d{19}\\" + SUFFIX));
+        if (null == files){
+            return Collections.emptyList();
+        }
+        List<File> found = new ArrayList<>();
+        for (File file : files){
+            if (Long.parseLong(sequenceOf(file)) <= _upTo){
+                found.add(file);
+            }
+        }
+        found.sort((a, b) -> sequenceOf(a).compareTo(sequenceOf(b)));
+        return found;
+    }
+
+    private static String sequenceOf(File _file){
+        String name = _file.getName();
+        return name.substring(name.length() - SUFFIX.length() - 19, name.length() - SUFFIX.length());
+    }
+
+    /**
+     * Write the checkpoint to a file, replacing any checkpoint already there. Once this returns, the checkpoint is on disk
+     * @param _file file to write
+     * @throws IOException if the checkpoint cannot be written - the one already in the file, if any, is left as it was
+     */
+    public void write(File _file) throws IOException {
+        File dir = _file.getAbsoluteFile().getParentFile();
+        if (null != dir && ! dir.exists() && ! dir.mkdirs()){
+            throw new IOException("Unable to create folder " + dir.getAbsolutePath());
+        }
+        File tmp = new File(_file.getAbsolutePath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmp)){
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+            out.writeInt(MAGIC);
+            writeString(out, message);
+            out.writeBoolean(isFinished);
+            writeStrings(out, branches);
+            out.writeInt(leaves.size());
+            for (int i = 0; i < leaves.size(); i++){
+                writeString(out, leaves.getFolder(i));
+                writeString(out, leaves.getName(i));
+                out.writeLong(leaves.getLastModified(i));
+                out.writeLong(leaves.getSize(i));
+            }
+            writeStrings(out, deletes);
+            out.writeInt(stamps.size());
+            for (Map.Entry<String,Long> stamp : stamps.entrySet()){
+                writeString(out, stamp.getKey());
+                out.writeLong(stamp.getValue());
+            }
+            writeStrings(out, changed);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(tmp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param _file checkpoint file
+     * @return the checkpoint
+     * @throws IOException if the file cannot be read, or is not a checkpoint
+     */
+    public static CrawlCheckpoint read(File _file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file), 1 << 16))){
+            if (in.readInt() != MAGIC){
+                throw new IOException(_file.getPath() + " is not a crawl checkpoint");
+            }
+            String message = readString(in);
+            boolean isFinished = in.readBoolean();
+            Set<String> branches = readStrings(in);
+            CrateLeafBatch leaves = new CrateLeafBatch();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++){
+                // add() shares the folder string between files of the same folder, as the crate expects
+                leaves.add(readString(in), readString(in), in.readLong(), in.readLong());
+            }
+            Set<String> deletes = readStrings(in);
+            count = in.readInt();
+            Map<String,Long> stamps = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++){
+                stamps.put(readString(in), in.readLong());
+            }
+            Set<String> changed = readStrings(in);
+            return new CrawlCheckpoint(message, isFinished, branches, leaves, deletes, stamps, changed);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream _out, Set<String> _strings) throws IOException {
+        _out.writeInt(_strings.size());
+        for (String s : _strings){
+            writeString(_out, s);
+        }
+    }
+
+    private static Set<String> readStrings(DataInputStream _in) throws IOException {
+        int count = _in.readInt();
+        Set<String> strings = new HashSet<>(count * 2);
+        for (int i = 0; i < count; i++){
+            strings.add(readString(_in));
+        }
+        return strings;
+    }
+
+    // writeUTF can't take more than 64KB, and uses its own form of UTF-8
+    private static void writeString(DataOutputStream _out, String _s) throws IOException {
+        byte[] bytes = _s.getBytes(StandardCharsets.UTF_8);
+        _out.writeInt(bytes.length);
+        _out.write(bytes);
+    }
+
+    private static String readString(DataInputStream _in) throws IOException {
+        int length = _in.readInt();
+        if (length < 0){
+            throw new IOException("Bad string length in crawl checkpoint : " + length);
+        }
+        byte[] bytes = new byte[length];
+        _in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,142 @@
+package com.dahu.plugins.edge.walkers;
+
+import com.dahu.core.document.DOCUMENT_CONSTANTS;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * A message on a crawl queue - a folder to crawl, its depth below its root, and whether only the folder's own files
+ * and sub-folders need checking.
+ *
+ * Messages stay as the small JSON documents they have always been, eg {"id":"smb://server/share/folder","level":2},
+ * so messages already on a queue from before an upgrade can still be read. But rather than build or parse a tree for
+ * each message, they are written and read with a streaming generator and parser from one shared JsonFactory, which is
+ * thread-safe, so every walker thread uses the same one.
+ */
+
+public final class CrawlMessage {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final String id;
+    private final int level;
+    private final boolean isFolderOnly;
+
+    /**
+     * @param _id path to the folder to crawl
+     * @param _level depth of the folder below its root
+     * @param _isFolderOnly if true, check only the folder's own files and sub-folders, not everything below it
+     */
+    public CrawlMessage(String _id, int _level, boolean _isFolderOnly){
+        id = _id;
+        level = _level;
+        isFolderOnly = _isFolderOnly;
+    }
+
+    public String getId(){
+        return id;
+    }
+
+    public int getLevel(){
+        return level;
+    }
+
+    public boolean isFolderOnly(){
+        return isFolderOnly;
+    }
+
+    public String toJson(){
+        return toJson(id, level, isFolderOnly);
+    }
+
+    /**
+     * Write a crawl message, without creating a CrawlMessage for it
+     * @param _id path to the folder to crawl
+     * @param _level depth of the folder below its root
+     * @param _isFolderOnly if true, check only the folder's own files and sub-folders. Left out of the message if false
+     * @return the message, as JSON
+     */
+    public static String toJson(String _id, int _level, boolean _isFolderOnly){
+        StringWriter json = new StringWriter(_id.length() + 32);
+        try (JsonGenerator generator = JSON.createJsonGenerator(json)){
+            generator.writeStartObject();
+            generator.writeStringField(DOCUMENT_CONSTANTS.FIELDNAME_ID, _id);
+            generator.writeNumberField(WALKER_CONSTANTS.LEVEL, _level);
+            if (_isFolderOnly){
+                generator.writeBooleanField(WALKER_CONSTANTS.FOLDER_ONLY, true);
+            }
+            generator.writeEndObject();
+        } catch (IOException ioe){
+            // a StringWriter does not throw - this is only here because JsonGenerator says it might
+            throw new IllegalStateException("Unable to write crawl message for " + _id, ioe);
+        }
+        return json.toString();
+    }
+
+    /**
+     * Read a crawl message. Fields we don't know are skipped, so newer messages can still be read
+     * @param _json the message, as JSON
+     * @return the message, or null if it has no id or no level
+     * @throws IOException if the message is not valid JSON
+     */
+    public static CrawlMessage fromJson(String _json) throws IOException {
+        String id = null;
+        Integer level = null;
+        boolean isFolderOnly = false;
+        try (JsonParser parser = JSON.createJsonParser(_json)){
+            if (parser.nextToken() != JsonToken.START_OBJECT){
+                throw new IOException("Crawl message is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (DOCUMENT_CONSTANTS.FIELDNAME_ID.equals(field) && value == JsonToken.VALUE_STRING){
+                    id = parser.getText();
+                } else if (WALKER_CONSTANTS.LEVEL.equals(field) && value == JsonToken.VALUE_NUMBER_INT){
+                    level = parser.getIntValue();
+                } else if (WALKER_CONSTANTS.FOLDER_ONLY.equals(field)){
+                    isFolderOnly = value == JsonToken.VALUE_TRUE;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (null == id || null == level){
+            return null;
+        }
+        return new CrawlMessage(id, level, isFolderOnly);
+    }
+
+    /**
+     * A path from the crate, as a path we can open on the file-system - and so as it must be on the crawl queue
+     * @param _cratePath full path of a folder in the crate
+     * @return the path, without file:// or a trailing / - a linux path gets back the leading "/" the crate does not keep
+     */
+    public static String toFileSysPath(String _cratePath){
+        String path = _cratePath;
+        if (path.startsWith("file://")){
+            path = path.substring(7);
+        }
+        // If the path is for Windows, it should start with a drive letter, eg C:  - if it's linux, it needs a leading "/" to be inserted cos a Trie don't know the difference
+        if (! (path.indexOf(":")>0) && ! path.startsWith("/")  ){
+            path = "/" + path;
+        }
+        if (path.endsWith("/")){
+            path = path.substring(0,path.length()-1);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,136 @@
+package com.dahu.plugins.edge.walkers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Splits a crawl between several Edge nodes. Each node has its own crawl queue, and the list of crawl queues - one
+ * per node, the same on every node - defines the partitions. Every folder belongs to exactly one partition, and only
+ * the node that owns a folder lists it and keeps it in its crate, so each node's crate is the shard of the crawl for
+ * its own partition.
+ *
+ * A folder's partition is decided by its anchor - the first partition_depth segments of its path - so a folder and
+ * everything under it down to the anchor depth stays on one node. With the default depth of 4, everything under
+ * smb://server/share/dept/ goes to one node, and each top level folder of the share can go to a different one.
+ *
+ * Anchors are placed on a consistent hash ring, with many points per partition so the folders spread evenly. Adding
+ * or removing a node only moves the folders that hash to its points - about 1/N of them - rather than reshuffling
+ * the whole crawl.
+ */
+
+public class CrawlPartitioner {
+
+    public static final int DEFAULT_DEPTH = 4;
+    private static final int POINTS_PER_PARTITION = 128;
+
+    private final List<String> partitions;
+    private final int depth;
+    private final TreeMap<Long,Integer> ring = new TreeMap<>();
+
+    /**
+     * @param _partitions name of the crawl queue of each node, in the same order on every node
+     * @param _depth number of path segments that decide a folder's partition
+     */
+    public CrawlPartitioner(List<String> _partitions, int _depth){
+        partitions = Collections.unmodifiableList(new ArrayList<>(_partitions));
+        depth = Math.max(1, _depth);
+        for (int p = 0; p < partitions.size(); p++){
+            for (int i = 0; i < POINTS_PER_PARTITION; i++){
+                ring.put(hash(partitions.get(p) + "#" + i), p);
+            }
+        }
+    }
+
+    public List<String> getPartitions(){
+        return partitions;
+    }
+
+    public int getDepth(){
+        return depth;
+    }
+
+    /**
+     * @param _path path to a folder, in any of the forms the walker sees - eg smb://server/share/folder/, C:\data or file:///data
+     * @return index of the partition that owns the folder
+     */
+    public int partitionFor(String _path){
+        Map.Entry<Long,Integer> point = ring.ceilingEntry(hash(anchorFor(_path, depth)));
+        if (null == point){
+            point = ring.firstEntry(); // round the ring
+        }
+        return point.getValue();
+    }
+
+    /**
+     * @param _path path to a folder
+     * @return name of the crawl queue of the node that owns the folder
+     */
+    public String queueFor(String _path){
+        return partitions.get(partitionFor(_path));
+    }
+
+    /**
+     * The part of a path that decides its partition - the first _depth segments, with the forms of the same path
+     * (file:// or not, \ or /, trailing / or not) all giving the same anchor
+     * @param _path path to a folder
+     * @param _depth number of segments
+     * @return the anchor, segments joined with "/"
+     */
+    static String anchorFor(String _path, int _depth){
+        String path = _path.replace('\\', '/');
+        StringBuilder anchor = new StringBuilder(path.length());
+        int start = 0;
+        if (path.startsWith("file://")){
+            start = 7;
+        } else {
+            int scheme = path.indexOf("://");
+            if (scheme > 0){
+                anchor.append(path, 0, scheme + 1); // eg "smb:"
+                _depth--;
+                start = scheme + 3;
+            }
+        }
+        while (start < path.length() && _depth > 0){
+            int end = path.indexOf('/', start);
+            if (end < 0){
+                end = path.length();
+            }
+            if (end > start){
+                if (anchor.length() > 0){
+                    anchor.append('/');
+                }
+                anchor.append(path, start, end);
+                _depth--;
+            }
+            start = end + 1;
+        }
+        return anchor.toString();
+    }
+
+    // 64 bit FNV-1a, then mixed so that similar anchors land far apart on the ring
+    private static long hash(String _s){
+        long h = 0xcbf29ce484222325L;
+        for (byte b : _s.getBytes(StandardCharsets.UTF_8)){
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
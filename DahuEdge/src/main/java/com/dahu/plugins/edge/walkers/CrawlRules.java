@@ -0,0 +1,174 @@
+package com.dahu.plugins.edge.walkers;
+
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * The include/exclude rules of a walker, compiled once when the walker starts.
+ *
+ * - exclude file patterns are compiled to Patterns once. With more than a handful of patterns, they are also combined
+ *   into a single alternation so a path is tested against all of them in one pass
+ * - include and exclude types are looked up by extension in hash sets
+ * - every decision is remembered until the end of the current crawl unit, because the same path or name is
+ *   checked several times as a folder is crawled
+ *
+ * An instance belongs to one walker thread - it is not thread-safe.
+ */
+
+public class CrawlRules {
+
+    private static final int COMBINE_THRESHOLD = 4; // combine exclude patterns into one regex when there are more than this
+    private static final int MAX_REMEMBERED_DECISIONS = 200000; // don't let a huge crawl unit grow the memo without limit
+
+    private final List<Pattern> excludeFilePatterns = new ArrayList<>();
+    private Pattern combinedExcludePattern = null; // null if there are only a few patterns, or they cannot be combined
+    private final Set<String> includeTypes = new HashSet<>();
+    private final Set<String> excludeTypes = new HashSet<>();
+
+    private final Map<String,Boolean> decisions = new HashMap<>();
+
+    private final Logger logger;
+
+    /**
+     * @param _includeTypes file extensions to include - empty means all types are included
+     * @param _excludeTypes file extensions to exclude
+     * @param _excludeFiles regex patterns, matched against the whole path, for files and folders to exclude
+     * @param _logger logger for rejections and bad rules
+     */
+    public CrawlRules(Collection<String> _includeTypes, Collection<String> _excludeTypes, Collection<String> _excludeFiles, Logger _logger){
+        logger = _logger;
+        if (null != _includeTypes){
+            includeTypes.addAll(_includeTypes);
+        }
+        if (null != _excludeTypes){
+            excludeTypes.addAll(_excludeTypes);
+        }
+        if (null != _excludeFiles){
+            StringBuilder combined = new StringBuilder();
+            boolean canCombine = true;
+            for (String s : _excludeFiles){
+                try {
+                    excludeFilePatterns.add(Pattern.compile(s));
+                } catch (PatternSyntaxException pse){
+                    logger.warn("Invalid regex pattern in crawler EXCLUDE FILE PATTERN list :- " + s);
+                    continue;
+                }
+                // back-references are numbered across the whole regex, so they would break inside a combined pattern
+                if (s.matches(".*\\\\([1-9]|k<).*")){
+                    canCombine = false;
+                }
+                if (combined.length() > 0){
+                    combined.append("|");
+                }
+                combined.append("(?:").append(s).append(")");
+            }
+            if (canCombine && excludeFilePatterns.size() > COMBINE_THRESHOLD){
+                try {
+                    combinedExcludePattern = Pattern.compile(combined.toString());
+                } catch (PatternSyntaxException pse){
+                    logger.debug("Unable to combine exclude file patterns into one regex - testing them one at a time");
+                }
+            }
+        }
+    }
+
+    /**
+     * Check a file or folder against all the rules. The answer is remembered until clearDecisions() is called
+     * @param _name a file name or a full path
+     * @return true if the file name/path passes checks for file name and file extension
+     */
+    public boolean accept(String _name){
+        Boolean decision = decisions.get(_name);
+        if (null == decision){
+            String path = _name;
+            if (path.endsWith("/")){
+                path = path.substring(0,path.length()-1);
+            }
+            decision = acceptByFileName(path) && acceptByFileType(path);
+            if (decisions.size() >= MAX_REMEMBERED_DECISIONS){
+                decisions.clear();
+            }
+            decisions.put(_name, decision);
+        }
+        return decision;
+    }
+
+    /**
+     * Forget the decisions made so far - called at the end of each crawl unit
+     */
+    public void clearDecisions(){
+        decisions.clear();
+    }
+
+    /**
+     * Check whether this file path does not match any exclude pattern
+     * @param _path - full path to a file
+     * @return true if this file can be indexed - false if it should be excluded
+     */
+    public boolean acceptByFileName(String _path){
+        if (null != combinedExcludePattern){
+            if (! combinedExcludePattern.matcher(_path).matches()){
+                return true;
+            }
+            if (! logger.isDebugEnabled()){
+                return false;
+            }
+            // fall through to find the rule that rejected it, for the log
+        }
+        for (Pattern p : excludeFilePatterns){
+            if (p.matcher(_path).matches()){
+                logger.debug("Rejecting file due to file name exclusions - " + _path + " failed against rule " + p.pattern());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether this file should be excluded based in its extension
+     * @param _path - full path to a file
+     * @return true if this file type should be sent to be indexed - false if it should be skipped
+     */
+    public boolean acceptByFileType(String _path){
+        // filtering rules:
+        // - includes are applied first, and then any exclude rules
+        // - includeType of NULL is assumed to be all fileTypes
+        // -  empty includeType can be used to override a default includeType to include all files.
+        int dot = _path.lastIndexOf(".");
+        if (dot != -1 && dot+1 < _path.length()) {
+            String extension = _path.substring(dot+1);
+
+            // Check if it's one we can include - if there are no include Types set, then all types are good
+            if (includeTypes.size() == 0 || includeTypes.contains(extension)){
+                if (! excludeTypes.contains(extension)){
+                    return true;
+                } else {
+                    logger.debug("filterFileTypes exclude list doesn't like extension, \"" + extension + "\" : excluding " + _path);
+                    return false;
+                }
+            } else {
+                logger.debug("filterFileTypes include list doesn't like extension, \"" + extension + "\" : excluding " + _path);
+                return false;
+            }
+        }
+        // Default - if a file path does not have an extension, we include it
+        return true;
+    }
+}
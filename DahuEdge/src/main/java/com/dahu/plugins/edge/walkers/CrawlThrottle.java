@@ -0,0 +1,143 @@
+package com.dahu.plugins.edge.walkers;
+
+import com.dahu.def.types.MQueue;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Controls how long a walker thread waits before it processes the next folder from the crawl queue.
+ *
+ * With no target queue depth configured, the throttle is a fixed delay (crawl_delay_millis) - the original behaviour.
+ *
+ * With a target queue depth, the delay is driven by the depth of the Vector queue that the walker feeds :
+ * if Vector (and the indexers behind it) are not keeping up, the queue grows beyond the target and the delay is doubled,
+ * up to a maximum. Once the queue has drained below half of the target, the delay is halved, down to zero.
+ * Slow indexing shows up as a growing Vector queue, so this is the signal we steer on.
+ *
+ * There is one throttle per service, shared by all of its threads, so they all slow down and speed up together.
+ * It is kept while the service's Vector queue and settings stay the same - if the service is restarted with a
+ * different queue or settings, the first thread to ask gets a new throttle.
+ */
+
+public class CrawlThrottle {
+
+    private static final Map<String,CrawlThrottle> throttles = new ConcurrentHashMap<>();
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000; // don't ask the broker for the queue depth more than once a second
+    private static final long MIN_STEP_MILLIS = 10; // smallest non-zero delay when we start slowing down
+
+    private final MQueue queue;
+    private final long initialDelay;
+    private final long targetQueueDepth; // 0 => fixed delay
+    private final long maxDelay;
+    private final Logger logger;
+
+    private volatile long currentDelay;
+    private volatile long lastQueueDepth = -1;
+    private long lastSampleTime = 0;
+
+    private CrawlThrottle(MQueue _queue, long _initialDelay, long _targetQueueDepth, long _maxDelay, Logger _logger){
+        queue = _queue;
+        initialDelay = _initialDelay;
+        currentDelay = _initialDelay;
+        targetQueueDepth = _targetQueueDepth;
+        maxDelay = _maxDelay;
+        logger = _logger;
+    }
+
+    /**
+     * Get the throttle for a service, creating it the first time one of the service's threads asks for it, or if the
+     * queue or settings have changed since it was created
+     * @param _serviceName name of the walker service
+     * @param _queue the Vector queue that the walker posts documents to
+     * @param _initialDelay delay in millis to start with - this is the fixed delay if no target queue depth is set
+     * @param _targetQueueDepth number of messages we are happy to have waiting on the Vector queue. 0 or less means use a fixed delay
+     * @param _maxDelay longest delay in millis that the throttle will apply
+     * @param _logger logger to report changes of speed
+     * @return the throttle for this service
+     */
+    public static CrawlThrottle getThrottle(String _serviceName, MQueue _queue, long _initialDelay, long _targetQueueDepth, long _maxDelay, Logger _logger){
+        return throttles.compute(_serviceName, (k, existing) -> null != existing && existing.hasSettings(_queue, _initialDelay, _targetQueueDepth, _maxDelay)
+                ? existing : new CrawlThrottle(_queue, _initialDelay, _targetQueueDepth, _maxDelay, _logger));
+    }
+
+    private boolean hasSettings(MQueue _queue, long _initialDelay, long _targetQueueDepth, long _maxDelay){
+        return queue == _queue && initialDelay == _initialDelay && targetQueueDepth == _targetQueueDepth && maxDelay == _maxDelay;
+    }
+
+    /**
+     * Wait before processing the next folder. In adaptive mode the delay is recalculated from the Vector queue depth first.
+     */
+    public void pause(){
+        if (isAdaptive()){
+            adjust();
+        }
+        long delay = currentDelay;
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized void adjust(){
+        long now = System.currentTimeMillis();
+        if (now - lastSampleTime < SAMPLE_INTERVAL_MILLIS){
+            return;
+        }
+        lastSampleTime = now;
+
+        long depth;
+        try {
+            depth = queue.getcurrentMessageCount();
+        } catch (Exception e){
+            logger.debug("Crawl throttle unable to read depth of queue " + queue.getQueueName() + " : " + e.getLocalizedMessage());
+            return;
+        }
+        lastQueueDepth = depth;
+
+        long newDelay = currentDelay;
+        if (depth > targetQueueDepth){
+            newDelay = Math.min(maxDelay, Math.max(MIN_STEP_MILLIS, currentDelay * 2));
+        } else if (depth < targetQueueDepth / 2){
+            newDelay = currentDelay / 2;
+            if (newDelay < MIN_STEP_MILLIS){
+                newDelay = 0;
+            }
+        }
+        if (newDelay != currentDelay){
+            logger.debug("Crawl throttle : " + queue.getQueueName() + " depth = " + depth + " target = " + targetQueueDepth + " : delay changed from " + currentDelay + "ms to " + newDelay + "ms");
+            currentDelay = newDelay;
+        }
+    }
+
+    public boolean isAdaptive(){ return targetQueueDepth > 0; }
+
+    public long getCurrentDelay(){ return currentDelay; }
+
+    public long getLastQueueDepth(){ return lastQueueDepth; }
+
+    public long getTargetQueueDepth(){ return targetQueueDepth; }
+
+    /**
+     * @return human-readable state of the throttle, for status messages
+     */
+    public String getState(){
+        if (isAdaptive()){
+            return "adaptive : delay=" + currentDelay + "ms queueDepth=" + lastQueueDepth + " target=" + targetQueueDepth;
+        }
+        return "fixed : delay=" + currentDelay + "ms";
+    }
+}
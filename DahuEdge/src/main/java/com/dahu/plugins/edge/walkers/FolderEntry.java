@@ -0,0 +1,214 @@
+package com.dahu.plugins.edge.walkers;
+
+import com.dahu.core.document.DEFFileDocument;
+import com.dahu.core.exception.BadDocumentException;
+import com.dahu.core.exception.MissingFileException;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * A file or folder found by a walker while listing a folder.
+ *
+ * For a local file-system, entries are read with a DirectoryStream and the attributes of each entry are read in one
+ * call (BasicFileAttributes), so listing a folder costs one pass over the directory plus one stat per entry.
+ * No DEFFileDocument is created until the walker decides to send the file to Vector.
+ *
+ * An entry whose attributes cannot be read - a dangling symlink, or one we are refused access to for a moment - is
+ * kept, flagged as unreadable, with what we could read of the link itself. The walker does not crawl it, but nor does
+ * it take it for a file that has gone, so a refresh leaves what the crate has for it as it is.
+ *
+ * For a CIFS share, the entry simply wraps the DEFFileDocument returned by the share listing.
+ */
+
+public class FolderEntry {
+
+    private final DEFFileDocument document; // only set for CIFS entries
+    private final Path path; // only set for local entries
+    private final String name;
+    private final String absolutePath;
+    private final boolean isDir;
+    private final boolean isFile;
+    private final long lastModified;
+    private final long size;
+    private final String readError; // only set for local entries whose attributes could not be read
+
+    private FolderEntry(Path _path, BasicFileAttributes _attrs){
+        this(_path, _attrs, null);
+    }
+
+    private FolderEntry(Path _path, BasicFileAttributes _attrs, String _readError){
+        document = null;
+        path = _path;
+        name = _path.getFileName() == null ? _path.toString() : _path.getFileName().toString();
+        absolutePath = _path.toAbsolutePath().toString();
+        readError = _readError;
+        if (null != _attrs){
+            isDir = _attrs.isDirectory();
+            isFile = _attrs.isRegularFile();
+            lastModified = _attrs.lastModifiedTime().toMillis();
+            size = _attrs.size();
+        } else {
+            isDir = false;
+            isFile = false;
+            lastModified = 0;
+            size = 0;
+        }
+    }
+
+    private FolderEntry(DEFFileDocument _document){
+        document = _document;
+        path = null;
+        name = null;
+        absolutePath = null;
+        isDir = false;
+        isFile = false;
+        lastModified = 0;
+        size = 0;
+        readError = null;
+    }
+
+    /**
+     * Wrap a DEFFileDocument. Local files and folders are re-read through NIO so that their children get the fast path
+     * @param _document a file or folder
+     * @param _logger logger
+     * @return a FolderEntry for the same file or folder
+     */
+    public static FolderEntry of(DEFFileDocument _document, Logger _logger){
+        String docPath = _document.getAbsolutePath();
+        if (null != docPath && ! docPath.startsWith("smb:")){
+            try {
+                Path p = Paths.get(docPath);
+                return new FolderEntry(p, Files.readAttributes(p, BasicFileAttributes.class));
+            } catch (IOException | RuntimeException e){
+                // can't read it through NIO - just use the document as it is
+                _logger.debug("Unable to read attributes of " + docPath + " : " + e.getLocalizedMessage() + " - listing it without NIO");
+            }
+        }
+        return new FolderEntry(_document);
+    }
+
+    /**
+     * Read a child found in a folder listing. If its attributes cannot be read, the entry is kept, flagged as unreadable
+     * @param _child path to the child
+     * @return the entry, or null if the child has gone since the folder was read
+     */
+    private static FolderEntry readChild(Path _child){
+        try {
+            return new FolderEntry(_child, Files.readAttributes(_child, BasicFileAttributes.class));
+        } catch (NoSuchFileException nsfe){
+            // gone since the folder was read - or a link to something that has gone, which we look at below
+            if (! Files.isSymbolicLink(_child)){
+                return null;
+            }
+            return unreadable(_child, "link to a file or folder that does not exist");
+        } catch (IOException ioe){
+            return unreadable(_child, ioe.getLocalizedMessage());
+        }
+    }
+
+    private static FolderEntry unreadable(Path _child, String _readError){
+        try {
+            return new FolderEntry(_child, Files.readAttributes(_child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS), _readError);
+        } catch (NoSuchFileException nsfe){
+            return null;
+        } catch (IOException ioe){
+            return new FolderEntry(_child, null, _readError);
+        }
+    }
+
+    /**
+     * List the files and folders immediately beneath this folder
+     * @return the children of this folder
+     * @throws BadDocumentException if the folder cannot be listed
+     */
+    public List<FolderEntry> listChildren() throws BadDocumentException {
+        List<FolderEntry> children = new ArrayList<>();
+        if (null != document){
+            for (DEFFileDocument child : document.listFiles()){
+                children.add(new FolderEntry(child));
+            }
+            return children;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)){
+            for (Path child : stream){
+                FolderEntry entry = readChild(child);
+                if (null != entry){
+                    children.add(entry);
+                }
+            }
+        } catch (IOException ioe){
+            throw new BadDocumentException("Unable to list folder " + absolutePath + " : " + ioe.getLocalizedMessage());
+        }
+        return children;
+    }
+
+    /**
+     * Get a DEFFileDocument for this entry, ready to be sent to Vector. Local entries create the document now
+     * @param _source source to set on the new document
+     * @return a DEFFileDocument for this file or folder
+     * @throws MissingFileException if the file has gone since the folder was listed
+     * @throws BadDocumentException if a document cannot be created for the file
+     */
+    public DEFFileDocument getDocument(String _source) throws MissingFileException, BadDocumentException {
+        if (null != document){
+            return document;
+        }
+        return new DEFFileDocument(new File(absolutePath), _source);
+    }
+
+    public boolean isLocal(){ return null == document; }
+
+    /**
+     * @return true if this entry was listed but its attributes could not be read - it is neither crawled nor deleted
+     */
+    public boolean isUnreadable(){ return null != readError; }
+
+    /**
+     * @return why the attributes of this entry could not be read, or null if they were
+     */
+    public String getReadError(){ return readError; }
+
+    public String getName(){ return null != document ? document.getName() : name; }
+
+    public String getAbsolutePath(){ return null != document ? document.getAbsolutePath() : absolutePath; }
+
+    /**
+     * @return the id a DEFFileDocument for this entry would have. For local entries this is the absolute path
+     */
+    public String getId(){ return null != document ? document.getId() : absolutePath; }
+
+    public boolean isDir(){ return null != document ? document.isDir() : isDir; }
+
+    public boolean isFile(){ return null != document ? document.isFile() : isFile; }
+
+    public long getLastModified(){ return null != document ? document.getLastModified() : lastModified; }
+
+    public long getSize(){ return null != document ? document.getDataSize() : size; }
+
+    /**
+     * Checked on demand, so only entries that pass the crawl rules cost an extra access check
+     * @return true if we are allowed to read this file or folder
+     */
+    public boolean canRead(){ return null != document ? document.canRead() : Files.isReadable(path); }
+
+}
@@ -0,0 +1,82 @@
+package com.dahu.plugins.edge.walkers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Work-stealing thread pools used by walker threads to list folders concurrently.
+ *
+ * There is ONE pool per service per share (or one for the local file-system), shared by all the threads of the service,
+ * so the number of concurrent listings against a single filer is bounded by the configured parallelism no matter how
+ * many threads the service is running.
+ *
+ * A pool is kept while the service's crawl_parallelism stays the same. If the service is restarted with a different
+ * parallelism, the first thread to ask gets a new pool, and the old one is shut down once the listings it has already
+ * been given are done. A pool with nothing to do has no threads - they end after a minute idle.
+ */
+
+public class FolderListingPool {
+
+    private static final String LOCAL_FS_KEY = "file://";
+
+    private static final Map<String,Pool> pools = new ConcurrentHashMap<>();
+
+    private static class Pool {
+        private final int parallelism;
+        private final ExecutorService executor;
+
+        private Pool(int _parallelism){
+            parallelism = _parallelism;
+            executor = Executors.newWorkStealingPool(_parallelism);
+        }
+    }
+
+    /**
+     * Get the listing pool for the share that this path belongs to, creating it on first use, or if the parallelism
+     * has changed since it was created
+     * @param _serviceName name of the service that owns the pool
+     * @param _path path to a folder - smb:// paths are pooled per server/share, anything else is local
+     * @param _parallelism maximum number of concurrent listings against this share
+     * @return a work-stealing ExecutorService
+     */
+    public static ExecutorService getPool(String _serviceName, String _path, int _parallelism){
+        return pools.compute(_serviceName + "::" + getShareKey(_path), (k, existing) -> {
+            if (null != existing && existing.parallelism == _parallelism){
+                return existing;
+            }
+            if (null != existing){
+                existing.executor.shutdown();
+            }
+            return new Pool(_parallelism);
+        }).executor;
+    }
+
+    /**
+     * Reduce a path to the share it lives on, eg smb://server/share/folder/ => smb://server/share
+     * @param _path path to a file or folder
+     * @return key identifying the share
+     */
+    protected static String getShareKey(String _path){
+        if (null != _path && _path.startsWith("smb://")){
+            int serverEnd = _path.indexOf("/",6);
+            if (serverEnd > 0){
+                int shareEnd = _path.indexOf("/",serverEnd+1);
+                if (shareEnd > 0){
+                    return _path.substring(0,shareEnd);
+                }
+            }
+            return _path;
+        }
+        return LOCAL_FS_KEY;
+    }
+}
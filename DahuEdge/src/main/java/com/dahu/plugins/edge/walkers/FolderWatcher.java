@@ -0,0 +1,276 @@
+package com.dahu.plugins.edge.walkers;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Watches the local (file://) crawl roots of a walker service for changes, using the file-system's own change
+ * notification (inotify on Linux) through a java.nio WatchService, so changes reach the index in seconds rather than
+ * at the next refresh.
+ *
+ * Every folder under a watched root is registered with the WatchService. A file or folder created, changed or
+ * deleted in a folder marks that folder as changed. A changed folder is held until it has gone a short settle time
+ * without changing again (or for ten settle times at most), so a burst of changes in one folder - eg a file being
+ * copied in - is handled once. It is then handed to the walker, which puts it on the crawl queue to have just its own
+ * contents checked against the crate. That check produces the inserts, updates and deletes for Vector and the crate
+ * exactly as a refresh would.
+ *
+ * If the WatchService loses events (OVERFLOW), every watched root is handed to the walker for a full crawl. Folders
+ * that cannot be registered (eg the inotify watch limit has been reached) are not watched, and changes can be missed
+ * while the service is down, so the walker keeps a periodic reconciliation crawl of the roots as a safety net.
+ *
+ * There is one watcher per service, running on its own daemon thread. A watcher left from before the service was
+ * restarted is closed and replaced when the service starts again, so changes are never handed to a stopped walker.
+ */
+
+public class FolderWatcher implements Runnable {
+
+    private static final Map<String,FolderWatcher> watchers = new ConcurrentHashMap<>();
+
+    private final String serviceName;
+    private final List<String> roots;
+    private final long settleMillis;
+    private final BiConsumer<String,Boolean> changedFolders; // called with a folder path, and true if only the folder's own contents need checking
+    private final BooleanSupplier isStopped;
+    private final Logger logger;
+
+    private volatile WatchService watchService = null;
+    private volatile boolean isClosed = false;
+    private final Map<WatchKey,Path> watchedFolders = new HashMap<>();
+    private final Map<Path,Boolean> pending = new LinkedHashMap<>(); // folders changed since the last hand-over, and true if only their own contents changed
+    private final Map<Path,long[]> changeTimes = new HashMap<>(); // when each pending folder first and last changed
+    private boolean isWatchLimitReached = false;
+
+    private FolderWatcher(String _serviceName, List<String> _roots, long _settleMillis, BiConsumer<String,Boolean> _changedFolders, BooleanSupplier _isStopped, Logger _logger){
+        serviceName = _serviceName;
+        roots = _roots;
+        settleMillis = _settleMillis;
+        changedFolders = _changedFolders;
+        isStopped = _isStopped;
+        logger = _logger;
+    }
+
+    /**
+     * Start watching the local roots of a service. Any watcher the service already has is closed and replaced - it was
+     * started by an earlier start of the service, so it hands changes to a walker that has stopped
+     * @param _serviceName name of the walker service
+     * @param _roots local root folders to watch, eg /data/projects or C:/data
+     * @param _settleMillis how long changes are collected before changed folders are handed to the walker
+     * @param _changedFolders called, on the watcher thread, with each changed folder and true if only its own contents need checking, false to crawl everything below it
+     * @param _isStopped tells the watcher when the service has been stopped
+     * @param _logger logger
+     * @return the watcher for this service
+     */
+    public static FolderWatcher startWatching(String _serviceName, List<String> _roots, long _settleMillis, BiConsumer<String,Boolean> _changedFolders, BooleanSupplier _isStopped, Logger _logger){
+        return watchers.compute(_serviceName, (k, existing) -> {
+            if (null != existing){
+                // left from before the service was restarted, and not stopped yet
+                existing.close();
+            }
+            FolderWatcher watcher = new FolderWatcher(_serviceName, _roots, _settleMillis, _changedFolders, _isStopped, _logger);
+            Thread thread = new Thread(watcher, "FolderWatcher-" + _serviceName);
+            thread.setDaemon(true);
+            thread.start();
+            return watcher;
+        });
+    }
+
+    /**
+     * Stop watching. The watcher thread ends as soon as it sees the WatchService has been closed, and hands over no
+     * more changed folders
+     */
+    public void close(){
+        isClosed = true;
+        WatchService service = watchService;
+        if (null != service){
+            try {
+                service.close();
+            } catch (IOException ioe){
+                logger.debug("Error closing folder watcher for " + serviceName + " : " + ioe.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * @param _root a crawl root from config
+     * @return true if the root is on the local file-system, so it can be watched
+     */
+    public static boolean isWatchable(String _root){
+        return null != _root && ! _root.startsWith("smb:") && ! _root.startsWith("\\\\");
+    }
+
+    /**
+     * @param _root a local crawl root from config, eg file:///data/projects, /data/projects or C:\data
+     * @return the root as a local path
+     */
+    public static Path toPath(String _root){
+        String path = _root.startsWith("file://") ? _root.substring(7) : _root;
+        if (path.matches("^/[a-zA-Z]:.*")){
+            path = path.substring(1); // file:///C:/data
+        }
+        return Paths.get(path);
+    }
+
+    @Override
+    public void run(){
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException ioe){
+            logger.warn("Unable to start watching folders for " + serviceName + " : " + ioe.getLocalizedMessage() + " - changes will only be found by the scheduled refresh");
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            for (String root : roots){
+                registerAll(toPath(root));
+            }
+            logger.info("Watching " + watchedFolders.size() + " folders under " + roots.size() + " roots for " + serviceName + ", registered in " + (System.currentTimeMillis() - start) + "ms");
+
+            while (! isClosed && ! isStopped.getAsBoolean()){
+                WatchKey key = watchService.poll(settleMillis, TimeUnit.MILLISECONDS);
+                if (null != key){
+                    processEvents(key);
+                }
+                if (! pending.isEmpty()){
+                    handOver();
+                }
+            }
+        } catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException cwse){
+            // closed under us, eg replaced when the service restarted - nothing more to watch
+        } finally {
+            try {
+                watchService.close();
+            } catch (IOException ioe){
+                logger.debug("Error closing folder watcher for " + serviceName + " : " + ioe.getLocalizedMessage());
+            }
+            watchers.remove(serviceName, this);
+            logger.info("Stopped watching folders for " + serviceName);
+        }
+    }
+
+    private void processEvents(WatchKey _key){
+        Path folder = watchedFolders.get(_key);
+        if (null == folder){
+            _key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : _key.pollEvents()){
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW){
+                // events were dropped - and not necessarily only for this folder, so we can't tell what changed
+                logger.info("Folder watcher lost events for " + serviceName + " - crawling all watched roots again");
+                for (String root : roots){
+                    changed(toPath(root), false);
+                }
+                continue;
+            }
+            Path child = folder.resolve((Path)event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)){
+                // watch the new folder - anything already in it is found when the folder itself is crawled
+                registerAll(child);
+            }
+            changed(folder, true);
+        }
+        if (! _key.reset()){
+            // folder has gone - its parent has been marked as changed, which takes it out of the crate
+            watchedFolders.remove(_key);
+        }
+    }
+
+    private void changed(Path _folder, boolean _isFolderOnly){
+        // a full crawl of the folder covers its own contents too
+        pending.merge(_folder, _isFolderOnly, (was, now) -> was && now);
+        long now = System.currentTimeMillis();
+        long[] times = changeTimes.computeIfAbsent(_folder, k -> new long[]{now, now});
+        times[1] = now;
+    }
+
+    // hand over the folders that have settled
+    private void handOver(){
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path,Boolean>> changed = pending.entrySet().iterator();
+        while (changed.hasNext() && ! isClosed){
+            Map.Entry<Path,Boolean> folder = changed.next();
+            long[] times = changeTimes.get(folder.getKey());
+            if (now - times[1] < settleMillis && now - times[0] < settleMillis * 10){
+                continue; // still changing
+            }
+            try {
+                changedFolders.accept(folder.getKey().toString(), folder.getValue());
+            } catch (RuntimeException re){
+                logger.warn("Unable to pass changed folder " + folder.getKey() + " to walker : " + re.getLocalizedMessage());
+            }
+            changed.remove();
+            changeTimes.remove(folder.getKey());
+        }
+    }
+
+    // register a folder and every folder below it
+    private void registerAll(Path _folder){
+        try {
+            Files.walkFileTree(_folder, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path _dir, BasicFileAttributes _attrs){
+                    if (register(_dir)){
+                        return FileVisitResult.CONTINUE;
+                    }
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path _file, IOException _ioe){
+                    logger.debug("Unable to watch " + _file + " : " + _ioe.getLocalizedMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ioe){
+            logger.warn("Unable to watch folders under " + _folder + " : " + ioe.getLocalizedMessage());
+        }
+    }
+
+    private boolean register(Path _folder){
+        try {
+            WatchKey key = _folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedFolders.put(key, _folder);
+            return true;
+        } catch (IOException ioe){
+            // usually the inotify watch limit - this part of the tree is only covered by crawling it
+            if (! isWatchLimitReached){
+                logger.warn("Unable to watch folder " + _folder + " : " + ioe.getLocalizedMessage() + " - folders that cannot be watched are only checked by the reconciliation crawl");
+                isWatchLimitReached = true;
+            }
+            return false;
+        }
+    }
+}
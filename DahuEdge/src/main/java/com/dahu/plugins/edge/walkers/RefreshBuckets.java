@@ -0,0 +1,95 @@
+package com.dahu.plugins.edge.walkers;
+
+import com.dahu.plugins.edge.walkers.storage.ProtectedTrie;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Priority refresh buckets. Each folder the walker has found changed goes into a bucket by how recently it changed,
+ * and each bucket is refreshed at its own interval :
+ *
+ *   HOURLY      - changed in the last day, refreshed every hour
+ *   FOUR_HOURLY - changed in the last week, refreshed every 4 hours
+ *   DAILY       - changed in the last 30 days, refreshed every day
+ *   WEEKLY      - everything else, left to the refresh of the crawl roots (refresh_delay_seconds, eg a week)
+ *
+ * Folders that change often keep changing, and cold archives stay cold, so refresh I/O goes where the changes are.
+ * A refreshed folder only has its own files and sub-folders checked, so a hot folder under a cold tree costs one
+ * listing. When a folder drops into the WEEKLY bucket the crate forgets its path, so only the folders that have
+ * changed recently are held by path.
+ */
+
+public class RefreshBuckets {
+
+    public static final int HOURLY = 0;
+    public static final int FOUR_HOURLY = 1;
+    public static final int DAILY = 2;
+    public static final int WEEKLY = 3;
+
+    private static final long HOUR = 3600 * 1000L;
+    private static final long DAY = 24 * HOUR;
+
+    private static final long[] CHANGED_WITHIN = {DAY, 7 * DAY, 30 * DAY}; // a folder changed within this long is in this bucket
+    private static final long[] REFRESH_EVERY = {HOUR, 4 * HOUR, DAY}; // and is refreshed this often
+
+    public static final long TICK_MILLIS = REFRESH_EVERY[HOURLY]; // how often the buckets need checking
+
+    /**
+     * @param _sinceChanged how long since the folder last changed, in ms
+     * @return the bucket the folder belongs in
+     */
+    public static int bucketFor(long _sinceChanged){
+        for (int bucket = HOURLY; bucket < WEEKLY; bucket++){
+            if (_sinceChanged < CHANGED_WITHIN[bucket]){
+                return bucket;
+            }
+        }
+        return WEEKLY;
+    }
+
+    /**
+     * Find the folders that are due a refresh, and forget the paths of those that have gone quiet
+     * @param _crate the crate, which knows when each folder was listed and last changed
+     * @param _now time now
+     * @return paths of the folders that are due a refresh
+     */
+    public static List<String> getFoldersDue(ProtectedTrie _crate, long _now){
+        List<String> due = new ArrayList<>();
+        _crate.forEachChangedFolder((path, listed, changed) -> {
+            int bucket = bucketFor(_now - changed);
+            if (bucket == WEEKLY){
+                return false;
+            }
+            // a little slack, so a folder listed just after the last tick is not left for a whole extra interval
+            if (_now - listed >= REFRESH_EVERY[bucket] - REFRESH_EVERY[HOURLY] / 10){
+                due.add(path);
+            }
+            return true;
+        });
+        return due;
+    }
+
+    /**
+     * Find the folders that are due a refresh, as crawl messages ready for the crawl queue
+     * @param _crate the crate, which knows when each folder was listed and last changed
+     * @param _now time now
+     * @return a crawl message for each folder that is due, to check only its own files and sub-folders
+     */
+    public static List<String> getMessagesDue(ProtectedTrie _crate, long _now){
+        List<String> messages = new ArrayList<>();
+        for (String folder : getFoldersDue(_crate, _now)){
+            // crate paths of local folders have lost their leading "/" - put it back, or the walker looks in its working directory
+            messages.add(CrawlMessage.toJson(CrawlMessage.toFileSysPath(folder), 0, true));
+        }
+        return messages;
+    }
+}
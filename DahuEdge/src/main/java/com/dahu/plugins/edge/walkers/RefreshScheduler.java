@@ -0,0 +1,196 @@
+package com.dahu.plugins.edge.walkers;
+
+import com.dahu.def.types.MQueue;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Schedules the refreshes of a walker service - re-seeding its roots, reconciling watched roots, priority refresh
+ * buckets - on a single scheduler thread shared by all of the service's walker threads.
+ *
+ * Every walker thread gets the same scheduler, but only one of them - the leader, the first to ask - schedules the
+ * refresh tasks, so they run once per service rather than once per thread.
+ *
+ * A refresh cycle starts when roots are pushed onto the crawl queue, and is over once the crawl queue has been empty
+ * at two checks in a row (a folder being crawled can still add more folders to the queue while the queue is empty).
+ * Only one cycle can be in progress at a time - startCycle() is an atomic test-and-set, so roots are never pushed
+ * twice by tasks or threads racing each other.
+ *
+ * The leader also recovers the crawl checkpoints left from before the service started - once per service, not once
+ * per thread. Only the checkpoints started before the scheduler was created are recovered, so the units other threads
+ * have started since are left alone.
+ *
+ * When the service stops, the scheduler cancels its tasks, stops its thread and takes itself out of the registry, so
+ * when the service starts again its threads get a new scheduler, with the new leader's tasks and crawl queue.
+ */
+
+public class RefreshScheduler {
+
+    private static final Map<String,RefreshScheduler> schedulers = new ConcurrentHashMap<>();
+
+    private static final long CYCLE_CHECK_SECONDS = 30; // how often we look to see if a refresh cycle is over
+
+    private final String serviceName;
+    private final MQueue crawlQueue;
+    private final BooleanSupplier isStopped;
+    private final Logger logger;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicInteger leader = new AtomicInteger(-1); // thread number of the leader, -1 until one is elected
+    private final AtomicBoolean isCycleInProgress = new AtomicBoolean(false);
+    private volatile long cycleStartTime = 0;
+    private int emptyChecks = 0; // number of checks in a row that found the crawl queue empty - only used on the scheduler thread
+    private volatile boolean isShutDown = false;
+    private final long checkpointMark = CrawlCheckpoint.getSequence(); // every checkpoint of this service start comes after this
+
+    private RefreshScheduler(String _serviceName, MQueue _crawlQueue, BooleanSupplier _isStopped, Logger _logger){
+        serviceName = _serviceName;
+        crawlQueue = _crawlQueue;
+        isStopped = _isStopped;
+        logger = _logger;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "RefreshScheduler-" + _serviceName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::checkCycle, CYCLE_CHECK_SECONDS, CYCLE_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Get the scheduler for a service, creating it the first time one of the service's threads asks for it
+     * @param _serviceName name of the walker service
+     * @param _crawlQueue the crawl queue of the service, to tell when a refresh cycle is over
+     * @param _isStopped tells the scheduler when the service has been stopped
+     * @param _logger logger
+     * @return the scheduler for this service
+     */
+    public static RefreshScheduler getScheduler(String _serviceName, MQueue _crawlQueue, BooleanSupplier _isStopped, Logger _logger){
+        return schedulers.compute(_serviceName, (k, existing) -> {
+            if (null != existing && ! existing.isShutDown && ! existing.isStopped.getAsBoolean()){
+                return existing;
+            }
+            if (null != existing){
+                // left from before the service was restarted, and not shut down yet
+                existing.executor.shutdownNow();
+                existing.isShutDown = true;
+            }
+            return new RefreshScheduler(_serviceName, _crawlQueue, _isStopped, _logger);
+        });
+    }
+
+    /**
+     * Ask to be the leader - the thread that schedules the service's refresh tasks
+     * @param _threadNumber number of the walker thread asking
+     * @return true if this thread is the leader. Only ever true for one thread
+     */
+    public boolean elect(int _threadNumber){
+        if (leader.compareAndSet(-1, _threadNumber)){
+            logger.debug("Walker thread " + _threadNumber + " schedules refreshes for " + serviceName);
+            return true;
+        }
+        return leader.get() == _threadNumber;
+    }
+
+    /**
+     * @return sequence number of the last crawl checkpoint started before this service started - see CrawlCheckpoint.find
+     */
+    public long getCheckpointMark(){
+        return checkpointMark;
+    }
+
+    /**
+     * Run a task periodically on the scheduler thread. A task that throws is logged, and still runs next time
+     * @param _task task to run
+     * @param _period time between the end of one run and the start of the next
+     * @param _unit unit of _period
+     */
+    public void schedule(Runnable _task, long _period, TimeUnit _unit){
+        executor.scheduleWithFixedDelay(() -> {
+            if (isStopped.getAsBoolean()){
+                shutdown();
+                return;
+            }
+            try {
+                _task.run();
+            } catch (RuntimeException re){
+                logger.warn("Scheduled refresh task for " + serviceName + " failed : " + re.getLocalizedMessage());
+            }
+        }, _period, _period, _unit);
+    }
+
+    /**
+     * Start a refresh cycle, unless one is already in progress
+     * @return true if the caller has started a cycle and should push roots onto the queue, false if a cycle is in progress
+     */
+    public boolean startCycle(){
+        if (isCycleInProgress.compareAndSet(false, true)){
+            cycleStartTime = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isCycleInProgress(){
+        return isCycleInProgress.get();
+    }
+
+    /**
+     * @return when the refresh cycle in progress started, or 0 if there is none
+     */
+    public long getCycleStartTime(){
+        return isCycleInProgress.get() ? cycleStartTime : 0;
+    }
+
+    /**
+     * Cancel the refresh tasks and stop the scheduler thread. Called when the service stops - the next thread of the
+     * service to ask gets a new scheduler. Safe to call more than once
+     */
+    public void shutdown(){
+        if (isShutDown){
+            return;
+        }
+        isShutDown = true;
+        schedulers.remove(serviceName, this);
+        executor.shutdownNow();
+        logger.info("Stopped scheduling refreshes for " + serviceName);
+    }
+
+    private void checkCycle(){
+        if (isStopped.getAsBoolean()){
+            shutdown();
+            return;
+        }
+        if (! isCycleInProgress.get()){
+            return;
+        }
+        long depth;
+        try {
+            depth = crawlQueue.getcurrentMessageCount();
+        } catch (Exception e){
+            logger.debug("Refresh scheduler unable to read depth of queue " + crawlQueue.getQueueName() + " : " + e.getLocalizedMessage());
+            return;
+        }
+        emptyChecks = depth > 0 ? 0 : emptyChecks + 1;
+        if (emptyChecks >= 2){
+            emptyChecks = 0;
+            logger.info("Refresh cycle for " + serviceName + " finished after " + (System.currentTimeMillis() - cycleStartTime) / 1000 + "s");
+            isCycleInProgress.set(false);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.dahu.plugins.edge.walkers;
+
+import com.dahu.core.document.DEFFileDocument;
+import com.dahu.core.exception.BadDocumentException;
+import com.dahu.core.exception.MissingFileException;
+import jcifs.smb.NtlmPasswordAuthentication;
+import jcifs.smb.SmbFile;
+
+import java.net.MalformedURLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * SMB sessions shared by all the walker threads of a service.
+ *
+ * There is ONE pool per service, holding one NtlmPasswordAuthentication. Every SmbFile the walker opens uses that same
+ * auth, so jcifs finds the session it has already authenticated to the server and reuses it, rather than each folder
+ * and file opening with credentials of its own.
+ *
+ * Each request to a server - opening a file or folder, or listing a folder - takes a permit for that server first, so
+ * no more than smb_max_requests_per_server requests are in flight against one filer, however many threads the service
+ * is running and however many listings they have running in the background.
+ *
+ * The pool is kept while the service's settings stay the same. If the service is restarted with a different SMB user
+ * or limit, the first thread to ask gets a new pool with the new settings, and the old one is dropped.
+ */
+
+public class SmbSessionPool {
+
+    public static final int DEFAULT_MAX_REQUESTS_PER_SERVER = 16;
+
+    private static final Map<String,SmbSessionPool> pools = new ConcurrentHashMap<>();
+
+    private final NtlmPasswordAuthentication auth;
+    private final String domain;
+    private final String username;
+    private final String password;
+    private final int maxRequestsPerServer;
+    private final Map<String,Semaphore> servers = new ConcurrentHashMap<>();
+
+    /**
+     * A request to an SMB server, made while holding a permit for the server
+     * @param <T> type of the result
+     */
+    public interface SmbRequest<T> {
+        T run() throws MalformedURLException, MissingFileException, BadDocumentException;
+    }
+
+    /**
+     * @param _domain domain of the SMB user, or null for no credentials
+     * @param _username SMB user
+     * @param _password password of the SMB user
+     * @param _maxRequestsPerServer max number of concurrent requests to one server, 0 or less for no limit
+     */
+    public SmbSessionPool(String _domain, String _username, String _password, int _maxRequestsPerServer){
+        domain = _domain;
+        username = _username;
+        password = _password;
+        maxRequestsPerServer = _maxRequestsPerServer;
+        if (null != _domain && null != _username && null != _password){
+            auth = new NtlmPasswordAuthentication(_domain, _username, _password);
+        } else {
+            auth = null;
+        }
+    }
+
+    /**
+     * Get the pool for a service, creating it the first time one of the service's threads asks for it, or if the
+     * service's settings have changed since the pool was created
+     * @param _serviceName name of the walker service
+     * @param _domain domain of the SMB user, or null for no credentials
+     * @param _username SMB user
+     * @param _password password of the SMB user
+     * @param _maxRequestsPerServer max number of concurrent requests to one server, 0 or less for no limit
+     * @return the pool for this service
+     */
+    public static SmbSessionPool getPool(String _serviceName, String _domain, String _username, String _password, int _maxRequestsPerServer){
+        return pools.compute(_serviceName, (k, existing) -> null != existing && existing.hasSettings(_domain, _username, _password, _maxRequestsPerServer)
+                ? existing : new SmbSessionPool(_domain, _username, _password, _maxRequestsPerServer));
+    }
+
+    private boolean hasSettings(String _domain, String _username, String _password, int _maxRequestsPerServer){
+        return Objects.equals(domain, _domain) && Objects.equals(username, _username) && Objects.equals(password, _password)
+                && maxRequestsPerServer == _maxRequestsPerServer;
+    }
+
+    /**
+     * @return the auth shared by every SmbFile the service opens, or null if the service has no SMB credentials
+     */
+    public NtlmPasswordAuthentication getAuth(){
+        return auth;
+    }
+
+    /**
+     * Open a file or folder on a share, using the shared auth
+     * @param _url smb:// path to the file or folder
+     * @param _source source to set on the new document
+     * @return a DEFFileDocument for the file or folder
+     * @throws MalformedURLException if _url is not a valid smb:// path
+     * @throws MissingFileException if there is no such file or folder
+     * @throws BadDocumentException if a document cannot be created for it
+     */
+    public DEFFileDocument getDocument(String _url, String _source) throws MalformedURLException, MissingFileException, BadDocumentException {
+        return call(_url, () -> new DEFFileDocument(new SmbFile(_url, auth), _source, domain, username, password));
+    }
+
+    /**
+     * List a folder on a share, holding a permit for its server while the listing is read
+     * @param _folder folder to list
+     * @return the child files and folders of _folder
+     * @throws BadDocumentException if the folder cannot be listed
+     */
+    public List<FolderEntry> listChildren(FolderEntry _folder) throws BadDocumentException {
+        Semaphore permits = getPermits(_folder.getAbsolutePath());
+        if (null == permits){
+            return _folder.listChildren();
+        }
+        permits.acquireUninterruptibly();
+        try {
+            return _folder.listChildren();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Make a request to the server that _url is on, waiting for a permit if the server already has as many requests
+     * in flight as it is allowed
+     * @param _url smb:// path the request is for
+     * @param _request the request
+     * @param <T> type of the result
+     * @return result of the request
+     * @throws MalformedURLException from the request
+     * @throws MissingFileException from the request
+     * @throws BadDocumentException from the request
+     */
+    public <T> T call(String _url, SmbRequest<T> _request) throws MalformedURLException, MissingFileException, BadDocumentException {
+        Semaphore permits = getPermits(_url);
+        if (null == permits){
+            return _request.run();
+        }
+        permits.acquireUninterruptibly();
+        try {
+            return _request.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Semaphore getPermits(String _url){
+        if (maxRequestsPerServer <= 0){
+            return null;
+        }
+        return servers.computeIfAbsent(getServerKey(_url), k -> new Semaphore(maxRequestsPerServer, true));
+    }
+
+    /**
+     * Reduce a path to the server it lives on, eg smb://server/share/folder/ => smb://server
+     * @param _url path to a file or folder
+     * @return key identifying the server
+     */
+    protected static String getServerKey(String _url){
+        if (null != _url && _url.startsWith("smb://")){
+            int serverEnd = _url.indexOf("/", 6);
+            return (serverEnd > 0 ? _url.substring(0, serverEnd) : _url).toLowerCase();
+        }
+        return "" + _url;
+    }
+}
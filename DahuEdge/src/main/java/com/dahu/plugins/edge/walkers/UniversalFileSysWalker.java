@@ -7,8 +7,6 @@ import com.dahu.core.exception.BadDocumentException;
 import com.dahu.core.exception.MissingFileException;
 import com.dahu.core.interfaces.iDocument;
 import com.dahu.core.logging.DEFLogManager;
-import com.dahu.core.trie.TrieBranch;
-import com.dahu.core.trie.TrieLeaf;
 import com.dahu.core.utils.ConfigUtils;
 import com.dahu.def.annotations.DEFAnnotationMT;
 import com.dahu.def.config.PluginConfig;
@@ -18,15 +16,13 @@ import com.dahu.def.plugins.ListeningService;
 import com.dahu.def.types.MQueue;
 import com.dahu.def.types.Service;
 import com.dahu.def.types.Sitrep;
+import com.dahu.plugins.edge.walkers.storage.CrateFile;
+import com.dahu.plugins.edge.walkers.storage.CrateFolder;
+import com.dahu.plugins.edge.walkers.storage.CrateLeafBatch;
 import com.dahu.plugins.edge.walkers.storage.ProtectedTrie;
 import jcifs.smb.NtlmPasswordAuthentication;
-import jcifs.smb.SmbFile;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.Logger;
-import org.codehaus.jackson.JsonNode;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.node.JsonNodeFactory;
-import org.codehaus.jackson.node.ObjectNode;
 
 import javax.jms.JMSException;
 import javax.xml.bind.JAXBException;
@@ -34,8 +30,10 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -55,7 +53,14 @@ import static com.dahu.plugins.edge.walkers.WALKER_CONSTANTS.*;
  * A Crawler for both FileSys and CIFS file systems.
  *
  * On startup, the root folders defined in config are added to a queue (seedTheQueues() method)
- * TODO find a startup procedure that doesn't add root folders to the queue in every thread in every instance
+ * All the threads of a service share one RefreshScheduler. One thread is elected to schedule the periodic refreshes,
+ * and roots are only pushed onto the queue when no refresh cycle is already in progress, so they are pushed once per
+ * cycle however many threads the service runs.
+ *
+ * The crawl can be split between several Edge nodes (partition_queues) - see CrawlPartitioner. Each node crawls only
+ * the folders in its own partition and keeps them in its own crate. A sub-folder owned by another node is posted to
+ * that node's crawl queue instead of being crawled, and is kept in our crate as an empty marker, so that we notice,
+ * and tell the owner, when it is deleted.
  *
  *  TextMessages encapsulating a FOLDER are pushed to the crawl Queue
  *  The message format is JSON and must follow the pattern shown in these examples
@@ -68,19 +73,21 @@ import static com.dahu.plugins.edge.walkers.WALKER_CONSTANTS.*;
  *
  * The crawler reads a message from the crawl queue and resolves to a folder on a file-system or a share
  * The crawler checks if it can process the folder, according to the crawl rules in config
- * If it can, it processes THREE levels of sub-folder beneath the folder provided in the message
- * Any FILES found in any of the three levels of hierarchy are pushed as Documents to the output queue, which should be linked to a Vector
+ * If it can, it lists the folder, and the sub-folders beneath it down to crawl_unit_depth levels (default 2 - the folder
+ * itself and its child folders)
+ * If crawl_unit_max_entries is set, it also stops going deeper once this message has listed that many files and folders
+ * Any FILES found in the folders it lists are pushed as Documents to the output queue, which should be linked to a Vector
  * The files are NOT read into memory at this stage, so the output queue receives just a TextMessage containing details of the document metadata
- * Any child folders or sub-folders are processed
- * Any sub-folders of the sub-folders (ie three levels below the original folder supplied in the message) are themselves pushed on
+ * Any sub-folders it does not list (ie below crawl_unit_depth, or after crawl_unit_max_entries) are themselves pushed on
  * to the crawl queue to be picked up by another thread and processed.
+ * A refresh of a folder already in the crate checks everything beneath it on the same thread, unless crawl_unit_depth or
+ * crawl_unit_max_entries is set, when it is split up in the same way.
  *
  */
 
 @DEFAnnotationMT(isMultiThreaded="true")
 public class UniversalFileSysWalker extends ListeningService {
 
-    protected boolean isSeeded = false;  // have we pushed some crawl root folders onto the queue so we can start?
 
     // separate loggers for different functions
     protected Logger insertsLog;
@@ -89,16 +96,59 @@ public class UniversalFileSysWalker extends ListeningService {
     protected Logger unchangedLog = null;
 
     protected int crawlDelay = 500; // default - delay of 0.5s between processing a crawl folder, to avoid overloading Vector queue
+    protected long throttleTargetDepth = 0; // default - no target depth for the Vector queue, so crawlDelay is fixed
+    protected long throttleMaxDelay = 5000; // default - adaptive throttle never waits more than 5s between folders
+    protected CrawlThrottle throttle = null; // shared by all threads in this service - decides how long to wait between folders
 
     protected int refreshDelay = 600; // default - delay between starting a refresh thread in seconds
 
     protected boolean forceRefresh = false; // flag - should crawler push crawl roots on queue, or just pick up some work?
 
+    protected int crawlParallelism = 1; // default - sub-folders of a crawl message are listed one at a time on this thread
+
+    protected int crawlUnitDepth = 2; // default - a new folder is crawled with its children and grandchildren, great-grandchildren go back on the crawl queue
+    protected int refreshUnitDepth = Integer.MAX_VALUE; // default - a refresh checks everything below its folder on this thread
+    protected int crawlUnitMaxEntries = 0; // default - no limit on the number of entries one crawl message lists
+    private int unitEntries = 0; // entries listed so far by the crawl message being processed
+    private int unitDepth = 0; // depth below the crawl message's folder of the folder being refreshed
+
+    protected boolean folderChangeDetection = false; // default - every folder is listed on every refresh
+    protected int fullVerifyInterval = 7 * 24 * 3600; // default - with folder change detection, every folder is listed at least once a week, in seconds
+
+    protected CrawlPartitioner partitioner = null; // if set, the crawl is split between several Edge nodes and this node only crawls its own partition
+    protected int partition = -1; // this node's partition, if the crawl is partitioned
+    private Map<String,MQueue.MQueueSession> partitionSessions = new HashMap<>(); // crawl queue session of each partition, by queue name
+
+    protected boolean priorityRefresh = false; // default - folders are only refreshed when their root is
+
+    protected boolean watchLocalRoots = false; // default - local roots are refreshed like any other root, every refreshDelay
+    protected long watchSettleMillis = 1000; // default - changes seen by the folder watcher are crawled after 1s
+    protected int reconcileInterval = 24 * 3600; // default - watched roots are crawled again once a day, in seconds
+
+    protected int vectorBatchSize = 1; // default - each document is posted to Vector as its own message
+    protected long vectorBatchMillis = 1000; // default - a batched document waits no more than 1s before its batch is sent
+    protected VectorBatch vectorBatch = null; // documents waiting to be posted to Vector in one envelope message
+    protected int vectorPostQueueSize = 1000; // default - up to 1000 messages wait for this thread's poster before the walker has to wait
+    protected String vectorSpillDir = "spill"; // default - messages that cannot be posted to Vector are kept in ./spill until they can be
+    protected VectorPoster vectorPoster = null; // posts this thread's messages to Vector on a thread of its own
+    protected boolean deleteByFolder = false; // default - a DELETE is sent for each file under a folder that has gone, which every indexer handles. Set to true for Solr, to send one DELETE for the folder
+    protected int checkpointInterval = 10; // default - a crawl unit in progress is checkpointed every 10s, in seconds. 0 = no checkpoints
+    protected String checkpointDir = "checkpoints"; // default - crawl unit checkpoints are kept in ./checkpoints
+    private File checkpointFile = null; // checkpoint of the crawl unit in progress - null if we are not checkpointing it
+    private String checkpointMessage = null; // crawl message of the unit in progress
+    private long lastCheckpoint = 0; // when the unit in progress was last checkpointed, or started
+    private Map<File,Long> finishedCheckpoints = new LinkedHashMap<>(); // checkpoints of finished units, with the crate change count that must be saved before they can go
+
+    protected WalkerMetrics metrics = null; // shared by all threads in this service - throughput and latency of the walker
+    protected int metricsInterval = 60; // default - metrics are summarised in the service status once a minute, in seconds
+    protected String metricsFile = null; // default - metrics are not written to a file
+
     // Crawl rules
     protected Set<String> includeTypePatterns = new HashSet<>();
     protected Set<String> excludeTypePatterns = new HashSet<>();
     protected Set<String> excludeFilePatterns = new HashSet<>();
     protected int maxFileSize = 256*1024*1024; // do not crawl files larger than this - default = 256MB
+    protected CrawlRules crawlRules = null; // the rules above, compiled once
 
     protected String source = null;   // String to insert as metadata to all items processes. Should identify this connector by name
 
@@ -110,6 +160,8 @@ public class UniversalFileSysWalker extends ListeningService {
     protected String smb_username = null;
     protected String smb_password = null;
     protected NtlmPasswordAuthentication auth = null;
+    protected int smbMaxRequestsPerServer = SmbSessionPool.DEFAULT_MAX_REQUESTS_PER_SERVER; // default - no more than 16 requests in flight to one SMB server, across all threads of the service
+    protected SmbSessionPool smbPool = null; // shared by all threads in this service - one authenticated session per server, and a cap on concurrent requests to it
 
     private static final String QUEUEREADYNMSG = "Listening for messages";
 
@@ -120,16 +172,13 @@ public class UniversalFileSysWalker extends ListeningService {
 
     protected boolean isRecoveryMode = false; // if true, do not add roots to crawlqueue
 
-    // thread pool for the scheduled tasks that will run hoursly, every 4 hours, every 24 hours and every 7 days
-    // to push various buckets of folders onto the queue to be refreshed
-
     private Set<String> trieNodeBranchToInsert = new HashSet<>(); // placeholder to accumulate set of folder paths that need to be inserted into the crate at suitable time
-    private Set<String> trieNodeLeavesToInsert = new HashSet<>(); // placeholder to accumulate set of file paths that need to be inserted into the crate at suitable time; format filepath_:_lastmod:_:_size
+    private CrateLeafBatch trieNodeLeavesToInsert = new CrateLeafBatch(); // placeholder to accumulate the files that need to be inserted into the crate at suitable time
     private Set<String> trieNodesToDelete = new HashSet<>(); // placeholder to accumulate set of file paths that need to be deleted from the crate at suitable time
+    private Map<String,Long> folderStampsToSet = new HashMap<>(); // placeholder to accumulate folders listed, with their last modified date, to record in the crate once their contents are in it
+    private Set<String> foldersWithChanges = new HashSet<>(); // placeholder to accumulate folders listed in which files were inserted, updated or deleted
 
-    // Thread pool to run periodically to push roots on to queue for refresh crawl
-    ScheduledExecutorService scheduledExecutorService =
-            Executors.newScheduledThreadPool(5);
+    protected RefreshScheduler refreshScheduler = null; // shared by all threads in this service - runs the refreshes and knows if a refresh cycle is in progress
 
     /**
      * Constructor for a Generic Walker. Set up the input and outout queues (all crawlers will need a crawl queue plus a queue to put output tasks on_
@@ -167,8 +216,8 @@ public class UniversalFileSysWalker extends ListeningService {
         if (inputQueues.size() != 1){
             throw new BadConfigurationException("FileSys crawler must have exactly ONE input queue for crawling");
         }
-        if (outputQueues.size() != 1){
-            throw new BadConfigurationException("FileSys crawler must have exactly ONE output queue for vector");
+        if (outputQueues.size() != 1 && null == PluginConfig.getPluginProperties(serviceName).getPropertiesByName(CONFIG_PARTITION_QUEUES)){
+            throw new BadConfigurationException("FileSys crawler must have exactly ONE output queue for vector, unless the crawl is partitioned");
         }
 
         // Use the existing Queues and Sessions - just rename them here to make it easier to reference them
@@ -191,6 +240,11 @@ public class UniversalFileSysWalker extends ListeningService {
             throw new BadConfigurationException("Unable to start service because no session exists on either crawl queue or vector queue");
         }
 
+        //CONFIG_PARTITION_QUEUES
+        if (PluginConfig.getPluginProperties(serviceName).getPropertiesByName(CONFIG_PARTITION_QUEUES) != null) {
+            setUpPartitions();
+        }
+
         //CONFIG_RECOVERYMODE
         if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_RECOVERYMODE) != null) {
             if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_RECOVERYMODE).equals("true")){
@@ -232,6 +286,8 @@ public class UniversalFileSysWalker extends ListeningService {
             }
         }
 
+        crawlRules = new CrawlRules(includeTypePatterns, excludeTypePatterns, excludeFilePatterns, logger);
+
 //        CONFIG_CRAWL_DELAY
         if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CRAWL_DELAY) != null) {
             String crawlDelayStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CRAWL_DELAY);
@@ -243,6 +299,203 @@ public class UniversalFileSysWalker extends ListeningService {
             }
         }
 
+        //CONFIG_THROTTLE_TARGET_DEPTH
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_THROTTLE_TARGET_DEPTH) != null) {
+            String targetDepthStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_THROTTLE_TARGET_DEPTH);
+            try {
+                throttleTargetDepth = Long.parseLong(targetDepthStr);
+                logger.debug("Setting crawl throttle target queue depth to " + throttleTargetDepth);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set throttle target queue depth to " + targetDepthStr + " expected an integer, number of messages on Vector queue");
+            }
+        }
+        //CONFIG_THROTTLE_MAX_DELAY
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_THROTTLE_MAX_DELAY) != null) {
+            String maxDelayStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_THROTTLE_MAX_DELAY);
+            try {
+                throttleMaxDelay = Long.parseLong(maxDelayStr);
+                logger.debug("Setting crawl throttle max delay to " + throttleMaxDelay);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set throttle max delay to " + maxDelayStr + " expected an integer, delay in milliseconds");
+            }
+        }
+
+        //CONFIG_CRAWL_PARALLELISM
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CRAWL_PARALLELISM) != null) {
+            String parallelismStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CRAWL_PARALLELISM);
+            try {
+                crawlParallelism = Integer.parseInt(parallelismStr);
+                logger.debug("Setting crawl parallelism to " + crawlParallelism);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set crawl parallelism to " + parallelismStr + " expected an integer, number of folders to list concurrently");
+            }
+            if (crawlParallelism < 1){
+                crawlParallelism = 1;
+            }
+        }
+
+        //CONFIG_CRAWL_UNIT_DEPTH
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CRAWL_UNIT_DEPTH) != null) {
+            String unitDepthStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CRAWL_UNIT_DEPTH);
+            try {
+                crawlUnitDepth = Math.max(1, Integer.parseInt(unitDepthStr));
+                refreshUnitDepth = crawlUnitDepth;
+                logger.debug("Setting crawl unit depth to " + crawlUnitDepth);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set crawl unit depth to " + unitDepthStr + " expected an integer, number of folder levels. Setting to " + crawlUnitDepth);
+            }
+        }
+        //CONFIG_CRAWL_UNIT_MAX_ENTRIES
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CRAWL_UNIT_MAX_ENTRIES) != null) {
+            String unitEntriesStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CRAWL_UNIT_MAX_ENTRIES);
+            try {
+                crawlUnitMaxEntries = Integer.parseInt(unitEntriesStr);
+                logger.debug("Setting crawl unit max entries to " + crawlUnitMaxEntries);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set crawl unit max entries to " + unitEntriesStr + " expected an integer, number of files and folders");
+            }
+        }
+
+        //CONFIG_FOLDER_CHANGE_DETECTION
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_FOLDER_CHANGE_DETECTION) != null) {
+            folderChangeDetection = Boolean.parseBoolean(PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_FOLDER_CHANGE_DETECTION));
+            logger.debug("Setting folder change detection to " + folderChangeDetection);
+        }
+        //CONFIG_FULL_VERIFY_INTERVAL
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_FULL_VERIFY_INTERVAL) != null) {
+            String fullVerifyStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_FULL_VERIFY_INTERVAL);
+            try {
+                fullVerifyInterval = ConfigUtils.timeParser(fullVerifyStr);
+                logger.debug("Setting full verify interval to " + fullVerifyInterval + " seconds");
+            } catch (NumberFormatException nfe){
+                logger.warn("Invalid config entry : " + CONFIG_FULL_VERIFY_INTERVAL + " : " + fullVerifyStr + " not a valid time interval. Setting to 7 days");
+                fullVerifyInterval = 7 * 24 * 3600;
+            }
+        }
+
+        //CONFIG_PRIORITY_REFRESH
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_PRIORITY_REFRESH) != null) {
+            priorityRefresh = Boolean.parseBoolean(PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_PRIORITY_REFRESH));
+            logger.debug("Setting priority refresh to " + priorityRefresh);
+        }
+        //CONFIG_WATCH_LOCAL_ROOTS
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_WATCH_LOCAL_ROOTS) != null) {
+            watchLocalRoots = Boolean.parseBoolean(PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_WATCH_LOCAL_ROOTS));
+            logger.debug("Setting watch local roots to " + watchLocalRoots);
+        }
+        //CONFIG_WATCH_SETTLE_MILLIS
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_WATCH_SETTLE_MILLIS) != null) {
+            String settleStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_WATCH_SETTLE_MILLIS);
+            try {
+                watchSettleMillis = Long.parseLong(settleStr);
+                logger.debug("Setting folder watcher settle time to " + watchSettleMillis);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set folder watcher settle time to " + settleStr + " expected an integer, time in milliseconds");
+            }
+        }
+        //CONFIG_RECONCILE_INTERVAL
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_RECONCILE_INTERVAL) != null) {
+            String reconcileStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_RECONCILE_INTERVAL);
+            try {
+                reconcileInterval = ConfigUtils.timeParser(reconcileStr);
+                logger.debug("Setting reconcile interval to " + reconcileInterval + " seconds");
+            } catch (NumberFormatException nfe){
+                logger.warn("Invalid config entry : " + CONFIG_RECONCILE_INTERVAL + " : " + reconcileStr + " not a valid time interval. Setting to 24 hours");
+                reconcileInterval = 24 * 3600;
+            }
+        }
+
+        //CONFIG_VECTOR_BATCH_SIZE
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_VECTOR_BATCH_SIZE) != null) {
+            String batchSizeStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_VECTOR_BATCH_SIZE);
+            try {
+                vectorBatchSize = Integer.parseInt(batchSizeStr);
+                logger.debug("Setting Vector batch size to " + vectorBatchSize);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set Vector batch size to " + batchSizeStr + " expected an integer, number of documents per message");
+            }
+        }
+        //CONFIG_VECTOR_BATCH_MILLIS
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_VECTOR_BATCH_MILLIS) != null) {
+            String batchMillisStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_VECTOR_BATCH_MILLIS);
+            try {
+                vectorBatchMillis = Long.parseLong(batchMillisStr);
+                logger.debug("Setting Vector batch time limit to " + vectorBatchMillis);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set Vector batch time limit to " + batchMillisStr + " expected an integer, time in milliseconds");
+            }
+        }
+        vectorBatch = new VectorBatch(vectorBatchSize, vectorBatchMillis);
+
+        //CONFIG_VECTOR_POST_QUEUE_SIZE
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_VECTOR_POST_QUEUE_SIZE) != null) {
+            String postQueueStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_VECTOR_POST_QUEUE_SIZE);
+            try {
+                vectorPostQueueSize = Integer.parseInt(postQueueStr);
+                logger.debug("Setting Vector post queue size to " + vectorPostQueueSize);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set Vector post queue size to " + postQueueStr + " expected an integer, number of messages. Setting to " + vectorPostQueueSize);
+            }
+        }
+        //CONFIG_VECTOR_SPILL_DIR
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_VECTOR_SPILL_DIR) != null) {
+            vectorSpillDir = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_VECTOR_SPILL_DIR);
+        }
+        if (vectorPostQueueSize > 0){
+            // one spill file per walker thread, so after a restart each thread picks up its own
+            File spillFile = new File(vectorSpillDir, serviceName + "-" + threadNumber + ".spill");
+            // a poster still running on this spill file from before a restart is closed, and this one takes over
+            try {
+                vectorPoster = new VectorPoster("VectorPoster-" + serviceName + "-" + threadNumber, vectorPostQueueSize, spillFile, message -> {
+                    try {
+                        return sendToVectorQueue(message);
+                    } catch (JMSException jmse){
+                        logger.warn("Unable to post message to Vector queue : " + jmse.getLocalizedMessage());
+                        return false;
+                    }
+                }, logger);
+            } catch (IOException ioe){
+                logger.warn("Unable to start Vector poster : " + ioe.getLocalizedMessage() + " - posting to Vector directly");
+            }
+        }
+
+        //CONFIG_DELETE_BY_FOLDER
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_DELETE_BY_FOLDER) != null) {
+            deleteByFolder = Boolean.parseBoolean(PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_DELETE_BY_FOLDER));
+            logger.debug("Setting delete by folder to " + deleteByFolder);
+        }
+        //CONFIG_CHECKPOINT_INTERVAL
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CHECKPOINT_INTERVAL) != null) {
+            String checkpointIntervalStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CHECKPOINT_INTERVAL);
+            try {
+                checkpointInterval = Math.max(0, ConfigUtils.timeParser(checkpointIntervalStr));
+                logger.debug("Setting checkpoint interval to " + checkpointInterval + " seconds");
+            } catch (NumberFormatException nfe){
+                logger.warn("Invalid config entry : " + CONFIG_CHECKPOINT_INTERVAL + " : " + checkpointIntervalStr + " not a valid time interval. Setting to 10s");
+                checkpointInterval = 10;
+            }
+        }
+        //CONFIG_CHECKPOINT_DIR
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CHECKPOINT_DIR) != null) {
+            checkpointDir = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_CHECKPOINT_DIR);
+        }
+        //CONFIG_METRICS_INTERVAL
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_METRICS_INTERVAL) != null) {
+            String metricsIntervalStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_METRICS_INTERVAL);
+            try {
+                metricsInterval = Math.max(1, ConfigUtils.timeParser(metricsIntervalStr));
+                logger.debug("Setting metrics interval to " + metricsInterval + " seconds");
+            } catch (NumberFormatException nfe){
+                logger.warn("Invalid config entry : " + CONFIG_METRICS_INTERVAL + " : " + metricsIntervalStr + " not a valid time interval. Setting to 60s");
+                metricsInterval = 60;
+            }
+        }
+        //CONFIG_METRICS_FILE
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_METRICS_FILE) != null) {
+            metricsFile = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_METRICS_FILE);
+            logger.debug("Writing walker metrics to " + metricsFile);
+        }
+
         // refresh delay
         //CONFIG_REFRESH_DELAY
         if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_REFRESH_DELAY) != null) {
@@ -277,11 +530,21 @@ public class UniversalFileSysWalker extends ListeningService {
         }
 
 
-        if (smb_domain != null && smb_username != null && smb_password != null){
-            auth = new NtlmPasswordAuthentication(smb_domain, smb_username, smb_password);
-            if (null == auth){
-                throw new BadConfigurationException("unable to create new NtlmPasswordAuthentication ");
+        //CONFIG_SMB_MAX_REQUESTS_PER_SERVER
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_SMB_MAX_REQUESTS_PER_SERVER) != null) {
+            String maxRequestsStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_SMB_MAX_REQUESTS_PER_SERVER);
+            try {
+                smbMaxRequestsPerServer = Integer.parseInt(maxRequestsStr);
+                logger.debug("Setting max SMB requests per server to " + smbMaxRequestsPerServer);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set max SMB requests per server to " + maxRequestsStr + " expected an integer, number of concurrent requests. Setting to " + smbMaxRequestsPerServer);
             }
+        }
+
+        // every thread of this service shares the same auth, so they share the sessions jcifs has open to each server
+        smbPool = SmbSessionPool.getPool(serviceName, smb_domain, smb_username, smb_password, smbMaxRequestsPerServer);
+        auth = smbPool.getAuth();
+        if (null != auth){
             logger.trace("SMB parameters : domain = " + smb_domain + " : username = " + smb_username);
         }
 
@@ -293,72 +556,283 @@ public class UniversalFileSysWalker extends ListeningService {
         }
         // Load the crate/Trie
         if (PluginConfig.getFirstStore(serviceName) instanceof ProtectedTrie) {
-            logger.trace("Opening crate for " + serviceName + " :: Trie Name " + ((ProtectedTrie) PluginConfig.getFirstStore(serviceName)).getReadOnlyCrate().getName());
+            logger.trace("Opening crate for " + serviceName + " :: Trie Name " + ((ProtectedTrie) PluginConfig.getFirstStore(serviceName)).getName());
             crate = (ProtectedTrie) PluginConfig.getFirstStore(serviceName);
             logger.trace("Finished opening crate.");
         } else {
             throw new BadConfigurationException("FileSysWalker instance has been given wrong type of Store. Expected ProtectedTrie - receieved " + PluginConfig.getFirstStore(serviceName).getClass().getCanonicalName());
         }
 
+        throttle = CrawlThrottle.getThrottle(serviceName, vectorQueue, crawlDelay, throttleTargetDepth, throttleMaxDelay, logger);
+        logger.debug("Crawl throttle is " + throttle.getState());
+
         // tell the world we are ok
         this.setMessage(QUEUEREADYNMSG);
 
         logger.trace("Finished setting up crawler");
 
-        if (scheduledExecutorService.isShutdown()){
-            scheduledExecutorService = Executors.newScheduledThreadPool(5);
+        // one thread per service schedules the refreshes, on the scheduler's own thread
+        refreshScheduler = RefreshScheduler.getScheduler(serviceName, crawlQueue, () -> serviceController.isInstanceShutdown(serviceName), logger);
+        // new each time the service starts, so the metrics start again from zero too
+        metrics = WalkerMetrics.getMetrics(serviceName, refreshScheduler);
+        if (refreshScheduler.elect(threadNumber)){
+            scheduleRefreshes();
         }
 
-        scheduledExecutorService.scheduleWithFixedDelay(new Runnable() {
-            public void run() {
-                Set<String> roots = new HashSet<>();
-                // push the roots on to queue
-                if (PluginConfig.getPluginProperties(serviceName).getPropertiesByName(CONFIG_CRAWLERROOTS) != null){
-                    for (String s : PluginConfig.getPluginProperties(serviceName).getPropertiesByName(CONFIG_CRAWLERROOTS)){
-                        roots.add(s);
-                    }
-                }
-                synchronized (myLock){
-                    try {
-                        seedTheQueue(roots);
-                    } catch (Exception e){
-                        logger.warn("Scheduled Task to re-push crawl roots  failed");
-                        DEFLogManager.LogStackTrace(logger, "UniversalFSWalker:ScheduledTask",e);
-                    }
-                }
+        // Now we are ready to do our thang
+    }
 
+    /**
+     * Schedule the periodic refreshes of this service. Called on the leader thread only
+     */
+    private void scheduleRefreshes(){
+        refreshScheduler.schedule(() -> {
+            Set<String> roots = getCrawlRoots();
+            if (watchLocalRoots){
+                roots.removeIf(FolderWatcher::isWatchable); // these are reconciled below, on their own schedule
             }
-        }, refreshDelay,refreshDelay, TimeUnit.SECONDS);
+            startRefreshCycle(roots, "refresh");
+        }, refreshDelay, TimeUnit.SECONDS);
+
+        if (watchLocalRoots){
+            // the folder watcher picks up changes as they happen - this crawl catches anything it missed
+            refreshScheduler.schedule(() -> {
+                Set<String> roots = getCrawlRoots();
+                roots.removeIf(root -> ! FolderWatcher.isWatchable(root));
+                startRefreshCycle(roots, "reconcile");
+            }, reconcileInterval, TimeUnit.SECONDS);
+        }
 
-        // Now we are ready to do our thang
+        if (priorityRefresh && ! isRecoveryMode){
+            refreshScheduler.schedule(this::refreshPriorityBuckets, RefreshBuckets.TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        refreshScheduler.schedule(this::updateMetrics, metricsInterval, TimeUnit.SECONDS);
     }
 
     /**
-     * Gets called ONCE per service.
+     * Work out the walker's rates for the status message and, if metrics_file is set, write the metrics out
      */
-    @Override
-    public void onStartofService() throws JAXBException, MQException, BadConfigurationException, JMSException{
-        super.onStartofService();
+    private void updateMetrics(){
+        metrics.tick();
+        logger.debug("Walker metrics for " + serviceName + " : " + metrics.getSummary());
+        if (null != metricsFile){
+            try {
+                metrics.dump(new File(metricsFile));
+            } catch (IOException ioe){
+                logger.warn("Unable to write walker metrics to " + metricsFile + " : " + ioe.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * @return throughput and latency of this walker service, shared by all its threads - counters, timer histograms and
+     * per-root gauges, eg for the DEF status API to show with toJson()
+     */
+    public WalkerMetrics getMetrics(){
+        return metrics;
+    }
+
+    /**
+     * @return the crawl roots from config
+     */
+    private Set<String> getCrawlRoots(){
         Set<String> roots = new HashSet<>();
-        // push the roots on to queue
         if (PluginConfig.getPluginProperties(serviceName).getPropertiesByName(CONFIG_CRAWLERROOTS) != null){
             for (String s : PluginConfig.getPluginProperties(serviceName).getPropertiesByName(CONFIG_CRAWLERROOTS)){
                 roots.add(s);
             }
         }
-        synchronized (myLock){
-            if (! isSeeded){
-                seedTheQueue(roots);
-                isSeeded = true;
+        return roots;
+    }
+
+    /**
+     * Push roots onto the crawl queue to start a refresh cycle - unless a cycle is already in progress
+     * @param _roots roots to push
+     * @param _reason what the cycle is for, for the logs
+     */
+    private void startRefreshCycle(Set<String> _roots, String _reason){
+        if (_roots.isEmpty()){
+            return;
+        }
+        if (! refreshScheduler.startCycle()){
+            logger.debug("Refresh cycle in progress since " + refreshScheduler.getCycleStartTime() + " - not starting " + _reason + " of " + _roots.size() + " roots");
+            return;
+        }
+        try {
+            seedTheQueue(_roots);
+        } catch (Exception e){
+            logger.warn("Scheduled Task to push crawl roots for " + _reason + " failed");
+            DEFLogManager.LogStackTrace(logger, "UniversalFSWalker:ScheduledTask",e);
+        }
+    }
+
+    /**
+     * Set up a partitioned crawl. The vector queue must be the first output queue, followed by the crawl queues of the
+     * other nodes - this node's own crawl queue is its input queue
+     * @throws BadConfigurationException if this node's crawl queue is not a partition, or a partition has no queue
+     */
+    private void setUpPartitions() throws BadConfigurationException {
+        List<String> partitionQueues = new ArrayList<>();
+        for (String queueName : PluginConfig.getPluginProperties(serviceName).getPropertiesByName(CONFIG_PARTITION_QUEUES)){
+            partitionQueues.add(queueName);
+        }
+        int depth = CrawlPartitioner.DEFAULT_DEPTH;
+        //CONFIG_PARTITION_DEPTH
+        if (PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_PARTITION_DEPTH) != null) {
+            String depthStr = PluginConfig.getPluginProperties(serviceName).getPropertyByName(CONFIG_PARTITION_DEPTH);
+            try {
+                depth = Integer.parseInt(depthStr);
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - unable to set partition depth to " + depthStr + " expected an integer, number of path segments. Setting to " + depth);
             }
         }
+        partition = partitionQueues.indexOf(crawlQueue.getQueueName());
+        if (partition < 0){
+            throw new BadConfigurationException("Partitioned crawl - this node's crawl queue, " + crawlQueue.getQueueName() + " is not one of the partition queues " + partitionQueues);
+        }
+        if (partitionQueues.contains(vectorQueue.getQueueName())){
+            throw new BadConfigurationException("Partitioned crawl - the first output queue must be the vector queue, not " + vectorQueue.getQueueName());
+        }
+        partitionSessions.put(crawlQueue.getQueueName(), crawlQueueSession);
+        for (Object outputQueue : outputQueues){
+            MQueue queue = (MQueue)outputQueue;
+            if (partitionQueues.contains(queue.getQueueName()) && ! partitionSessions.containsKey(queue.getQueueName())){
+                partitionSessions.put(queue.getQueueName(), queue.getSession(serviceName));
+            }
+        }
+        for (String queueName : partitionQueues){
+            if (null == partitionSessions.get(queueName)){
+                throw new BadConfigurationException("Partitioned crawl - partition queue " + queueName + " must be an output queue of this service");
+            }
+        }
+        partitioner = new CrawlPartitioner(partitionQueues, depth);
+        logger.info("Partitioned crawl - this node crawls partition " + partition + " of " + partitionQueues.size() + ", from queue " + crawlQueue.getQueueName() + ", partition depth " + partitioner.getDepth());
+    }
+
+    /**
+     * @param _path path to a folder
+     * @return true if this node crawls the folder - always, unless the crawl is partitioned
+     */
+    private boolean isOwned(String _path){
+        return null == partitioner || partitioner.partitionFor(_path) == partition;
+    }
+
+    /**
+     * Post a crawl message to the crawl queue of the node that owns the folder - our own, unless the crawl is partitioned
+     * @param _path path to the folder
+     * @param _message crawl message for the folder
+     * @return false if the message could not be posted
+     * @throws MQException MQException
+     * @throws JMSException JMSException
+     */
+    private boolean postToOwner(String _path, String _message) throws MQException, JMSException {
+        long start = System.nanoTime();
+        try {
+            if (null == partitioner){
+                return crawlQueueSession.postTextMessage(_message);
+            }
+            return partitionSessions.get(partitioner.queueFor(_path)).postTextMessage(_message);
+        } finally {
+            metrics.time(WalkerMetrics.CRAWL_POST, start);
+        }
+    }
+
+    /**
+     * Hand a folder owned by another node over to it, to crawl or refresh
+     * @param _path path to the folder
+     * @param _level depth of the folder below its root
+     * @throws MQException MQException
+     * @throws JMSException JMSException
+     */
+    private void forwardFolder(String _path, int _level) throws MQException, JMSException {
+        if (postToOwner(_path, getFolderAsJson(CrawlMessage.toFileSysPath(_path), _level))){
+            logger.debug("Folder " + _path + " belongs to partition " + partitioner.queueFor(_path) + " - forwarded");
+        } else {
+            logger.warn("Failed to forward folder " + _path + " to partition queue " + partitioner.queueFor(_path));
+        }
+    }
+
+    /**
+     * Gets called ONCE per service.
+     */
+    @Override
+    public void onStartofService() throws JAXBException, MQException, BadConfigurationException, JMSException{
+        super.onStartofService();
+        Set<String> roots = getCrawlRoots();
+        metrics.setRoots(roots);
+        // finish what was in progress when we stopped, before anything new goes on the queue - on one thread only, or
+        // each unfinished unit would go back on the queue once per thread
+        boolean isLeader = refreshScheduler.elect(threadNumber);
+        if (isLeader){
+            recoverCheckpoints();
+        }
+        // push the roots on to queue - the first refresh cycle. If the queue still has folders from before a restart, seedTheQueue leaves them to finish
+        if (refreshScheduler.startCycle()){
+            seedTheQueue(roots);
+        }
+        // one watcher per service - started by one thread, so the threads don't keep replacing each other's
+        if (watchLocalRoots && ! isRecoveryMode && isLeader){
+            startFolderWatcher(roots);
+        }
+    }
+
+    /**
+     * Put the folders that are due a refresh, by how often they change, on the crawl queue. Each one only has its own
+     * files and sub-folders checked. Skipped while a refresh cycle is in progress - the cycle covers these folders anyway
+     */
+    private void refreshPriorityBuckets(){
+        try {
+            if (refreshScheduler.isCycleInProgress()){
+                logger.debug("Refresh cycle in progress - not pushing priority refresh folders on queue");
+                return;
+            }
+            List<String> due = RefreshBuckets.getMessagesDue(crate, System.currentTimeMillis());
+            for (String message : due){
+                if (! crawlQueueSession.postTextMessage(message)){
+                    logger.warn("Failed to put priority refresh folder on queue : instance=" + serviceName + " folder=" + message);
+                }
+            }
+            logger.debug("Pushed " + due.size() + " priority refresh folders onto input queue : " + crawlQueue.getQueueName());
+        } catch (Exception e){
+            logger.warn("Scheduled Task to push priority refresh folders failed");
+            DEFLogManager.LogStackTrace(logger, "UniversalFSWalker:PriorityRefreshTask",e);
+        }
+    }
+
+    /**
+     * Start watching the local roots of this service for changes. Each folder the watcher sees change is put on the
+     * crawl queue, and picked up by whichever walker thread is free
+     * @param _roots crawl roots from config - only the local ones are watched
+     */
+    private void startFolderWatcher(Set<String> _roots){
+        List<String> localRoots = new ArrayList<>();
+        for (String root : _roots){
+            if (FolderWatcher.isWatchable(root)){
+                localRoots.add(root);
+            }
+        }
+        if (localRoots.isEmpty()){
+            logger.info("Watch local roots is set but " + serviceName + " has no local roots to watch");
+            return;
+        }
+        FolderWatcher.startWatching(serviceName, localRoots, watchSettleMillis, (folder, isFolderOnly) -> {
+            try {
+                if (! crawlQueueSession.postTextMessage(getFolderAsJson(folder, 0, isFolderOnly))){
+                    logger.warn("Failed to put changed folder on queue : instance=" + serviceName + " folder=" + folder);
+                }
+            } catch (Exception e){
+                logger.warn("Unable to put changed folder, " + folder + " on crawl queue : " + e.getLocalizedMessage());
+            }
+        }, () -> serviceController.isInstanceShutdown(serviceName), logger);
     }
 
 
     /**
      * Process a message from crawl queue. Message *SHOULD* define a path to a FOLDER, otherwise we cannot crawl
-     * This method will process all the files in the folder, and recurse through two levels of sub-folders
-     * Any FOLDERS found at three levels below the starting folder will be added to the crawl queue
+     * This method will process all the files in the folder, and recurse through its sub-folders as far as the crawl
+     * unit allows - crawl_unit_depth levels, and crawl_unit_max_entries entries if set
+     * Any FOLDERS found below that will be added to the crawl queue
      * The message also defines a parameter called "depth" which represents the number of sub-folders from root
      * Depth is not currently used but could be used to control how far to recurse a deep file system
      * @param _message a Json String containing an "id" and a "depth" parameter where id defines a path to a  FOLDER to crawl
@@ -368,11 +842,12 @@ public class UniversalFileSysWalker extends ListeningService {
 
 
         // Slow things down - let's wait each time we see a new folder to crawl
-        try {
-            Thread.sleep(crawlDelay);
-        } catch (InterruptedException ie){
+        // the throttle decides how long, from config or from how far behind Vector is
+        throttle.pause();
 
-        }
+        // each crawl message is a new crawl unit
+        unitEntries = 0;
+        unitDepth = 0;
 
         String jsonMsg = _message;
         String filePath = null;
@@ -381,27 +856,42 @@ public class UniversalFileSysWalker extends ListeningService {
         DEFFileDocument f = null;
 
 
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode msgNode;
+        CrawlMessage msg;
         try {
-            msgNode = mapper.readTree(jsonMsg);
+            msg = CrawlMessage.fromJson(jsonMsg);
         } catch (IOException ioe){
             logger.warn("Unable to read JSON from incoming text message. Message is \"" + jsonMsg + "\"");
             return; // nothing more to do with this message
         }
-
-
-        try {
-            filePath = msgNode.get("id").getTextValue();
-            level = msgNode.get("level").getIntValue();
-        } catch (NullPointerException npe) {
+        if (null == msg) {
             logger.warn("Json Message on crawler input queue has no filepath attribute");
             return;
         }
+        filePath = msg.getId();
+        level = msg.getLevel();
+        // a folder the watcher saw change - only its own contents need checking
+        boolean isFolderOnly = msg.isFolderOnly();
+
+        if (null != filePath && ! isOwned(filePath)){
+            // eg a change seen by our folder watcher, in a folder another node crawls
+            try {
+                if (! postToOwner(filePath, _message)){
+                    logger.warn("Failed to forward folder " + filePath + " to partition queue " + partitioner.queueFor(filePath));
+                }
+            } catch (Exception e){
+                logger.warn("Unable to forward folder " + filePath + " to partition queue " + partitioner.queueFor(filePath) + " : " + e.getLocalizedMessage());
+            }
+            return;
+        }
         logger.trace("Read entry from queue - path = " + filePath);
 
         if (null != filePath) {
-            setMessage("Processing folder, " + filePath);
+            String summary = metrics.getSummary().isEmpty() ? "" : " : " + metrics.getSummary();
+            if (throttle.isAdaptive()){
+                setMessage("Processing folder, " + filePath + " : throttle " + throttle.getState() + summary);
+            } else {
+                setMessage("Processing folder, " + filePath + summary);
+            }
 
 
             boolean canProcess = filterFile(filePath);
@@ -410,7 +900,7 @@ public class UniversalFileSysWalker extends ListeningService {
                 if (filePath.startsWith("smb:")) {
                     logger.trace("Creating new SmbFile from " + filePath + " SMB parameters : domain = " + smb_domain + " : username = " + smb_username + " : password = " + smb_password);
                     logger.trace("Auth is " + auth);
-                    f = new DEFFileDocument(new SmbFile(filePath, auth), source, smb_domain,smb_username,smb_password);
+                    f = smbPool.getDocument(filePath, source);
                 } else if (filePath.startsWith("file://")){
                     f = new DEFFileDocument(new File(filePath.substring(7)),source);
                 } else {
@@ -421,21 +911,19 @@ public class UniversalFileSysWalker extends ListeningService {
                 // folder from crawl queue no longer exists
                 logger.warn("Walker pulled CIFS folder off the queue but error while opening it - " + filePath);
                 DEFLogManager.LogStackTrace(logger,"FSWalker:ProcessMessage",murle);
-                if (crate.getReadOnlyCrate().getNode(filePath) != null) {
+                if (crate.exists(filePath)) {
                     trieNodesToDelete.add(filePath);
                 }
                 return;
             } catch (MissingFileException mfe) {
                 // folder from crawl queue no longer exists
                 logger.warn("Walker pulled folder off the queue but no folder exists. " + filePath);
-                if (crate.getReadOnlyCrate().getNode(filePath) != null) {
-                    trieNodesToDelete.add(filePath);
-                }
+                deleteMissingFolder(filePath);
             } catch (BadDocumentException bdfe) {
                 // folder from crawl queue no longer exists
                 logger.warn("Walker pulled folder off the queue but error while opening it - " + filePath);
                 DEFLogManager.LogStackTrace(logger,"FSWalker:ProcessMessage",bdfe);
-                if (crate.getReadOnlyCrate().getNode(filePath) != null) {
+                if (crate.exists(filePath)) {
                     trieNodesToDelete.add(filePath);
                 }
                 return;
@@ -448,18 +936,17 @@ public class UniversalFileSysWalker extends ListeningService {
         int retryCount = 0;
 
         if (f != null) {
+            startCheckpoint(_message);
             if (!f.isDir()) {
                 // someone put a file on the queue - bad juju - only folders allowed
                 logger.warn("Walker pulled a file off the queue. Big NONO. Only FOLDERS are allowed on the queue" + f.getAbsolutePath());
             } else if (!f.exists()) {
                 logger.warn("Walker pulled folder off the queue but no folder exists. " + f.getAbsolutePath());
-                if (crate.getReadOnlyCrate().getNode(filePath) != null) {
-                    trieNodesToDelete.add(filePath);
-                }
+                deleteMissingFolder(filePath);
             } else if (!f.canRead()) {
                 // Might be a problem with auth - should report in logs, but we cannot carry on. SHould not assume we delete this from crates
                 logger.error("CIFS Walker not authorised to open this folder " + f.getAbsolutePath());
-            } else if (crate.getReadOnlyCrate().getNode(filePath) == null) {
+            } else if (null == crate.getFolder(filePath)) {
                 logger.trace("Crawling new folder - " + filePath);
                 // folder is good and we can read it - but we have not seen this folder before in the crates
                 // we are not refreshing it - we are crawling a new folder and sub-folders
@@ -470,7 +957,7 @@ public class UniversalFileSysWalker extends ListeningService {
                 boolean retry = true;
                 while (retry && retryCount < 5) {
                     try {
-                        crawlNewFolder(f, level);
+                        crawlNewFolder(FolderEntry.of(f, logger), level);
                         retry = false; // we are done - no more looping
                     } catch (JMSException jmse) {
                         // problem posting to a queue
@@ -494,8 +981,7 @@ public class UniversalFileSysWalker extends ListeningService {
                     // Let's start crawling again from here
                     logger.trace("This folder exists in Trie. Crawl its child folders");
                     try {
-                        // The File object is for a Folder so we can cast it's mirror from the Trie to a TrieBranch - it cannot be a Leaf
-                        checkCrateFolderForChildFolders((TrieBranch)crate.getReadOnlyCrate().getNode(filePath), auth, level);
+                        checkCrateFolderForChildFolders(crate.getFolder(filePath), auth, level, ! isFolderOnly);
                         retry = false; // we are done - no more looping
                     } catch (JMSException jmse) {
                         // problem posting to a queue
@@ -519,17 +1005,210 @@ public class UniversalFileSysWalker extends ListeningService {
             }
         }
 
-        // Finished processing a Folder from the queue - now insert to crate
-        crate.insertBranches(trieNodeBranchToInsert);
-        crate.insertLeaves(trieNodeLeavesToInsert);
-        crate.deleteNodes(trieNodesToDelete);
+        // Finished processing a Folder from the queue - send any documents still waiting in a batch, then insert to crate
+        try {
+            flushVectorBatch();
+        } catch (JMSException jmse){
+            logger.warn("Problem posting batch of documents to Vector queue : " + jmse.getLocalizedMessage());
+        }
+        if (null != vectorPoster){
+            // everything for these folders is posted, or in the spill file, before the crate says we have done them
+            vectorPoster.flush();
+        }
+        long flushStart = System.nanoTime();
+        finishCheckpoint();
+        updateCrate(trieNodeBranchToInsert, trieNodeLeavesToInsert, trieNodesToDelete, folderStampsToSet, foldersWithChanges);
+        if (null != checkpointFile){
+            // the checkpoint can go once the crate has saved these changes
+            finishedCheckpoints.put(checkpointFile, crate.getChangeCount());
+            checkpointFile = null;
+        }
+        pruneCheckpoints();
+        metrics.time(WalkerMetrics.CRATE_FLUSH, flushStart);
 
 
         trieNodeBranchToInsert.clear();
         trieNodeLeavesToInsert.clear();
         trieNodesToDelete.clear();
+        folderStampsToSet.clear();
+        foldersWithChanges.clear();
+        crawlRules.clearDecisions();
+
+        if (serviceController.isInstanceShutdown(serviceName)){
+            // the service is stopping - send or spill what is left and stop the poster thread, and stop the refreshes
+            if (null != vectorPoster){
+                vectorPoster.close();
+                vectorPoster = null;
+            }
+            refreshScheduler.shutdown();
+        }
+    }
+
+
+    /**
+     * Put what a crawl unit found in the crate - at the end of the unit, or from its checkpoint after a restart
+     * @param _branches folders to insert
+     * @param _leaves files to insert
+     * @param _deletes folders and files to delete
+     * @param _stamps folders listed, with their last modified date
+     * @param _changed folders listed in which files were inserted, updated or deleted
+     */
+    private void updateCrate(Set<String> _branches, CrateLeafBatch _leaves, Set<String> _deletes, Map<String,Long> _stamps, Set<String> _changed){
+        crate.insertBranches(_branches);
+        crate.insertLeaves(_leaves);
+        crate.deleteNodes(_deletes);
+        // only now is everything we found in these folders in the crate
+        long listed = System.currentTimeMillis();
+        for (Map.Entry<String,Long> stamp : _stamps.entrySet()){
+            // changed if files changed in it, or anything was added, removed or renamed in it since it was last listed
+            long[] lastStamp = crate.getFolderStamp(stamp.getKey());
+            boolean isChanged = _changed.contains(stamp.getKey()) || (null != lastStamp && lastStamp[0] != stamp.getValue());
+            crate.setFolderStamp(stamp.getKey(), stamp.getValue(), listed, isChanged);
+        }
     }
 
+    /**
+     * Start checkpointing a new crawl unit. Nothing is written until checkpoint_interval has passed - a unit that
+     * finishes before then is only checkpointed at the end, if it has changes for the crate. Folder stamps alone do not
+     * count - they are only a hint, so a refresh that found nothing new costs no checkpoint
+     * @param _message crawl message of the unit
+     */
+    private void startCheckpoint(String _message){
+        pruneCheckpoints();
+        if (checkpointInterval > 0){
+            checkpointFile = CrawlCheckpoint.newFile(new File(checkpointDir), serviceName, threadNumber);
+            checkpointMessage = _message;
+            lastCheckpoint = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Checkpoint the crawl unit in progress, if checkpoint_interval has passed since it was last checkpointed.
+     * Called each time we finish listing a folder
+     */
+    private void checkpointIfDue(){
+        if (null == checkpointFile || System.currentTimeMillis() - lastCheckpoint < checkpointInterval * 1000L){
+            return;
+        }
+        // every document for the changes in the checkpoint must be posted, or in the spill file, before it is written
+        try {
+            flushVectorBatch();
+        } catch (JMSException jmse){
+            logger.warn("Problem posting batch of documents to Vector queue - not checkpointing : " + jmse.getLocalizedMessage());
+            return;
+        }
+        if (null != vectorPoster){
+            vectorPoster.flush();
+        }
+        writeCheckpoint(false);
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
+    /**
+     * Checkpoint the crawl unit as finished, with all its changes, just before they go in the crate. The documents
+     * have been posted already. If the unit was cut short because the service is stopping, it is left unfinished, so
+     * it goes back on the queue when we start again
+     */
+    private void finishCheckpoint(){
+        if (null == checkpointFile){
+            return;
+        }
+        boolean isStopping = serviceController.isInstanceShutdown(serviceName);
+        boolean hasChanges = ! trieNodeBranchToInsert.isEmpty() || ! trieNodeLeavesToInsert.isEmpty() || ! trieNodesToDelete.isEmpty();
+        if (hasChanges || isStopping || checkpointFile.exists()){
+            writeCheckpoint(! isStopping);
+        }
+    }
+
+    private void writeCheckpoint(boolean _isFinished){
+        try {
+            new CrawlCheckpoint(checkpointMessage, _isFinished, trieNodeBranchToInsert, trieNodeLeavesToInsert, trieNodesToDelete, folderStampsToSet, foldersWithChanges).write(checkpointFile);
+        } catch (IOException ioe){
+            logger.warn("Unable to write crawl checkpoint " + checkpointFile.getAbsolutePath() + " : " + ioe.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Throw away the checkpoints of finished crawl units once the crate has saved their changes
+     */
+    private void pruneCheckpoints(){
+        if (finishedCheckpoints.isEmpty()){
+            return;
+        }
+        long durable = crate.getDurableChangeCount();
+        Iterator<Map.Entry<File,Long>> finished = finishedCheckpoints.entrySet().iterator();
+        while (finished.hasNext()){
+            Map.Entry<File,Long> checkpoint = finished.next();
+            if (checkpoint.getValue() > durable){
+                break; // the rest were finished later
+            }
+            if (checkpoint.getKey().exists() && ! checkpoint.getKey().delete()){
+                logger.warn("Unable to delete crawl checkpoint " + checkpoint.getKey().getAbsolutePath());
+            }
+            finished.remove();
+        }
+    }
+
+    /**
+     * If the walker stopped part way through crawl units, put the changes from their checkpoints in the crate, and
+     * put the units that had not finished back on the crawl queue. The files they had found are in the crate now, so
+     * their documents are not posted again. With folder_change_detection, the folders they had finished are not listed
+     * again either, as their stamps are back in the crate too.
+     * Only called on the leader thread of the service - the checkpoints of every thread are recovered here, apart from
+     * those of units started since the service started
+     */
+    private void recoverCheckpoints(){
+        List<File> found = CrawlCheckpoint.find(new File(checkpointDir), serviceName, refreshScheduler.getCheckpointMark());
+        if (found.isEmpty()){
+            return;
+        }
+        int resumed = 0;
+        for (File file : found){
+            CrawlCheckpoint checkpoint;
+            try {
+                checkpoint = CrawlCheckpoint.read(file);
+            } catch (IOException ioe){
+                logger.warn("Unable to read crawl checkpoint " + file.getAbsolutePath() + " : " + ioe.getLocalizedMessage() + " - ignoring it");
+                if (! file.delete()){
+                    logger.warn("Unable to delete crawl checkpoint " + file.getAbsolutePath());
+                }
+                continue;
+            }
+            updateCrate(checkpoint.getBranches(), checkpoint.getLeaves(), checkpoint.getDeletes(), checkpoint.getStamps(), checkpoint.getChanged());
+            if (! checkpoint.isFinished()){
+                try {
+                    if (! crawlQueueSession.postTextMessage(checkpoint.getMessage())){
+                        logger.warn("Failed to put unfinished crawl unit back on queue : " + checkpoint.getMessage() + " - keeping its checkpoint");
+                        continue;
+                    }
+                    resumed++;
+                } catch (MQException | JMSException e){
+                    logger.warn("Unable to put unfinished crawl unit back on queue : " + checkpoint.getMessage() + " : " + e.getLocalizedMessage() + " - keeping its checkpoint");
+                    continue;
+                }
+            }
+            finishedCheckpoints.put(file, crate.getChangeCount());
+        }
+        logger.info("Recovered " + found.size() + " crawl checkpoints for " + serviceName + " - " + resumed + " unfinished crawl units put back on the queue");
+    }
+
+    /**
+     * A folder from the crawl queue has gone - take it and everything under it out of the crate, and out of the index.
+     * With a partitioned crawl, this is how the node that found the folder deleted tells us about it
+     * @param _path path to the folder
+     */
+    private void deleteMissingFolder(String _path){
+        CrateFolder missing = crate.getFolder(_path);
+        if (null != missing){
+            try {
+                deleteFolderAndChildren(missing);
+            } catch (Exception e){
+                logger.warn("Problem posting deletes for missing folder, " + _path + " : " + e.getLocalizedMessage());
+            }
+        } else if (crate.exists(_path)) {
+            trieNodesToDelete.add(_path);
+        }
+    }
 
     /**
      * a method to read startpoints from config and add them to the input queue
@@ -595,12 +1274,14 @@ public class UniversalFileSysWalker extends ListeningService {
                 if (! sp.endsWith("/")){
                     sp = sp + "/";
                 }
+                if (! isOwned(sp)){
+                    logger.debug("Root folder, " + sp + " is crawled by partition " + partitioner.queueFor(sp) + " - not seeding it here");
+                    continue;
+                }
 
-                ObjectNode node = new ObjectNode(JsonNodeFactory.instance);
-                node.put("id" ,sp);
-                node.put("level",0);
-                logger.trace("Attempting to push root to queue : " + node.toString());
-                if (!crawlQueueSession.postTextMessage(node.toString())){
+                String rootMsg = CrawlMessage.toJson(sp, 0, false);
+                logger.trace("Attempting to push root to queue : " + rootMsg);
+                if (!crawlQueueSession.postTextMessage(rootMsg)){
                     logger.warn("Failed to put root folder on queue : instance=" + serviceName+" queue="+crawlQueue.getQueueName());
                 } else {
                     logger.debug("Pushed root folder, " + sp + " onto input queue : " + crawlQueue.getQueueName());
@@ -611,113 +1292,94 @@ public class UniversalFileSysWalker extends ListeningService {
 
 
     /**
-     * Check whether this file path meets the criteria for include and does not meet criteria for exclude
-     * patterns are supplied as simple regexes and tested against the full path to a file
-     * @param _path - full path to a file
-     * @return true if this file can be indexed - false if it should be excluded
+     * Filter out files by comparison to config rules for permitted names and types
+     * Decisions are remembered by the CrawlRules until the end of the crawl unit
+     *
+     * @param _name String - can be a file name or a full path
+     * @return true if the file name/path passes checks for file name and file extension
      */
-    private boolean filterByFileName(String _path){
+    private boolean filterFile(String _name){
+        return crawlRules.accept(_name);
+    }
 
-        boolean canInclude = true;
 
-        if (null != excludeFilePatterns) {
-            for (String ssn : excludeFilePatterns) {
-                if (_path.matches(ssn)) {
-                    canInclude = false;
-                    logger.debug("Rejecting file due to file name exclusions - " + _path + " failed against rule " + ssn);
-                    break;
-                }
-            }
-        }
-        return canInclude;
-    }
 
     /**
-     * Check whether this file should be excluded based in its extension
-     * @param _path - full path to a file
-     * @return true if this file type should be sent to be indexed - false if it should be skipped
+     * A folder in the crate no longer exists - take it and everything under it out of the index and the crate.
+     * With deleteByFolder, one DELETE document for the folder is sent, which Vector turns into a single delete of every
+     * document under it. Otherwise a DELETE is sent for each file under the folder.
+     * The folder is removed from the crate, with everything under it, in one go
+     * @param _root a folder in the crate that no longer exists in the file system
+     * @throws MQException exception thrown if unable to push entry to DELETES queue
      */
-    private boolean filterByFileType(String _path){
-        // filtering rules:
-        // - includes are applied first, and then any exclude rules
-        // - instance rules are used in preference to default rules
-        // - includeType of NULL is assumed to be all fileTypes
-        // -  empty includeType can be used to override a default includeType to include all files.
-
-        if (_path.lastIndexOf(".")!=-1 && _path.lastIndexOf(".")+1 < _path.length()) {
-            String extension = _path.substring(_path.lastIndexOf(".")+1);
-
-
-            // null means we don't have that list,
-            // size zero means we have an empty list - which we treat as a match
+    protected void deleteFolderAndChildren(CrateFolder _root) throws MQException, JMSException{
 
-            // Check if it's one we can include - if there are no include Types set, then all types are good
-            if (includeTypePatterns == null || includeTypePatterns.size() == 0 || includeTypePatterns.contains(extension)){
-                if (excludeTypePatterns == null || ! excludeTypePatterns.contains(extension)){
-                    return true;
-                } else {
-                    logger.debug("filterFileTypes exclude list doesn't like extension, \"" + extension + "\" : excluding " + _path);
-                    return false;
-                }
-            } else {
-                logger.debug("filterFileTypes include list doesn't like extension, \"" + extension + "\" : excluding " + _path);
-                return false;
-            }
+        trieNodesToDelete.add(_root.getFullPath()); // remove this node, and everything under it, from the crate
+        if (deleteByFolder){
+            deletesLog.info("DELETE called on " + _root.getFullPath() + " - sending one DELETE for everything under this folder");
+            postMessageToVector(getFolderDelete(_root.getFullPath(), serviceName).toJson());
+            metrics.count(WalkerMetrics.DELETES);
+        } else {
+            deletesLog.info("DELETE called on " + _root.getFullPath() + " - sending to DELETE queue for all files under this folder");
+        }
+        if (! deleteByFolder || null != partitioner){
+            // nothing more to do under the folder unless there are files to delete one by one, or foreign folders to tell about
+            deleteChildren(_root);
         }
-        // Default - if a file path does not have an extension, we include it
-        return true;
     }
 
-
     /**
-     * Filter out files by comparison to config rules for permitted names and types
-     *
-     * @param _name String - can be a file name or a full path
-     * @return true if the file name/path passes checks for file name and file extension
+     * Build the one DELETE document that takes a folder, and everything under it, out of the index. The id is the
+     * folder as the files under it were indexed - a local crate path such as data/projects is /data/projects on disk
+     * @param _cratePath path of the folder in the crate
+     * @param _serviceName name of the walker service
+     * @return DELETE document for the folder
      */
-    private boolean filterFile(String _name){
-        String path = _name;
-        if (path.endsWith("/")){
-            path = path.substring(0,path.length()-1);
-        }
-        return (filterByFileName(path) && filterByFileType(path));
+    public static iDocument getFolderDelete(String _cratePath, String _serviceName){
+        iDocument folderDoc = new DEFDocument(CrawlMessage.toFileSysPath(_cratePath), "FS:"+_serviceName);
+        folderDoc.setAction(ACTION_DELETE);
+        folderDoc.addField(FIELDNAME_DELETE_SCOPE, DELETE_SCOPE_FOLDER);
+        return folderDoc;
     }
 
-
-
     /**
-     * Recursive function to iterate from a TrieNode in a crates
-     * Find all the files associated with the node - push them to the DELETES queue so they are removed from index
-     * Find all the folders under the current node - send them to this function
-     * @param _root a TrieNode representing a folder in a tree FS that no longer exists
+     * Recursive function to iterate from a folder in a crate that no longer exists
+     * Without deleteByFolder, push a DELETE for all the files in the folder so they are removed from the index
+     * Tell the node that crawls any foreign sub-folder that it has gone, and send all the sub-folders to this function
+     * @param _folder a folder under a folder that no longer exists
      * @throws MQException exception thrown if unable to push entry to DELETES queue
      */
-    protected void deleteFolderAndChildren(TrieBranch _root) throws MQException, JMSException{
-
-        deletesLog.info("DELETE called on " + _root.getFullPath() + " - sending to DELETE queue for all files under this folder");
-        trieNodesToDelete.add(_root.getFullPath()); // remove this node from the crate
+    private void deleteChildren(CrateFolder _folder) throws MQException, JMSException{
 
-        List<TrieLeaf> childFiles = _root.getFiles();
-        iDocument childFile = null;
-        try {
-            // push  DELETE on to queue for all the files in this folder
-            for (TrieLeaf childLeaf : childFiles) {
-                if (_root.getFullPath().endsWith("/")){
-                    childFile = new DEFDocument(_root.getFullPath() + childLeaf.getName(), "FS:"+serviceName);
-                } else {
-                    childFile = new DEFDocument(_root.getFullPath() + "/" + childLeaf.getName(), "FS:"+serviceName);
+        if (! deleteByFolder){
+            List<CrateFile> childFiles = _folder.getFiles();
+            iDocument childFile = null;
+            try {
+                // push  DELETE on to queue for all the files in this folder
+                for (CrateFile childLeaf : childFiles) {
+                    if (_folder.getFullPath().endsWith("/")){
+                        childFile = new DEFDocument(_folder.getFullPath() + childLeaf.getName(), "FS:"+serviceName);
+                    } else {
+                        childFile = new DEFDocument(_folder.getFullPath() + "/" + childLeaf.getName(), "FS:"+serviceName);
+                    }
+                    childFile.setAction(ACTION_DELETE);
+                    postMessageToVector(childFile.toJson());
+                    metrics.count(WalkerMetrics.DELETES);
                 }
-                childFile.setAction(ACTION_DELETE);
-                postMessageToVector(childFile.toJson());
-            }
 
-        } catch (ConcurrentModificationException cme){
-            logger.warn("Problem while iterating over children of " + _root.getFullPath() + " - could not delete all file nodes under this crate node");
+            } catch (ConcurrentModificationException cme){
+                logger.warn("Problem while iterating over children of " + _folder.getFullPath() + " - could not delete all file nodes under this crate node");
+            }
         }
 
-        // Now push all the sub-folders under this folder into this method to delete their files
-        for (TrieBranch childNode : _root.getChildren()){
-            deleteFolderAndChildren(childNode);
+        // Now push all the sub-folders under this folder into this method - we only need to visit folders, not files,
+        // to find the foreign ones
+        for (CrateFolder childNode : _folder.getChildren()){
+            if (! isOwned(childNode.getFullPath())){
+                // only a marker here - the node that crawls it deletes it from its own crate
+                forwardFolder(childNode.getFullPath(), 0);
+            }
+            deleteChildren(childNode);
         }
     }
 
@@ -732,7 +1394,7 @@ public class UniversalFileSysWalker extends ListeningService {
      * @throws MQException MQ exception thrown if we cannot push to a queue
      * @throws JMSException JMS exception throw if we cannot push to a queue
      */
-    protected void checkCrateFolderForChildFiles(TrieBranch _trieNode, NtlmPasswordAuthentication _auth) throws MQException, JMSException{
+    protected void checkCrateFolderForChildFiles(CrateFolder _trieNode, NtlmPasswordAuthentication _auth) throws MQException, JMSException{
 
         if ( serviceController.isInstanceShutdown(serviceName)){
             logger.trace("in checkFolderForChildFiles but this service has been signalled to stop");
@@ -746,22 +1408,12 @@ public class UniversalFileSysWalker extends ListeningService {
         }
 
         DEFFileDocument parent = null;
-        String path = _trieNode.getFullPath();
-        if (path.startsWith("file://")){
-            path = path.substring(7);
-        }
-        // If the path is for Windows, it should start with a drive letter, eg C:  - if it's linux, it needs a leading "/" to be inserted cos a Trie don't know the difference
-        if (! (path.indexOf(":")>0) && ! path.startsWith("/")  ){
-            path = "/" + path;
-        }
-        if (path.endsWith("/")){
-            path = path.substring(0,path.length()-1);
-        }
+        String path = CrawlMessage.toFileSysPath(_trieNode.getFullPath());
 
         if (isSmb){
             try {
 
-                parent = new DEFFileDocument(new SmbFile(path, auth),source, smb_domain,smb_username,smb_password);
+                parent = smbPool.getDocument(path, source);
 
             } catch (MalformedURLException murle) {
                 logger.warn("FS Walker : exception opening SMB file at " + _trieNode.getFullPath() + " : " + murle.getLocalizedMessage());
@@ -786,8 +1438,16 @@ public class UniversalFileSysWalker extends ListeningService {
 
         // The folder exists - lets look for any child files it has now, and compare with the crate from last time round
         Map<String,List<String>> children = null;
+        Map<String,FolderEntry> listedSmbFiles = new HashMap<>(); // the documents we got from listing the share, so we don't open each file again
         try {
-            children = whatAboutTheChildren(Arrays.asList(parent.listFiles()), new ArrayList<>(_trieNode.getFiles()));
+            List<FolderEntry> listing = listFolder(FolderEntry.of(parent, logger));
+            if (isSmb) {
+                for (FolderEntry child : listing) {
+                    listedSmbFiles.put(child.getAbsolutePath(), child);
+                    listedSmbFiles.put(child.getId(), child);
+                }
+            }
+            children = whatAboutTheChildren(listing, new ArrayList<>(_trieNode.getFiles()));
         } catch (BadDocumentException bdde){
             logger.warn("problem while listing all the child files of folder, " + parent.getAbsolutePath() + " : might be signal to stop");
             DEFLogManager.LogStackTrace(logger,"FileSysWalker:WATC",bdde);
@@ -795,6 +1455,9 @@ public class UniversalFileSysWalker extends ListeningService {
 
         // Now process them in order - INSERTS first
         if (null != children) {
+            if (! children.get(DOCUMENT_CONSTANTS.ACTION_INSERT).isEmpty() || ! children.get(DOCUMENT_CONSTANTS.ACTION_UPDATE).isEmpty() || ! children.get(ACTION_DELETE).isEmpty()){
+                foldersWithChanges.add(_trieNode.getFullPath());
+            }
             for (String s : children.get(DOCUMENT_CONSTANTS.ACTION_INSERT)) {
                 String insertStr = s;
                 String absPath = null;
@@ -807,9 +1470,7 @@ public class UniversalFileSysWalker extends ListeningService {
                     try {
                         DEFDocument updateDoc;
                         if (isSmb) {
-                            // create SmbFile for this child file
-                            // TODO - ******** full path?
-                            updateDoc = new DEFFileDocument(absPath,source,smb_domain,smb_username,smb_password);
+                            updateDoc = getSmbDocument(absPath, listedSmbFiles);
                         } else {
                             File f = new File(absPath);
                             updateDoc = new DEFFileDocument(f,source);
@@ -818,7 +1479,8 @@ public class UniversalFileSysWalker extends ListeningService {
                         // push doc on to the queue
                         postMessageToVector(updateDoc.toJson());
                         insertsLog.info(updateDoc.getId()+":"+updateDoc.getLastModifiedZulu()+":"+updateDoc.getDataSize());
-                        trieNodeLeavesToInsert.add(updateDoc.getId()+"_:_"+updateDoc.getLastModified()+"_:_"+updateDoc.getDataSize()); // file to add to the crate
+                        metrics.count(WalkerMetrics.INSERTS);
+                        trieNodeLeavesToInsert.add(updateDoc.getId(), updateDoc.getLastModified(), updateDoc.getDataSize()); // file to add to the crate
                     } catch (MissingFileException mfe) {
                         logger.warn("Folder, " + parent.getAbsolutePath() + " had a child file, " + s + " but now the file cannot be found");
                     } catch (BadDocumentException bdfe) {
@@ -836,11 +1498,10 @@ public class UniversalFileSysWalker extends ListeningService {
                 try {
                     DEFDocument updateDoc;
                     if (isSmb) {
-                        // create SmbFile for this child file
-                        updateDoc = new DEFFileDocument(s, source,smb_domain,smb_username,smb_password);
+                        updateDoc = getSmbDocument(s, listedSmbFiles);
                     } else {
                         File f = new File(s + File.separator);
-                        trieNodeLeavesToInsert.add(f.getAbsolutePath()+"_:_"+f.lastModified()+"_:_"+f.length()); // file to add to the crate
+                        trieNodeLeavesToInsert.add(f.getAbsolutePath(), f.lastModified(), f.length()); // file to add to the crate
                         updateDoc = new DEFFileDocument(f,source);
                     }
                     updateDoc.setAction(DOCUMENT_CONSTANTS.ACTION_UPDATE);
@@ -848,6 +1509,7 @@ public class UniversalFileSysWalker extends ListeningService {
                     postMessageToVector(updateDoc.toJson());
                     logger.debug("Pushing doc to Vector for update : " + s);
                     updatesLog.info(updateDoc.getId()+":"+updateDoc.getLastModifiedZulu()+":"+updateDoc.getDataSize());
+                    metrics.count(WalkerMetrics.UPDATES);
                 } catch (MissingFileException mfe) {
                     logger.warn("Folder, " + parent.getAbsolutePath() + " had a child file, " + s + " but now the file cannot be found");
                 } catch (BadDocumentException bdfe) {
@@ -863,13 +1525,15 @@ public class UniversalFileSysWalker extends ListeningService {
             }
 
             for (String s : children.get(WALKER_CONSTANTS.STATUS_REJECT)) {
-                logger.debug("Rejecting file, " + _trieNode.getFullPath() + s + " because it does not match all rules");
+                logger.debug("Rejecting file, " + s + " because it does not match all rules");
             }
+            metrics.count(WalkerMetrics.REJECTS, children.get(WALKER_CONSTANTS.STATUS_REJECT).size());
 
             for (String s : children.get(ACTION_DELETE)) {
                 DEFDocument deleteDoc = new DEFDocument(_trieNode.getFullPath() + File.separator + s, "FS:" + serviceName);
                 deleteDoc.setAction(ACTION_DELETE);
                 postMessageToVector(deleteDoc.toJson());
+                metrics.count(WalkerMetrics.DELETES);
                 trieNodesToDelete.add(deleteDoc.getId());
                 deletesLog.debug(_trieNode.getFullPath() + "/" + s);
             }
@@ -885,7 +1549,20 @@ public class UniversalFileSysWalker extends ListeningService {
      * @throws MQException MQException MQ exception thrown if we cannot push to a queue
      * @throws JMSException JMS Exception MQ exception thrown if we cannot push to a queue
      */
-    protected void checkCrateFolderForChildFolders(final TrieBranch _trieNode, NtlmPasswordAuthentication _auth, int _depth) throws MQException, JMSException{
+    protected void checkCrateFolderForChildFolders(final CrateFolder _trieNode, NtlmPasswordAuthentication _auth, int _depth) throws MQException, JMSException{
+        checkCrateFolderForChildFolders(_trieNode, _auth, _depth, true);
+    }
+
+    /**
+     * Check a folder in the crate against the file-system
+     * @param _trieNode the folder in the crate
+     * @param _auth Ntlm Password Auth for Smb Share
+     * @param _depth depth from crawl root for this node - controls how deep we can crawl
+     * @param _recurse if false, only the folder's own files and sub-folders are checked - sub-folders already in the crate are not crawled
+     * @throws MQException MQException MQ exception thrown if we cannot push to a queue
+     * @throws JMSException JMS Exception MQ exception thrown if we cannot push to a queue
+     */
+    protected void checkCrateFolderForChildFolders(final CrateFolder _trieNode, NtlmPasswordAuthentication _auth, int _depth, boolean _recurse) throws MQException, JMSException{
 
         // did we get asked to stop already?
         if ( serviceController.isInstanceShutdown(serviceName)){
@@ -900,27 +1577,19 @@ public class UniversalFileSysWalker extends ListeningService {
             isSmb = true;
         }
 
-        String path = _trieNode.getFullPath();
-        if (path.startsWith("file://")){
-            path = path.substring(7);
-        }
-        // If the path is for Windows, it should start with a drive letter, eg C:  - if it's linux, it needs a leading "/" to be inserted
-        if (! (path.indexOf(":")>0) && ! path.startsWith("/")  ){
-            path = "/" + path;
-        }
-        if (path.endsWith("/")){
-            path = path.substring(0,path.length()-1);
-        }
+        String path = CrawlMessage.toFileSysPath(_trieNode.getFullPath());
 
         DEFFileDocument f = null;
 
         try {
             if (isSmb) {
-                f = new DEFFileDocument(_trieNode.getFullPath(),source, smb_domain,smb_username,smb_password);
+                f = smbPool.getDocument(_trieNode.getFullPath(), source);
             } else {
                 f = new DEFFileDocument(new File(path),source);
             }
-        }catch (MissingFileException mfe){
+        } catch (MalformedURLException murle){
+            logger.warn("FS Walker : exception opening SMB folder at " + _trieNode.getFullPath() + " : " + murle.getLocalizedMessage());
+        } catch (MissingFileException mfe){
             logger.warn("Folder not found while looking for child folders under it - " + path);
         } catch (BadDocumentException bdfe){
             logger.warn("Exception creating DEF File from " + path +  ":: " + bdfe.getLocalizedMessage());
@@ -940,44 +1609,83 @@ public class UniversalFileSysWalker extends ListeningService {
 //            branchNode.removeNodeAndChildren(); // remove it from the crates
         } else if (f.isDir()){ // it still exists and is a folder
 
+            // read before we list the folder, so a change made while we list it is seen next time
+            long folderLastModified = f.getLastModified();
+            if (_recurse && isFolderUnchanged(_trieNode.getFullPath(), folderLastModified)){
+                // nothing has been added to, removed from or renamed in this folder since we last listed it - but its sub-folders may have changed
+                logger.trace("Folder unchanged since last listed, checking its sub-folders only - " + path);
+                for (CrateFolder childNode : _trieNode.getChildren()){
+                    if (isOwned(childNode.getFullPath())) {
+                        refreshSubFolder(childNode, _auth, _depth + 1);
+                    } else {
+                        forwardFolder(childNode.getFullPath(), _depth + 1);
+                    }
+                }
+                return;
+            }
+
             logger.trace("Sending a branch node / folder to check on its leaf nodes/files. Node name is " + _trieNode.getName() + " - full path is " + _trieNode.getFullPath());
             // First look at the files that exist in this folder - compare with the Trie and make sure inserts/updates/deletes are put on the MQ
             checkCrateFolderForChildFiles(_trieNode,_auth); // check its immediate files - updates, inserts, deletes, touches
 
             // Now look at any child folders underneath the current folder
-            DEFFileDocument[] subFolders = null;
+            List<FolderEntry> subFolders = null;
+            Set<String> unreadableNames = new HashSet<>();
             try {
-                subFolders = f.listFolders(); // now look for sub folders
+                subFolders = new ArrayList<>();
+                List<FolderEntry> listing = listFolder(FolderEntry.of(f, logger));
+                unitEntries += listing.size();
+                for (FolderEntry child : listing) { // now look for sub folders
+                    if (child.isDir()){
+                        subFolders.add(child);
+                    } else if (child.isUnreadable()){
+                        unreadableNames.add(child.getName()); // could be a folder - we can't tell, so don't delete it
+                    }
+                }
             } catch (BadDocumentException bdfe){
                 logger.warn("Error while reading sub-folders under a folder : " + f.getAbsolutePath() + " :: " + bdfe.getLocalizedMessage());
+                subFolders = null;
             }
             if (subFolders != null) {
-                for (DEFFileDocument subfolder : subFolders) {
-                    if (subfolder.isDir() && filterFile(subfolder.getAbsolutePath())) {
+                folderStampsToSet.put(_trieNode.getFullPath(), folderLastModified);
+                checkpointIfDue();
+                Set<String> acceptedSubFolderNames = new HashSet<>(subFolders.size() * 2);
+                for (FolderEntry subfolder : subFolders) {
+                    if (filterFile(subfolder.getAbsolutePath())) {
+                        acceptedSubFolderNames.add(subfolder.getName());
                         // does this folder exist in the crates or is it new?
-                        if (_trieNode.childExists(subfolder.getName())) { // the sub folder is in the crate : crawl it recursively with this function
-                            checkCrateFolderForChildFolders(_trieNode.moveToChildNode(subfolder.getName()), _auth, _depth++);
+                        if (! isOwned(subfolder.getAbsolutePath())) {
+                            // another node crawls this one - keep a marker for it, so we notice if it goes
+                            boolean isNew = ! _trieNode.childExists(subfolder.getName());
+                            if (isNew) {
+                                trieNodeBranchToInsert.add(subfolder.getAbsolutePath());
+                            }
+                            if (_recurse || isNew) {
+                                forwardFolder(subfolder.getAbsolutePath(), _depth + 1);
+                            }
+                        } else if (_trieNode.childExists(subfolder.getName())) { // the sub folder is in the crate : crawl it recursively with this function
+                            if (_recurse) {
+                                refreshSubFolder(_trieNode.moveToChildNode(subfolder.getName()), _auth, _depth + 1);
+                            }
                         } else {
                             // its a new folder
-                            crawlNewFolder(subfolder, _depth++);
+                            crawlNewFolder(subfolder, _depth + 1);
                         }
                     }
                 }
-            }
 
-            // we checked all the folders that exist on the FS - now how about the ones in the crates - any been deleted?
-            for (TrieBranch childNode : _trieNode.getChildren()){
-                boolean folderExists = false;
-                for (DEFFileDocument smbf : subFolders){
-                    if (smbf.isDir() && smbf.getName().equals(childNode.getName()) && filterFile(smbf.getAbsolutePath())){
-                        folderExists = true;
-                        break;
+                // we checked all the folders that exist on the FS - now how about the ones in the crates - any been deleted?
+                // (if we could not list the folder, we can't tell, so we don't delete anything - nor any entry we could not read)
+                for (CrateFolder childNode : _trieNode.getChildren()){
+                    if (! acceptedSubFolderNames.contains(childNode.getName()) && ! unreadableNames.contains(childNode.getName())){
+                        if (! isOwned(childNode.getFullPath())){
+                            // the node that crawls it finds it has gone, and deletes it from its crate and the index
+                            forwardFolder(childNode.getFullPath(), _depth + 1);
+                        }
+                        // there was a folder here previously but now its gone
+                        deleteFolderAndChildren(childNode); // push entries on DELETE queue so files are removed from Solr
                     }
                 }
-                if (! folderExists){
-                    // there was a folder here previously but now its gone
-                    deleteFolderAndChildren(childNode); // push entries on DELETE queue so files are removed from Solr
-                }
             }
         } else {
             // f is not a directory - its just a regular file
@@ -988,9 +1696,10 @@ public class UniversalFileSysWalker extends ListeningService {
                     f.setAction(DOCUMENT_CONSTANTS.ACTION_INSERT);
                     f.setTitle(_trieNode.getName());
                     postMessageToVector(f.toJson());
-                    trieNodeLeavesToInsert.add(f.getName()+"_:_"+f.getLastModified()+"_:_"+f.getDataSize());
+                    trieNodeLeavesToInsert.add(f.getName(), f.getLastModified(), f.getDataSize());
                     logger.debug("Previously this was a folder - now it is a file - " + f.getName());
                     insertsLog.info(f.getName()+":"+f.getLastModifiedZulu()+":"+f.getDataSize());
+                    metrics.count(WalkerMetrics.INSERTS);
             } else {
                 logger.debug("Last time, this was a folder. Now it is a file. However it doesn't meet the rules so it is skipped - " + f.getAbsolutePath());
             }
@@ -998,14 +1707,52 @@ public class UniversalFileSysWalker extends ListeningService {
 
     }
 
+    /**
+     * Refresh a sub-folder that is already in the crate - here, as part of this crawl unit, or, if this unit has gone
+     * as deep as refreshUnitDepth or listed crawl_unit_max_entries already, by putting it on the crawl queue for
+     * whichever thread is free
+     * @param _trieNode the sub-folder in the crate
+     * @param _auth Ntlm Password Auth for Smb Share
+     * @param _depth depth from crawl root of the sub-folder
+     * @throws MQException MQ exception thrown if we cannot push to a queue
+     * @throws JMSException JMS exception throw if we cannot push to a queue
+     */
+    private void refreshSubFolder(CrateFolder _trieNode, NtlmPasswordAuthentication _auth, int _depth) throws MQException, JMSException{
+        if (isUnitFull(unitDepth + 1, refreshUnitDepth)){
+            String path = CrawlMessage.toFileSysPath(_trieNode.getFullPath());
+            if (! postToOwner(path, getFolderAsJson(path, _depth))){
+                logger.warn("Failed to put folder on crawl queue : instance=" + serviceName + " folder=" + path);
+            }
+            return;
+        }
+        unitDepth++;
+        try {
+            checkCrateFolderForChildFolders(_trieNode, _auth, _depth);
+        } finally {
+            unitDepth--;
+        }
+    }
+
+    /**
+     * Has the crawl message being processed done enough? Either it has gone as deep as it may, or, if
+     * crawl_unit_max_entries is set, it has listed that many files and folders
+     * @param _depth depth below the crawl message's folder of the next folder we would list
+     * @param _maxDepth deepest folder one crawl message may list
+     * @return true if the next folder should go back on the crawl queue rather than be listed by this crawl message
+     */
+    private boolean isUnitFull(int _depth, int _maxDepth){
+        return _depth >= _maxDepth || (crawlUnitMaxEntries > 0 && unitEntries >= crawlUnitMaxEntries);
+    }
+
     /**
      * Compare the TrieLeaf nodes that we saw last time we looked at this folder against the current contents of the folder
+     * The leaves are indexed by name so the comparison is O(n+m), and the crawl rules are checked once per file
      *
-     * @param childFiles List of DEFFileDocuments that are all children of single parent folder
+     * @param childFiles List of FolderEntries that are all children of single parent folder
      * @param childNodes list of TrieLeaf nodes representing files that are stored in the crate
      * @return Map of four Lists - each List contains file names that children of a single parent folder. Maps are called "insert","delete","unchange","update"
      */
-    protected Map<String,List<String>> whatAboutTheChildren(List<DEFFileDocument> childFiles, List<TrieLeaf> childNodes){
+    protected Map<String,List<String>> whatAboutTheChildren(List<FolderEntry> childFiles, List<CrateFile> childNodes){
 
 
         if (childFiles == null || childNodes == null){
@@ -1027,48 +1774,47 @@ public class UniversalFileSysWalker extends ListeningService {
         currentStatus.put(WALKER_CONSTANTS.STATUS_REJECT, rejects);
 
 
-        boolean filefound = false;
+        // Index the leaves from the crate by name, so each file on the file-sys is matched with a single lookup
+        Map<String,CrateFile> leavesByName = new HashMap<>(childNodes.size() * 2);
+        for (CrateFile leaf : childNodes){
+            leavesByName.put(leaf.getName(), leaf);
+        }
+        Set<String> namesOnFileSys = new HashSet<>(childFiles.size() * 2);
+
         // First look at all the files that exist on the file-sys underneath this folder
-        for (DEFFileDocument defFile : childFiles){
-            logger.trace("WATC: checking a childFile DEFFileDocument with id => " + defFile.getId() + " GUID => " + defFile.getGuid());
-            if (defFile.isFile()) {  // the array contains folders and files - we only compare the files with TrieLeaves
-                logger.trace("DEFFILE " + defFile.getId() + " says it is a file");
-                filefound = false; // marker for each child file in the folder
-                for (TrieLeaf leaf : childNodes) {
-                    if (leaf.getName().equals(defFile.getName()) && filterFile(defFile.getName())){
-                        // File on the file-system corresponds to a leaf in the trie so we have seen this one before
-                        logger.trace("WATC - this file exists in the trie");
-                        filefound = true;
-                        if ( leaf.getLastModifiedDate()/1000 < defFile.getLastModified()/1000) {  // ignore milliseconds
-                            update.add(defFile.getId());
-                            logger.trace("WATC: UPDATE : leaf file " + leaf.getName() + " has lastmod = " + leaf.getLastModifiedDate() + " while deffile " + defFile.getId() + " has lastmod " + defFile.getLastModified() + " :: PUSH TO UPDATE");
-                        } else {
-                            unchange.add(defFile.getId());
-                            logger.trace("WATC: UNCHANGED : " + defFile.getId());
-                        }
-                        break;
-                    }
-                }
-                if (!filefound) {
-                    // Its a new file
-                    logger.debug("WATC : DEF File " + defFile.getId() + " does not exist in Trie so add it to INSERTS as a new file");
-                    insert.add(defFile.getAbsolutePath() + "::" + defFile.getLastModified() + "::" + defFile.getDataSize());
-                }
-            } else {
+        for (FolderEntry defFile : childFiles){
+            logger.trace("WATC: checking a childFile with id => " + defFile.getId());
+            namesOnFileSys.add(defFile.getName());
+            if (defFile.isUnreadable()) {  // still there, but we can't tell if it has changed - leave the leaf as it is
+                continue;
+            }
+            if (! defFile.isFile()) {  // the list contains folders and files - we only compare the files with TrieLeaves
                 logger.trace("WATC: DEFFILE " + defFile.getId() + " says it is a FOLDER so do nothing");
+                continue;
+            }
+            logger.trace("DEFFILE " + defFile.getId() + " says it is a file");
+            if (! filterFile(defFile.getName())){
+                rejects.add(defFile.getId());
+                continue;
+            }
+            CrateFile leaf = leavesByName.get(defFile.getName());
+            if (null == leaf) {
+                // Its a new file
+                logger.debug("WATC : DEF File " + defFile.getId() + " does not exist in Trie so add it to INSERTS as a new file");
+                insert.add(defFile.getAbsolutePath() + "::" + defFile.getLastModified() + "::" + defFile.getSize());
+            } else if ( leaf.getLastModifiedDate()/1000 < defFile.getLastModified()/1000) {  // ignore milliseconds
+                // File on the file-system corresponds to a leaf in the trie so we have seen this one before
+                update.add(defFile.getId());
+                logger.trace("WATC: UPDATE : leaf file " + leaf.getName() + " has lastmod = " + leaf.getLastModifiedDate() + " while deffile " + defFile.getId() + " has lastmod " + defFile.getLastModified() + " :: PUSH TO UPDATE");
+            } else {
+                unchange.add(defFile.getId());
+                logger.trace("WATC: UNCHANGED : " + defFile.getId());
             }
         }
 
-        // Now check for deletes
-        for (TrieLeaf leaf : childNodes){
-            filefound = false;
-            for (DEFFileDocument defFile : childFiles){
-                if (leaf.getName().equals(defFile.getName())){
-                    filefound = true;
-                    break;
-                }
-            }
-            if (filefound == false){
+        // Now check for deletes - any leaf whose name is no longer in the folder
+        for (CrateFile leaf : childNodes){
+            if (! namesOnFileSys.contains(leaf.getName())){
                 // file no longer exists in folder
                 delete.add(leaf.getName());
             }
@@ -1079,77 +1825,91 @@ public class UniversalFileSysWalker extends ListeningService {
 
     /**
      * Crawler has found a new folder, not already seen in the crates.
-     * Crawl its child files/folders, and sub-folders down three levels
-     * Any folders found at three levels deep beneath this start are put back on a crawl queue and will be picked up by another worker thread
+     * Crawl its child files/folders, and its sub-folders level by level down to crawl_unit_depth levels (by default,
+     * its children and grandchildren). If crawl_unit_max_entries is set, we also stop going deeper once this crawl
+     * message has listed that many entries - a wide folder makes one work unit on its own, and a small deep tree is
+     * crawled in one go rather than spread over many queue messages.
+     * Any folders we do not list are put back on a crawl queue and will be picked up by another worker thread
+     * If crawl_parallelism is set, the sub-folders are listed concurrently on the listing pool for the share
 
      * @param _rootfolder a folder (probably) to start crawling from
      * @param _level the depth of this starting folder from a "root", the top level folder for us to crawl from
      * @throws MQException exception throw if we are unable to add a new entry onto a MQ crawl queue
      * @throws JMSException exception throw if we are unable to add a new entry onto a MQ crawl queue
      */
-    protected void crawlNewFolder(DEFFileDocument _rootfolder, int _level) throws MQException, JMSException{
+    protected void crawlNewFolder(FolderEntry _rootfolder, int _level) throws MQException, JMSException{
 
         if (serviceController.isInstanceShutdown(serviceName)) {
-            logger.trace("in new folders under " + _rootfolder.getPath() + "but this service has been signalled to stop");
+            logger.trace("in new folders under " + _rootfolder.getAbsolutePath() + "but this service has been signalled to stop");
             return;
         }
 
         logger.trace("Crawling a new folder - " + _rootfolder.getAbsolutePath());
 
         try {
-            // For this run of the crawler, we iterate over three levels of folder
-            // If there are child folders below 3 levels, put them on the queue and another worker thread will do them
+            // List the folder and its sub-folders breadth first, so if we run out of budget for this crawl unit, the
+            // folders we put back on the queue are the deepest ones
             if (_rootfolder.isDir()) {
-                for (DEFFileDocument child : _rootfolder.listFiles()) {
-                    logger.trace("crawler found child  - " + _rootfolder.getName() + "/" + child.getName());
-                    if (child.canRead() && filterFile(child.getPath())) {
-                        if (child.isDir()) { // its a folder, put it on the input queue
-                            logger.trace("Child is a folder");
-                            if (serviceController.isInstanceShutdown(serviceName)) {
-                                serviceController.setMessageForInstanceThread(serviceName, threadNumber, "stopping - just one more folder... " + _rootfolder.getName() + "/" + child.getName());
-                            } else {
-                                serviceController.setMessageForInstanceThread(serviceName, threadNumber, "processing folder " + _rootfolder.getName() + "/" + child.getName());
-                            }
-                            trieNodeBranchToInsert.add(child.getAbsolutePath());
+                Deque<FolderEntry> folders = new ArrayDeque<>();
+                Deque<Integer> depths = new ArrayDeque<>(); // depth of each folder in folders, below _rootfolder
+                Map<FolderEntry,Future<List<FolderEntry>>> listings = new HashMap<>();
+                folders.add(_rootfolder);
+                depths.add(0);
+
+                while (! folders.isEmpty()) {
+                    FolderEntry folder = folders.poll();
+                    int depth = depths.poll();
+                    if (depth > 0) {
+                        if (serviceController.isInstanceShutdown(serviceName)) {
+                            serviceController.setMessageForInstanceThread(serviceName, threadNumber, "stopping - just one more folder... " + folder.getAbsolutePath());
+                        } else {
+                            serviceController.setMessageForInstanceThread(serviceName, threadNumber, "processing folder " + folder.getAbsolutePath());
+                        }
+                    }
 
-                            for (DEFFileDocument grandChild : child.listFiles()) {
-                                logger.trace("crawler found grandchild  - " + _rootfolder.getName() + "/" + child.getName() + "/" + grandChild.getName());
-                                if (grandChild.canRead() && filterFile(grandChild.getPath())) {
-                                    if (grandChild.isDir()) {
-                                        logger.trace("Grandchild is a folder");
-                                        // Its a folder - we don't process it, we just put it back on the crawl queue so it gets processed later
-                                        crawlQueueSession.postTextMessage(getFolderAsJson(grandChild.getAbsolutePath(), _level + 2));
-                                        trieNodeBranchToInsert.add(grandChild.getAbsolutePath());
-                                        logger.debug("Found new folder to enqueue - " + grandChild.getAbsolutePath());
-                                    } else if (filterFile(grandChild.getName()) && grandChild.getDataSize() < maxFileSize) {
-                                        // Its a file and we can INSERT it
-                                        logger.trace("grandchild is a file and we can insert it - " + grandChild.getName());
-                                        grandChild.setAction(DOCUMENT_CONSTANTS.ACTION_INSERT);
-                                        grandChild.setTitle(grandChild.getName());
-                                        postMessageToVector(grandChild.toJson());
-                                         insertsLog.info(grandChild.getAbsolutePath()+":"+grandChild.getLastModifiedZulu()+":"+grandChild.getDataSize());
-                                         trieNodeLeavesToInsert.add(grandChild.getAbsolutePath()+"_:_"+grandChild.getLastModified()+"_:_"+grandChild.getDataSize());
-                                    } else {
-                                        //Its a file and we cannot insert it
-                                        logger.debug("Rejecting file, " + grandChild.getAbsolutePath() + " because it does not match all rules");
-                                    }
-                                }
-                            }
+                    long folderLastModified = folder.getLastModified(); // for a sub-folder, read when its parent was listed, so before it is
+                    List<FolderEntry> children = new ArrayList<>();
+                    List<FolderEntry> listing = getFolderListing(folder, listings);
+                    unitEntries += listing.size();
+                    for (FolderEntry child : listing) {
+                        logger.trace("crawler found child  - " + folder.getName() + "/" + child.getName());
+                        if (! child.isUnreadable() && filterFile(child.getAbsolutePath()) && child.canRead()) {
+                            children.add(child);
+                        } // file excluded by include rules, or unreadable. already been logged so nothing to do here
+                    }
 
-                        } else if (filterFile(child.getName()) && child.getDataSize() < maxFileSize) {
+                    List<FolderEntry> subFoldersToList = new ArrayList<>();
+                    for (FolderEntry child : children) {
+                        if (child.isDir()) {
+                            trieNodeBranchToInsert.add(child.getAbsolutePath());
+                            if (! isOwned(child.getAbsolutePath())) {
+                                // another node crawls this one - keep a marker for it, so we notice if it goes
+                                forwardFolder(child.getAbsolutePath(), _level + depth + 1);
+                            } else if (isUnitFull(depth + 1, crawlUnitDepth)) {
+                                // we don't process it, we just put it back on the crawl queue so it gets processed later
+                                postToOwner(child.getAbsolutePath(), getFolderAsJson(child.getAbsolutePath(), _level + depth + 1));
+                                logger.debug("Found new folder to enqueue - " + child.getAbsolutePath());
+                            } else {
+                                logger.trace("Child is a folder - crawling it in this unit");
+                                subFoldersToList.add(child);
+                                folders.add(child);
+                                depths.add(depth + 1);
+                            }
+                        } else if (filterFile(child.getName()) && child.getSize() < maxFileSize) {
                             // Its a file and we can INSERT it
                             logger.trace("child is a file and we can insert it - " + child.getName());
-                            child.setTitle(child.getName());
-                            child.setAction(DOCUMENT_CONSTANTS.ACTION_INSERT);
-                            postMessageToVector(child.toJson());
-                            insertsLog.info(child.getAbsolutePath()+":"+child.getLastModifiedZulu()+":"+child.getDataSize());
-                            trieNodeLeavesToInsert.add(child.getAbsolutePath()+"_:_"+child.getLastModified()+"_:_"+child.getDataSize());
+                            insertNewFile(child);
                         } else {
                             //Its a file and we cannot insert it
                             logger.debug("Rejecting file, " + child.getAbsolutePath() + " because it does not match all rules");
+                            metrics.count(WalkerMetrics.REJECTS);
                         }
+                    }
+                    folderStampsToSet.put(folder.getAbsolutePath(), folderLastModified);
+                    checkpointIfDue();
 
-                    } // file excluded by include rules. already been logged so nothing to do here
+                    // Start listing the sub-folders in the background - the results are picked up as we get to each folder
+                    listings.putAll(listFoldersInParallel(subFoldersToList));
                 }
             } else if (_rootfolder.isFile()) {
                 // a file has been put on the crawler queue - it must be been added as a crawl "root" - not permitted
@@ -1162,38 +1922,212 @@ public class UniversalFileSysWalker extends ListeningService {
         }
     }
 
+    /**
+     * With folder change detection, a folder's own last modified date changes when a file or folder in it is added,
+     * removed or renamed - so if it is the same as when we last listed the folder, there is nothing new to find in it.
+     * A file changed in place does not always change its folder's date, so every folder is listed anyway once it has
+     * gone fullVerifyInterval without being listed
+     * @param _path path to the folder, as held in the crate
+     * @param _lastModified last modified date of the folder now
+     * @return true if we can skip listing the folder
+     */
+    private boolean isFolderUnchanged(String _path, long _lastModified){
+        if (! folderChangeDetection || _lastModified <= 0){
+            return false;
+        }
+        long[] stamp = crate.getFolderStamp(_path);
+        return null != stamp && stamp[0] == _lastModified && System.currentTimeMillis() - stamp[1] < fullVerifyInterval * 1000L;
+    }
+
+    /**
+     * Send a file found in a new folder to Vector as an INSERT, and remember it so it is added to the crate
+     * @param _file a file that has passed all the crawl rules
+     * @throws JMSException if we cannot post to the Vector queue
+     */
+    private void insertNewFile(FolderEntry _file) throws JMSException{
+        try {
+            DEFFileDocument doc = _file.getDocument(source);
+            doc.setTitle(doc.getName());
+            doc.setAction(DOCUMENT_CONSTANTS.ACTION_INSERT);
+            postMessageToVector(doc.toJson());
+            insertsLog.info(_file.getAbsolutePath()+":"+doc.getLastModifiedZulu()+":"+_file.getSize());
+            metrics.count(WalkerMetrics.INSERTS);
+            trieNodeLeavesToInsert.add(_file.getAbsolutePath(), _file.getLastModified(), _file.getSize());
+        } catch (MissingFileException mfe){
+            logger.debug("File found while crawling has gone before we could send it to Vector - " + _file.getAbsolutePath());
+        } catch (BadDocumentException bdfe){
+            logger.warn("Unable to create DEFFileDocument for new file, " + _file.getAbsolutePath() + " : " + bdfe.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * If crawl_parallelism is more than 1, submit a listing task for each folder to the listing pool for its share, so
+     * that several folders in the same crawl unit are read from the file-system at the same time.
+     * Only the listing is done in the background - all posting to queues and updating of the crate stays on this thread
+     * @param _candidates files and folders found under the folder being crawled
+     * @return map of folder to its pending listing. Empty if we are crawling sequentially
+     */
+    private Map<FolderEntry,Future<List<FolderEntry>>> listFoldersInParallel(List<FolderEntry> _candidates){
+        Map<FolderEntry,Future<List<FolderEntry>>> listings = new HashMap<>();
+        if (crawlParallelism <= 1){
+            return listings;
+        }
+        for (FolderEntry candidate : _candidates){
+            if (candidate.isDir() && isOwned(candidate.getAbsolutePath())){
+                ExecutorService pool = FolderListingPool.getPool(serviceName, candidate.getAbsolutePath(), crawlParallelism);
+                Callable<List<FolderEntry>> listTask = () -> listFolder(candidate);
+                listings.put(candidate, pool.submit(listTask));
+            }
+        }
+        return listings;
+    }
+
+    /**
+     * Get the contents of a folder - either from a listing that was started in the background, or by listing it now
+     * @param _folder folder to list
+     * @param _listings listings already submitted to the listing pool
+     * @return the child files and folders of _folder
+     * @throws BadDocumentException if the folder cannot be listed
+     */
+    private List<FolderEntry> getFolderListing(FolderEntry _folder, Map<FolderEntry,Future<List<FolderEntry>>> _listings) throws BadDocumentException{
+        Future<List<FolderEntry>> listing = _listings.get(_folder);
+        if (null != listing){
+            try {
+                return listing.get();
+            } catch (InterruptedException ie){
+                Thread.currentThread().interrupt();
+                logger.debug("Interrupted while waiting for listing of " + _folder.getAbsolutePath() + " - listing it on this thread");
+            } catch (ExecutionException ee){
+                if (ee.getCause() instanceof BadDocumentException){
+                    throw (BadDocumentException)ee.getCause();
+                }
+                logger.warn("Background listing of " + _folder.getAbsolutePath() + " failed : " + ee.getCause() + " - listing it on this thread");
+            }
+        }
+        return listFolder(_folder);
+    }
+
+    /**
+     * List a folder. A folder on a share is listed through the SMB pool, so it waits its turn if the server is busy
+     * @param _folder folder to list
+     * @return the child files and folders of _folder
+     * @throws BadDocumentException if the folder cannot be listed
+     */
+    private List<FolderEntry> listFolder(FolderEntry _folder) throws BadDocumentException{
+        long start = System.nanoTime();
+        List<FolderEntry> children = _folder.isLocal() ? _folder.listChildren() : smbPool.listChildren(_folder);
+        for (FolderEntry child : children){
+            if (child.isUnreadable()){
+                logger.warn("Unable to read " + child.getAbsolutePath() + " : " + child.getReadError() + " - not crawled, and left in the crate as it was");
+            }
+        }
+        metrics.folderListed(_folder.getAbsolutePath(), FolderListingPool.getShareKey(_folder.getAbsolutePath()), children, start);
+        return children;
+    }
+
+    /**
+     * Get the document for a file on a share - the one we got when we listed its folder if we have it, otherwise open
+     * the file through the SMB pool
+     * @param _path path to the file
+     * @param _listed entries from listing the file's folder, by path
+     * @return a DEFFileDocument for the file
+     * @throws MissingFileException if the file has gone
+     * @throws BadDocumentException if a document cannot be created for the file
+     */
+    private DEFFileDocument getSmbDocument(String _path, Map<String,FolderEntry> _listed) throws MissingFileException, BadDocumentException{
+        FolderEntry listed = _listed.get(_path);
+        if (null != listed){
+            return listed.getDocument(source);
+        }
+        try {
+            return smbPool.getDocument(_path, source);
+        } catch (MalformedURLException murle){
+            throw new BadDocumentException("Invalid SMB path " + _path + " : " + murle.getLocalizedMessage());
+        }
+    }
+
     private String getFolderAsJson(String _fname, int _depth){
-        ObjectNode node = new ObjectNode(JsonNodeFactory.instance);
-        node.put(DOCUMENT_CONSTANTS.FIELDNAME_ID,_fname);
-        node.put(WALKER_CONSTANTS.LEVEL,_depth);
-        return node.toString();
+        return getFolderAsJson(_fname, _depth, false);
+    }
+
+    private String getFolderAsJson(String _fname, int _depth, boolean _isFolderOnly){
+        return CrawlMessage.toJson(_fname, _depth, _isFolderOnly);
     }
 
 
+    /**
+     * Send a document to Vector. If vector_batch_size is more than 1, the document is added to the current batch
+     * and the batch is only posted when it is full, when it has been waiting longer than vector_batch_millis, or at the
+     * end of the crawl message
+     * @param _message a document serialized as JSON
+     * @throws JMSException if we cannot post to the Vector queue
+     */
     private void postMessageToVector(String _message) throws JMSException{
+        if (vectorBatch.isEnabled()){
+            if (vectorBatch.add(_message)){
+                flushVectorBatch();
+            }
+        } else {
+            postToVectorQueue(_message);
+        }
+    }
+
+    /**
+     * Post any documents waiting in the current batch to Vector, as a single envelope message
+     * @throws JMSException if we cannot post to the Vector queue
+     */
+    private void flushVectorBatch() throws JMSException{
+        if (! vectorBatch.isEmpty()){
+            int batchSize = vectorBatch.size();
+            postToVectorQueue(vectorBatch.drain());
+            logger.trace("Posted batch of " + batchSize + " documents to Vector");
+        }
+    }
 
-        boolean failedToPost = false;
+    /**
+     * Post a message to Vector - handed over to this thread's poster, or posted now if there is no poster
+     * @param _message message for the Vector queue
+     * @throws JMSException if we cannot post to the Vector queue
+     */
+    private void postToVectorQueue(String _message) throws JMSException{
+        if (null != vectorPoster){
+            vectorPoster.post(_message);
+        } else {
+            sendToVectorQueue(_message);
+        }
+    }
+
+    /**
+     * Post a message on the Vector queue now. If it fails, open a new session and try once more
+     * @param _message message for the Vector queue
+     * @return true if the message was posted
+     * @throws JMSException if we cannot post to the Vector queue
+     */
+    private boolean sendToVectorQueue(String _message) throws JMSException{
+
+        long start = System.nanoTime();
+        boolean isPosted = false;
         try {
-            vectorQueueSession.postTextMessage(_message);
+            isPosted = null != vectorQueueSession && vectorQueueSession.postTextMessage(_message);
         } catch (MQException mqe){
-            failedToPost = true;
+            logger.debug("Failed to post message to Vector queue, trying a new session : " + mqe.getLocalizedMessage());
         }
 
-        if (failedToPost){
+        if (! isPosted){
             try {
-                vectorQueueSession.close();
+                if (null != vectorQueueSession){
+                    vectorQueueSession.close();
+                }
                 vectorQueueSession = null;
                 vectorQueueSession = vectorQueue.getSession(serviceName);
-                vectorQueueSession.postTextMessage(_message);
+                isPosted = vectorQueueSession.postTextMessage(_message);
 
             } catch (MQException mqe){
                 logger.warn("Unable to post message to Vector queue : " + mqe.getLocalizedMessage());
             }
         }
-
-
-
-
+        metrics.time(WalkerMetrics.VECTOR_POST, start);
+        return isPosted;
     }
 
 
@@ -0,0 +1,100 @@
+package com.dahu.plugins.edge.walkers;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Accumulates the JSON documents a walker would otherwise post to Vector one message at a time, and wraps them in
+ * a single envelope message :
+ *
+ *  { "documents":[ {doc1}, {doc2}, ... ], "def_batch":2 }
+ *
+ * Each document is the unchanged output of iDocument.toJson() so it is only serialized once.
+ * The envelope is unpacked on the Vector side by com.dahu.vector.services.VectorBatchUnpacker, which posts each
+ * document on to the Vector pipeline queue as if it had come straight from the walker.
+ *
+ * The batch is full when it holds maxSize documents, or when the first document in it is older than maxMillis.
+ * A batch is owned by a single walker thread - it is not thread-safe.
+ */
+
+public class VectorBatch {
+
+    // field names in the envelope - must match VectorBatchUnpacker in DahuVector
+    public static final String FIELD_BATCH = "def_batch";
+    public static final String FIELD_DOCUMENTS = "documents";
+
+    private static final String ENVELOPE_START = "{\"" + FIELD_DOCUMENTS + "\":[";
+
+    private final int maxSize;
+    private final long maxMillis;
+
+    private StringBuilder envelope = new StringBuilder(ENVELOPE_START);
+    private int count = 0;
+    private long firstAdded = 0;
+
+    /**
+     * @param _maxSize number of documents per envelope. 1 or less means batching is off
+     * @param _maxMillis max time in milliseconds a document waits in the batch before the batch is due to be sent
+     */
+    public VectorBatch(int _maxSize, long _maxMillis){
+        maxSize = _maxSize;
+        maxMillis = _maxMillis;
+    }
+
+    public boolean isEnabled(){
+        return maxSize > 1;
+    }
+
+    public boolean isEmpty(){
+        return count == 0;
+    }
+
+    public int size(){
+        return count;
+    }
+
+    /**
+     * Add a document to the batch
+     * @param _docJson a document serialized by iDocument.toJson()
+     * @return true if the batch is now full, or has been waiting too long, and should be sent
+     */
+    public boolean add(String _docJson){
+        if (count == 0){
+            firstAdded = System.currentTimeMillis();
+        } else {
+            envelope.append(',');
+        }
+        envelope.append(_docJson);
+        count++;
+        return isDue();
+    }
+
+    /**
+     * @return true if the batch holds at least one document and is either full or older than maxMillis
+     */
+    public boolean isDue(){
+        return count > 0 && (count >= maxSize || System.currentTimeMillis() - firstAdded >= maxMillis);
+    }
+
+    /**
+     * Close off the envelope and empty the batch
+     * @return the envelope message for all documents added since the last drain, or null if the batch is empty
+     */
+    public String drain(){
+        if (count == 0){
+            return null;
+        }
+        envelope.append("],\"").append(FIELD_BATCH).append("\":").append(count).append('}');
+        String message = envelope.toString();
+        envelope = new StringBuilder(Math.max(ENVELOPE_START.length(), message.length()));
+        envelope.append(ENVELOPE_START);
+        count = 0;
+        firstAdded = 0;
+        return message;
+    }
+}
@@ -0,0 +1,365 @@
+package com.dahu.plugins.edge.walkers;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Posts a walker thread's messages to Vector on a thread of its own, so the walker can carry on listing folders while
+ * the broker takes its time.
+ *
+ * The walker hands messages over to a bounded queue - if the poster falls that far behind, the walker waits. The poster
+ * takes them off in batches and sends them one after another, in the order they were handed over, so the documents of
+ * a folder get to Vector in the order the walker found them.
+ *
+ * If a message cannot be sent, it and everything after it goes to a spill file on disk instead. While there is anything
+ * in the spill file, new messages are added to the end of it, so the order is kept. Every few seconds the poster tries
+ * to send what is in the spill file, and once it has all gone, the file is emptied. A spill file left from before a
+ * restart is sent first - if we stopped part way through writing a message to it, it is cut back to the last whole
+ * message first, as that message was never handed back as done. A message can be sent twice - if we stop part way through sending the spill file - but never
+ * lost: Vector handles an insert, update or delete it has seen before.
+ *
+ * flush() waits until every message handed over so far has been sent or is safely in the spill file - the walker
+ * calls it before it updates the crate, so the crate never records a file whose document could still be lost.
+ *
+ * Only one poster at a time may use a spill file - one poster emptying the file while another adds to it would lose
+ * messages. A new poster for a spill file closes the poster already running on it, if there is one - say, from before
+ * the service was restarted - and then holds a lock on the file until it is closed, so no other process can use it.
+ */
+
+public class VectorPoster {
+
+    private static final int BATCH_SIZE = 100;
+    private static final long RETRY_MILLIS = 5000; // how long we wait before trying the broker again, once a send has failed
+
+    // the poster running on each spill file, by absolute path
+    private static final Map<String,VectorPoster> running = new HashMap<>();
+
+    /**
+     * Sends one message to the Vector queue
+     */
+    public interface Sender {
+        /**
+         * @param _message message to send
+         * @return true if the message was posted, false if it could not be
+         */
+        boolean send(String _message);
+    }
+
+    private final BlockingQueue<String> pending;
+    private final Sender sender;
+    private final File spillFile;
+    private final Logger logger;
+    private final Thread thread;
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+
+    private final Object progress = new Object(); // guards handedOver and done
+    private long handedOver = 0;
+    private long done = 0; // sent, or in the spill file
+
+    // only used on the poster thread
+    private long spillReadOffset = 0;
+    private long retryAt = 0;
+
+    private volatile boolean isClosed = false;
+
+    /**
+     * @param _name name for the poster thread
+     * @param _capacity max number of messages waiting to be sent before the walker has to wait
+     * @param _spillFile file to keep messages in while the broker is unavailable
+     * @param _sender sends a message to the Vector queue
+     * @param _logger logger
+     * @throws IOException if the spill file is in use by another process, or cannot be locked
+     */
+    public VectorPoster(String _name, int _capacity, File _spillFile, Sender _sender, Logger _logger) throws IOException {
+        pending = new ArrayBlockingQueue<>(Math.max(1, _capacity));
+        sender = _sender;
+        spillFile = _spillFile;
+        logger = _logger;
+
+        String key = spillFile.getAbsolutePath();
+        synchronized (running){
+            VectorPoster previous = running.get(key);
+            if (null != previous){
+                logger.info("Closing the poster already running on spill file " + key + " before starting a new one");
+                previous.close();
+            }
+            File dir = spillFile.getAbsoluteFile().getParentFile();
+            if (null != dir && ! dir.exists() && ! dir.mkdirs()){
+                throw new IOException("Unable to create folder " + dir.getAbsolutePath());
+            }
+            lockFile = new RandomAccessFile(key + ".lock", "rw");
+            FileLock held;
+            try {
+                held = lockFile.getChannel().tryLock();
+            } catch (OverlappingFileLockException ofle){
+                held = null;
+            } catch (IOException ioe){
+                lockFile.close();
+                throw ioe;
+            }
+            if (null == held){
+                lockFile.close();
+                throw new IOException("Spill file " + key + " is in use by another poster");
+            }
+            lock = held;
+            try {
+                trimSpillFile();
+            } catch (IOException ioe){
+                lock.release();
+                lockFile.close();
+                throw ioe;
+            }
+            running.put(key, this);
+        }
+
+        if (spillFile.length() > 0){
+            logger.info("Found " + spillFile.length() + " bytes of messages for Vector left in " + spillFile.getAbsolutePath() + " - sending them first");
+        }
+        thread = new Thread(this::run, _name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hand a message over to be sent. Waits if the poster already has as many messages waiting as it can hold
+     * @param _message message for the Vector queue
+     */
+    public void post(String _message){
+        synchronized (progress){
+            handedOver++;
+        }
+        boolean isInterrupted = false;
+        while (true){
+            try {
+                pending.put(_message);
+                break;
+            } catch (InterruptedException ie){
+                isInterrupted = true; // we must not drop the message - keep trying, and pass the interrupt on after
+            }
+        }
+        if (isInterrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait until every message handed over so far has been sent, or is in the spill file
+     */
+    public void flush(){
+        synchronized (progress){
+            long target = handedOver;
+            while (done < target && ! isClosed){
+                try {
+                    progress.wait(1000);
+                } catch (InterruptedException ie){
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if there are messages in the spill file, waiting for the broker
+     */
+    public boolean hasSpilled(){
+        return spillFile.length() > spillReadOffset;
+    }
+
+    /**
+     * Send or spill everything handed over, then stop the poster thread and give up the spill file
+     */
+    public void close(){
+        synchronized (running){
+            if (isClosed){
+                return;
+            }
+            flush();
+            isClosed = true;
+            // the thread sees isClosed within a second - we wait for it, so it is not still using the spill file when
+            // the next poster takes it over. Not interrupted, as that would close the spill file under it
+            boolean isInterrupted = false;
+            while (thread.isAlive()){
+                try {
+                    thread.join();
+                } catch (InterruptedException ie){
+                    isInterrupted = true;
+                }
+            }
+            try {
+                lock.release();
+                lockFile.close();
+            } catch (IOException ioe){
+                logger.warn("Unable to release lock on spill file " + spillFile.getAbsolutePath() + " : " + ioe.getLocalizedMessage());
+            }
+            running.remove(spillFile.getAbsolutePath(), this);
+            if (isInterrupted){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run(){
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        while (! isClosed){
+            batch.clear();
+            try {
+                String first = pending.poll(1, TimeUnit.SECONDS);
+                if (null != first){
+                    batch.add(first);
+                    pending.drainTo(batch, BATCH_SIZE - 1);
+                }
+            } catch (InterruptedException ie){
+                // only close() stops the poster, and it does not interrupt - carry on
+            }
+
+            try {
+                if (hasSpilled() && System.currentTimeMillis() >= retryAt){
+                    sendSpilled();
+                }
+                int sent = 0;
+                if (! hasSpilled()){
+                    while (sent < batch.size() && sender.send(batch.get(sent))){
+                        sent++;
+                    }
+                }
+                if (sent < batch.size()){
+                    spill(batch.subList(sent, batch.size()));
+                }
+            } catch (IOException ioe){
+                // can't send and can't spill - all we can do is log what we lose
+                logger.error("Unable to write to spill file " + spillFile.getAbsolutePath() + " : " + ioe.getLocalizedMessage() + " - " + batch.size() + " messages for Vector lost");
+            } catch (RuntimeException re){
+                logger.warn("Unexpected problem posting to Vector : " + re.getLocalizedMessage());
+            }
+
+            if (! batch.isEmpty()){
+                synchronized (progress){
+                    done += batch.size();
+                    progress.notifyAll();
+                }
+            }
+        }
+    }
+
+    // cut a spill file left from before a restart back to the last whole message, so every read after it lines up
+    private void trimSpillFile() throws IOException {
+        if (! spillFile.exists()){
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(spillFile, "rw")){
+            long fileLength = file.length();
+            long goodLength = 0;
+            while (goodLength + 4 <= fileLength){
+                file.seek(goodLength);
+                int length = file.readInt();
+                if (length < 0 || length > fileLength - goodLength - 4){
+                    break;
+                }
+                goodLength += 4 + length;
+            }
+            if (goodLength < fileLength){
+                logger.warn("Spill file " + spillFile.getAbsolutePath() + " ends part way through a message - cutting it back from " + fileLength + " to " + goodLength + " bytes");
+                file.setLength(goodLength);
+            }
+        }
+    }
+
+    // add messages to the end of the spill file, and make sure they are on disk before we say they are done
+    private void spill(List<String> _messages) throws IOException {
+        if (! hasSpilled()){
+            logger.warn("Unable to post to Vector - keeping messages in " + spillFile.getAbsolutePath() + " until we can");
+            retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+        }
+        File dir = spillFile.getAbsoluteFile().getParentFile();
+        if (null != dir && ! dir.exists() && ! dir.mkdirs()){
+            throw new IOException("Unable to create folder " + dir.getAbsolutePath());
+        }
+        long spilledLength = spillFile.length();
+        try (FileOutputStream out = new FileOutputStream(spillFile, true)){
+            DataOutputStream data = new DataOutputStream(out);
+            for (String message : _messages){
+                byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+                data.writeInt(bytes.length);
+                data.write(bytes);
+            }
+            data.flush();
+            out.getFD().sync();
+        } catch (IOException ioe){
+            // eg disk full part way through - take off what we wrote, or every message spilled after it would be misread
+            try (RandomAccessFile file = new RandomAccessFile(spillFile, "rw")){
+                file.setLength(spilledLength);
+            } catch (IOException trimFailed){
+                logger.warn("Unable to cut spill file " + spillFile.getAbsolutePath() + " back to " + spilledLength + " bytes : " + trimFailed.getLocalizedMessage());
+            }
+            throw ioe;
+        }
+    }
+
+    // send what is in the spill file, from where we got to. Once it has all gone, empty the file
+    private void sendSpilled() throws IOException {
+        try (FileInputStream in = new FileInputStream(spillFile)){
+            in.getChannel().position(spillReadOffset);
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            long fileLength = spillFile.length();
+            while (spillReadOffset < fileLength){
+                String message;
+                int length;
+                try {
+                    length = data.readInt();
+                    if (length < 0 || length > fileLength - spillReadOffset - 4){
+                        // only we write to the file, and it was cut back to whole messages when we started - so it
+                        // has been damaged. Nothing after here can be read, so drop it rather than stop sending for good
+                        logger.error("Spill file " + spillFile.getAbsolutePath() + " has a bad message length at offset " + spillReadOffset + " - " + (fileLength - spillReadOffset) + " bytes of messages for Vector lost");
+                        break;
+                    }
+                    byte[] bytes = new byte[length];
+                    data.readFully(bytes);
+                    message = new String(bytes, StandardCharsets.UTF_8);
+                } catch (EOFException eofe){
+                    // shorter than it was a moment ago - someone else has changed it
+                    logger.warn("Spill file " + spillFile.getAbsolutePath() + " ends part way through a message - ignoring it");
+                    break;
+                }
+                if (! sender.send(message)){
+                    retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+                    return;
+                }
+                spillReadOffset += 4 + length;
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(spillFile, "rw")){
+            file.setLength(0);
+        }
+        spillReadOffset = 0;
+        logger.info("Sent everything in spill file " + spillFile.getAbsolutePath() + " to Vector");
+    }
+}
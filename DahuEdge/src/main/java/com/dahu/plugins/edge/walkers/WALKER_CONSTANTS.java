@@ -35,6 +35,7 @@ public class WALKER_CONSTANTS {
     protected static final String CONFIG_CIFS_USERNAME = "cifs_username";
     protected static final String CONFIG_CIFS_PASSWORD = "cifs_password";
     protected static final String CONFIG_CIFS_SERVERNAME = "cifs_servername";
+    protected static final String CONFIG_SMB_MAX_REQUESTS_PER_SERVER = "smb_max_requests_per_server"; // max number of SMB requests in flight to one server, across all threads of the service. 0 = no limit. Default = 16
 
 
 
@@ -44,10 +45,44 @@ public class WALKER_CONSTANTS {
 
 
     protected static final String CONFIG_CRAWL_DELAY = "crawl_delay_millis"; // delay between documents to slow down overall crawl speed, helps Vector keep up. Default = 1s
+    protected static final String CONFIG_THROTTLE_TARGET_DEPTH = "throttle_target_queue_depth"; // if set, crawl delay adapts to keep the Vector queue around this many messages
+    protected static final String CONFIG_THROTTLE_MAX_DELAY = "throttle_max_delay_millis"; // longest delay the adaptive throttle will apply. Default = 5s
 
     protected static final String CONFIG_REFRESH_DELAY = "refresh_delay_seconds"; // frequency in hours between refreshes starting
 
+    protected static final String CONFIG_CRAWL_PARALLELISM = "crawl_parallelism"; // max number of sub-folders listed concurrently per share within one crawl message. Default = 1 (sequential)
+
+    protected static final String CONFIG_CRAWL_UNIT_DEPTH = "crawl_unit_depth"; // max number of folder levels one crawl message lists before deeper folders go back on the crawl queue. Default = 2 for new folders, no limit for refreshes
+    protected static final String CONFIG_CRAWL_UNIT_MAX_ENTRIES = "crawl_unit_max_entries"; // once one crawl message has listed this many files and folders, the folders it has not listed go back on the crawl queue. Default = 0 (no limit)
+
+    protected static final String CONFIG_FOLDER_CHANGE_DETECTION = "folder_change_detection"; // if "true", a refresh does not list folders whose last modified date has not changed. Default = false
+    protected static final String CONFIG_FULL_VERIFY_INTERVAL = "full_verify_interval"; // with folder change detection, list every folder again after this long anyway, eg 7d. Default = 7 days
+
+    protected static final String CONFIG_PARTITION_QUEUES = "partition_queues"; // if set, the crawl is split between Edge nodes - the crawl queue of each node, in the same order on every node. See CrawlPartitioner
+    protected static final String CONFIG_PARTITION_DEPTH = "partition_depth"; // number of path segments that decide which node crawls a folder. Default = 4, eg smb://server/share/folder
+
+    protected static final String CONFIG_PRIORITY_REFRESH = "priority_refresh"; // if "true", folders that change often are refreshed more often than the roots - see RefreshBuckets. Default = false
+
+    protected static final String CONFIG_WATCH_LOCAL_ROOTS = "watch_local_roots"; // if "true", local (file://) roots are watched for changes rather than refreshed every refresh_delay_seconds. Default = false
+    protected static final String CONFIG_WATCH_SETTLE_MILLIS = "watch_settle_millis"; // changes seen by the watcher are collected this long before changed folders are crawled. Default = 1s
+    protected static final String CONFIG_RECONCILE_INTERVAL = "reconcile_interval"; // with watched roots, crawl them all again this often anyway, eg 24h. Default = 24 hours
+
+    protected static final String CONFIG_VECTOR_BATCH_SIZE = "vector_batch_size"; // number of documents sent to Vector in one envelope message. Default = 1 (no batching)
+    protected static final String CONFIG_VECTOR_BATCH_MILLIS = "vector_batch_millis"; // max time a document waits in a batch before the batch is sent. Default = 1s
+    protected static final String CONFIG_VECTOR_POST_QUEUE_SIZE = "vector_post_queue_size"; // messages each walker thread can have waiting to be posted to Vector on its poster thread. 0 = post on the walker thread. Default = 1000
+    protected static final String CONFIG_VECTOR_SPILL_DIR = "vector_spill_dir"; // folder for the files that keep messages for Vector while the broker is unavailable. Default = spill
+    protected static final String CONFIG_DELETE_BY_FOLDER = "delete_by_folder"; // if "true", a folder that has gone is deleted from the index with one DELETE for the folder, not one per file. Only the Solr indexers handle these - PES does not. Default = false
+    protected static final String CONFIG_CHECKPOINT_INTERVAL = "checkpoint_interval"; // how often a walker thread checkpoints the crawl unit it is working on, so a restart picks up where it was, eg 10s. 0 = no checkpoints. Default = 10 seconds
+    protected static final String CONFIG_CHECKPOINT_DIR = "checkpoint_dir"; // folder for crawl unit checkpoints. Default = checkpoints
+
+    protected static final String CONFIG_METRICS_INTERVAL = "metrics_interval"; // how often walker metrics are summarised in the service status, eg 60s. Default = 60 seconds
+    protected static final String CONFIG_METRICS_FILE = "metrics_file"; // if set, walker metrics are written to this file as JSON every metrics_interval
+
     public static final String LEVEL = "level"; // field name used when pushing folders onto the crawl queue to show depth beneath the root level
+    public static final String FOLDER_ONLY = "folder_only"; // field name used when pushing folders onto the crawl queue to check only the folder's own files and sub-folders, not everything below it
+
+    public static final String FIELDNAME_DELETE_SCOPE = "delete_scope"; // field on a DELETE document sent to Vector - if set to DELETE_SCOPE_FOLDER, the id is a folder and everything under it is deleted. See FolderDeletes in DahuVector
+    public static final String DELETE_SCOPE_FOLDER = "folder";
 
     public static final String CONFIG_RECOVERYMODE = "recovery";  // If value = "true" do not put any roots on the queue, cos Recovery is underway so crawled folders are on the queue
 
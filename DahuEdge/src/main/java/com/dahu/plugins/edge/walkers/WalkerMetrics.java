@@ -0,0 +1,325 @@
+package com.dahu.plugins.edge.walkers;
+
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Throughput and latency of a walker service, shared by all of its threads :
+ *
+ *   counters - folders listed, files seen, inserts, updates, deletes, files rejected by the crawl rules
+ *   timers   - how long listing a folder takes on each share, posting to the Vector and crawl queues, flushing to the crate
+ *   roots    - per crawl root, folders and files listed under it and when it was last active
+ *
+ * Recording is cheap and lock free for counters, so it is done on every folder and file. Once a tick (metrics_interval)
+ * the rates since the last tick are worked out and a one line summary is kept, which the walker adds to its status
+ * message - so it shows in the DEF server status. The whole lot - counters, timer histograms and per-root gauges - is
+ * available as JSON from toJson(), which the walker hands out through getMetrics(), and can be written to a file.
+ *
+ * The metrics start from zero each time the service starts - counts, timers and roots from before a restart are not
+ * carried over.
+ */
+
+public class WalkerMetrics {
+
+    public static final String FOLDERS = "folders";
+    public static final String FILES = "files";
+    public static final String INSERTS = "inserts";
+    public static final String UPDATES = "updates";
+    public static final String DELETES = "deletes";
+    public static final String REJECTS = "rejects";
+
+    public static final String LISTING = "listing "; // followed by the share, eg "listing smb://server/share"
+    public static final String VECTOR_POST = "post vector";
+    public static final String CRAWL_POST = "post crawl";
+    public static final String CRATE_FLUSH = "crate flush";
+
+    private static final Map<String,WalkerMetrics> registry = new ConcurrentHashMap<>();
+
+    private final Map<String,LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String,Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String,RootGauge> roots = new ConcurrentHashMap<>();
+
+    private final Object serviceStart; // what the service was given when it started - see getMetrics
+
+    // state of the last tick - only changed in tick()
+    private long lastTickTime = System.currentTimeMillis();
+    private long lastTickFolders = 0;
+    private long lastTickFiles = 0;
+    private volatile double foldersPerSecond = 0;
+    private volatile double filesPerSecond = 0;
+    private volatile String summary = "";
+
+    private WalkerMetrics(Object _serviceStart){
+        serviceStart = _serviceStart;
+    }
+
+    /**
+     * Get the metrics for a service, creating them the first time one of the service's threads asks for them after the
+     * service has started. Metrics left from an earlier start of the service are replaced
+     * @param _serviceName name of the walker service
+     * @param _serviceStart an object every thread of the service shares, and which is new each time the service starts - eg its RefreshScheduler
+     * @return the metrics for this service
+     */
+    public static WalkerMetrics getMetrics(String _serviceName, Object _serviceStart){
+        return registry.compute(_serviceName, (k, existing) -> null != existing && existing.serviceStart == _serviceStart ? existing : new WalkerMetrics(_serviceStart));
+    }
+
+    public void count(String _counter){
+        count(_counter, 1);
+    }
+
+    public void count(String _counter, long _n){
+        counters.computeIfAbsent(_counter, k -> new LongAdder()).add(_n);
+    }
+
+    public long getCount(String _counter){
+        LongAdder counter = counters.get(_counter);
+        return null == counter ? 0 : counter.sum();
+    }
+
+    /**
+     * Record how long something took
+     * @param _timer name of the timer
+     * @param _startNanos System.nanoTime() when it started
+     */
+    public void time(String _timer, long _startNanos){
+        getTimer(_timer).record((System.nanoTime() - _startNanos) / 1000);
+    }
+
+    public Timer getTimer(String _timer){
+        return timers.computeIfAbsent(_timer, k -> new Timer());
+    }
+
+    /**
+     * Set the crawl roots that folders are counted against. Roots already known keep their counts
+     * @param _roots crawl roots from config
+     */
+    public void setRoots(Collection<String> _roots){
+        for (String root : _roots){
+            roots.computeIfAbsent(trimRoot(root), k -> new RootGauge());
+        }
+    }
+
+    /**
+     * Record a folder listing
+     * @param _path path to the folder
+     * @param _share share the folder is on, as it is known to the listing pools
+     * @param _children what the listing found
+     * @param _startNanos System.nanoTime() when the listing started
+     */
+    public void folderListed(String _path, String _share, List<FolderEntry> _children, long _startNanos){
+        time(LISTING + _share, _startNanos);
+        int files = 0;
+        for (FolderEntry child : _children){
+            if (! child.isDir()){
+                files++;
+            }
+        }
+        count(FOLDERS);
+        count(FILES, files);
+        RootGauge root = rootFor(_path);
+        if (null != root){
+            root.folders.increment();
+            root.files.add(files);
+            root.lastActive = System.currentTimeMillis();
+        }
+    }
+
+    // the longest root that _path is under - there are only ever a few roots
+    private RootGauge rootFor(String _path){
+        String path = trimRoot(_path);
+        String best = null;
+        for (String root : roots.keySet()){
+            boolean isUnder = path.equals(root) || path.startsWith(root.endsWith("/") ? root : root + "/");
+            if (isUnder && (null == best || root.length() > best.length())){
+                best = root;
+            }
+        }
+        return null == best ? null : roots.get(best);
+    }
+
+    private static String trimRoot(String _path){
+        String path = _path.replace('\\', '/');
+        if (path.startsWith("file://")){
+            path = path.substring(7);
+        }
+        while (path.endsWith("/") && path.length() > 1){
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * Work out the rates since the last tick, and the summary that goes in the status message
+     */
+    public synchronized void tick(){
+        long now = System.currentTimeMillis();
+        long folders = getCount(FOLDERS);
+        long files = getCount(FILES);
+        double seconds = Math.max(1, now - lastTickTime) / 1000.0;
+        foldersPerSecond = (folders - lastTickFolders) / seconds;
+        filesPerSecond = (files - lastTickFiles) / seconds;
+        lastTickTime = now;
+        lastTickFolders = folders;
+        lastTickFiles = files;
+
+        long listings = 0;
+        long listingP95 = 0;
+        for (Map.Entry<String,Timer> timer : timers.entrySet()){
+            if (timer.getKey().startsWith(LISTING)){
+                listings += timer.getValue().getCount();
+                listingP95 = Math.max(listingP95, timer.getValue().getPercentile(0.95));
+            }
+        }
+        summary = String.format("folders/s=%.1f files/s=%.1f inserts=%d updates=%d deletes=%d rejects=%d listings=%d slowest share listing p95=%.1fms vector post p95=%.1fms crate flush p95=%.1fms",
+                foldersPerSecond, filesPerSecond, getCount(INSERTS), getCount(UPDATES), getCount(DELETES), getCount(REJECTS),
+                listings, listingP95 / 1000.0, getTimer(VECTOR_POST).getPercentile(0.95) / 1000.0, getTimer(CRATE_FLUSH).getPercentile(0.95) / 1000.0);
+    }
+
+    /**
+     * @return one line summary as of the last tick - empty until the first tick
+     */
+    public String getSummary(){
+        return summary;
+    }
+
+    /**
+     * @return all the metrics as of now, with the rates as of the last tick
+     */
+    public ObjectNode toJson(){
+        ObjectNode json = new ObjectNode(JsonNodeFactory.instance);
+        json.put("time", System.currentTimeMillis());
+        json.put("foldersPerSecond", foldersPerSecond);
+        json.put("filesPerSecond", filesPerSecond);
+
+        ObjectNode countersJson = json.putObject("counters");
+        for (Map.Entry<String,LongAdder> counter : new TreeMap<>(counters).entrySet()){
+            countersJson.put(counter.getKey(), counter.getValue().sum());
+        }
+        ObjectNode timersJson = json.putObject("timers");
+        for (Map.Entry<String,Timer> timer : new TreeMap<>(timers).entrySet()){
+            timer.getValue().toJson(timersJson.putObject(timer.getKey()));
+        }
+        ObjectNode rootsJson = json.putObject("roots");
+        for (Map.Entry<String,RootGauge> root : new TreeMap<>(roots).entrySet()){
+            ObjectNode rootJson = rootsJson.putObject(root.getKey());
+            rootJson.put("folders", root.getValue().folders.sum());
+            rootJson.put("files", root.getValue().files.sum());
+            rootJson.put("lastActive", root.getValue().lastActive);
+        }
+        return json;
+    }
+
+    /**
+     * Write the metrics to a file, as JSON. Written to a temporary file first, so a reader never sees half a file
+     * @param _file file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void dump(File _file) throws IOException {
+        File tmp = new File(_file.getAbsolutePath() + ".tmp");
+        Files.write(tmp.toPath(), toJson().toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Counts of folders and files under a crawl root
+     */
+    private static class RootGauge {
+        private final LongAdder folders = new LongAdder();
+        private final LongAdder files = new LongAdder();
+        private volatile long lastActive = 0;
+    }
+
+    /**
+     * A histogram of durations, in microseconds. Bucket i holds durations below 2^(i+1) us, so percentiles are
+     * accurate to within a factor of 2 - good enough to tell a 2ms listing from a 200ms one, with no allocation
+     */
+    public static class Timer {
+
+        private static final int BUCKETS = 40;
+
+        private final long[] buckets = new long[BUCKETS];
+        private long count = 0;
+        private long totalMicros = 0;
+        private long maxMicros = 0;
+
+        public synchronized void record(long _micros){
+            long micros = Math.max(0, _micros);
+            int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros | 1));
+            buckets[bucket]++;
+            count++;
+            totalMicros += micros;
+            maxMicros = Math.max(maxMicros, micros);
+        }
+
+        public synchronized long getCount(){
+            return count;
+        }
+
+        public synchronized long getMaxMicros(){
+            return maxMicros;
+        }
+
+        public synchronized double getMeanMicros(){
+            return count == 0 ? 0 : (double)totalMicros / count;
+        }
+
+        /**
+         * @param _fraction eg 0.95 for the 95th percentile
+         * @return upper bound of the bucket holding the percentile, in microseconds, but never more than the max. 0 if nothing recorded
+         */
+        public synchronized long getPercentile(double _fraction){
+            if (count == 0){
+                return 0;
+            }
+            long rank = (long)Math.ceil(_fraction * count);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++){
+                seen += buckets[bucket];
+                if (seen >= rank){
+                    return Math.min(maxMicros, (1L << (bucket + 1)) - 1);
+                }
+            }
+            return maxMicros;
+        }
+
+        private synchronized void toJson(ObjectNode _json){
+            _json.put("count", count);
+            _json.put("meanMs", getMeanMicros() / 1000.0);
+            _json.put("p50Ms", getPercentile(0.5) / 1000.0);
+            _json.put("p95Ms", getPercentile(0.95) / 1000.0);
+            _json.put("p99Ms", getPercentile(0.99) / 1000.0);
+            _json.put("maxMs", maxMicros / 1000.0);
+            // the histogram - bucket i counts durations below 2^(i+1) us, up to the last bucket with anything in it
+            int last = BUCKETS - 1;
+            while (last > 0 && buckets[last] == 0){
+                last--;
+            }
+            ArrayNode histogram = _json.putArray("buckets");
+            for (int bucket = 0; bucket <= last; bucket++){
+                histogram.add(buckets[bucket]);
+            }
+        }
+    }
+}
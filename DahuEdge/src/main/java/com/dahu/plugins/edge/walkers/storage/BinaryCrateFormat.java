@@ -0,0 +1,329 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import com.dahu.core.trie.Trie;
+import com.dahu.core.trie.TrieBranch;
+import com.dahu.core.trie.TrieLeaf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Compact binary file format for a crate.
+ *
+ * The Trie is written branch by branch, depth first, so each folder path shares most of its bytes with the path
+ * written before it. Only the bytes that differ are stored. File names within a folder are compressed the same way,
+ * and lastModified/size are written as variable length numbers.
+ *
+ *  header   : "DCRT" version(1 byte)
+ *  branch   : 'B' sharedPrefix(varint) suffixLength(varint) suffix(UTF-8) leafCount(varint)
+ *  leaf     : sharedPrefix(varint) suffixLength(varint) suffix(UTF-8) lastModified(varint) size(varint)
+ *  trailer  : 'E' branchCount(varint) leafCount(varint)
+ *
+ * The file is written to a temp file then moved over the old one, so a crash during a save leaves the previous crate.
+ * The trailer counts are checked on load - a truncated file is rejected rather than loaded as a partial crate.
+ */
+
+public class BinaryCrateFormat {
+
+    private static final byte[] MAGIC = {'D','C','R','T'};
+    private static final int VERSION = 1;
+    private static final int TAG_BRANCH = 'B';
+    private static final int TAG_END = 'E';
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * counts of what was written to, or read from, a crate file
+     */
+    public static class CrateStats {
+        private final long branches;
+        private final long leaves;
+
+        CrateStats(long _branches, long _leaves){
+            branches = _branches;
+            leaves = _leaves;
+        }
+
+        public long getBranches(){ return branches; }
+        public long getLeaves(){ return leaves; }
+
+        @Override
+        public String toString(){
+            return branches + " folders, " + leaves + " files";
+        }
+    }
+
+
+    /**
+     * Write the whole Trie to a binary crate file.
+     * Caller must stop the Trie changing while it is written
+     * @param _crate Trie to save
+     * @param _file crate file to write. Replaced only once the new file is complete
+     * @return number of branches and leaves written
+     * @throws IOException if the file cannot be written
+     */
+    public static CrateStats write(Trie _crate, File _file) throws IOException {
+        return write(_crate, _file, null);
+    }
+
+    /**
+     * Write the whole Trie to a binary crate file while walkers carry on changing it.
+     * Each folder is read under the same lock a walker takes to change it, so every folder is written as it was
+     * between two changes - but not all folders from the same moment. The caller must replay the changes made
+     * since it started, eg from a journal rolled just before, to get back to a consistent crate
+     * @param _crate Trie to save
+     * @param _file crate file to write. Replaced only once the new file is complete
+     * @param _locks locks the walkers take to change the Trie, or null if the caller has stopped it changing
+     * @return number of branches and leaves written
+     * @throws IOException if the file cannot be written
+     */
+    static CrateStats write(Trie _crate, File _file, StripedCrateLock _locks) throws IOException {
+        File tmp = new File(_file.getAbsolutePath() + ".tmp");
+        CrateStats stats;
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            stats = write(_crate, fos, _locks);
+            fos.flush();
+            fos.getChannel().force(true);
+        }
+        Files.move(tmp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return stats;
+    }
+
+    /**
+     * Write the whole Trie to a stream in the binary crate format
+     * @param _crate Trie to save
+     * @param _out stream to write to - it is not closed
+     * @return number of branches and leaves written
+     * @throws IOException if the stream cannot be written
+     */
+    public static CrateStats write(Trie _crate, OutputStream _out) throws IOException {
+        return write(_crate, _out, null);
+    }
+
+    private static CrateStats write(Trie _crate, OutputStream _out, StripedCrateLock _locks) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(_out, BUFFER_SIZE));
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+
+        long branchCount = 0;
+        long leafCount = 0;
+        byte[] previousPath = new byte[0];
+
+        // depth first, without recursion - a file system can be deeper than the stack
+        Deque<TrieBranch> toVisit = new ArrayDeque<>();
+        toVisit.push(_crate.getRoot());
+        while (! toVisit.isEmpty()){
+            TrieBranch branch = toVisit.pop();
+            String fullPath = branch.getFullPath();
+
+            // copy what we need under the lock, and write it out once the walkers can have the folder back
+            List<TrieLeaf> leaves;
+            List<TrieBranch> children = new ArrayList<>();
+            try (StripedCrateLock.Held held = (null == _locks) ? null : _locks.lockForRead(fullPath)) {
+                leaves = new ArrayList<>(branch.getFiles());
+                for (TrieBranch child : branch.getChildren()){
+                    children.add(child);
+                }
+            }
+
+            byte[] path = fullPath.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(TAG_BRANCH);
+            writePrefixed(out, previousPath, path);
+            previousPath = path;
+            branchCount++;
+
+            writeVarLong(out, leaves.size());
+            byte[] previousName = new byte[0];
+            for (TrieLeaf leaf : leaves){
+                byte[] name = leaf.getName().getBytes(StandardCharsets.UTF_8);
+                writePrefixed(out, previousName, name);
+                previousName = name;
+                writeVarLong(out, zigZag(leaf.getLastModifiedDate()));
+                writeVarLong(out, zigZag(leaf.getSize()));
+                leafCount++;
+            }
+
+            // push in reverse so children are written in the same order the Trie holds them
+            for (int i = children.size() - 1; i >= 0; i--){
+                toVisit.push(children.get(i));
+            }
+        }
+
+        out.writeByte(TAG_END);
+        writeVarLong(out, branchCount);
+        writeVarLong(out, leafCount);
+        out.flush();
+        return new CrateStats(branchCount, leafCount);
+    }
+
+
+    /**
+     * Load a binary crate file into a Trie
+     * @param _file crate file written by write()
+     * @param _crate Trie to insert the branches and leaves into - normally a new, empty Trie
+     * @return number of branches and leaves read
+     * @throws IOException if the file cannot be read, or is not a complete crate file
+     */
+    public static CrateStats read(File _file, Trie _crate) throws IOException {
+        try (InputStream fis = new FileInputStream(_file)) {
+            return read(fis, _crate);
+        }
+    }
+
+    /**
+     * Load a crate in the binary crate format from a stream into a Trie
+     * @param _in stream to read - it is not closed
+     * @param _crate Trie to insert the branches and leaves into
+     * @return number of branches and leaves read
+     * @throws IOException if the stream cannot be read, or is not a complete crate
+     */
+    public static CrateStats read(InputStream _in, Trie _crate) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(_in, BUFFER_SIZE));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++){
+            if (magic[i] != MAGIC[i]){
+                throw new IOException("Not a binary crate file");
+            }
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION){
+            throw new IOException("Unsupported binary crate version, " + version);
+        }
+
+        long branchCount = 0;
+        long leafCount = 0;
+        // path and name buffers are re-used from one record to the next - only the suffix is read each time
+        Segment path = new Segment();
+        Segment name = new Segment();
+
+        while (true){
+            int tag;
+            try {
+                tag = in.readUnsignedByte();
+            } catch (EOFException eofe){
+                throw new IOException("Binary crate file is truncated after " + branchCount + " folders");
+            }
+            if (tag == TAG_END){
+                long expectedBranches = readVarLong(in);
+                long expectedLeaves = readVarLong(in);
+                if (expectedBranches != branchCount || expectedLeaves != leafCount){
+                    throw new IOException("Binary crate file is inconsistent : expected " + expectedBranches + " folders and " + expectedLeaves + " files, read " + branchCount + " and " + leafCount);
+                }
+                return new CrateStats(branchCount, leafCount);
+            } else if (tag != TAG_BRANCH){
+                throw new IOException("Binary crate file is corrupt - unexpected record type " + tag);
+            }
+
+            readPrefixed(in, path);
+            String branchPath = path.toString();
+            if (path.length > 0){
+                _crate.insertBranch(branchPath);
+            }
+            branchCount++;
+
+            long leaves = readVarLong(in);
+            name.length = 0;
+            for (long i = 0; i < leaves; i++){
+                readPrefixed(in, name);
+                long lastMod = unZigZag(readVarLong(in));
+                long size = unZigZag(readVarLong(in));
+                _crate.insertLeaf(branchPath, SegmentDictionary.NAMES.intern(name.toString()), lastMod, size);
+                leafCount++;
+            }
+        }
+    }
+
+
+    // a re-usable buffer holding the last path or name read from the file
+    private static class Segment {
+        byte[] bytes = new byte[256];
+        int length = 0;
+
+        @Override
+        public String toString(){
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void writePrefixed(DataOutputStream _out, byte[] _previous, byte[] _value) throws IOException {
+        int shared = 0;
+        int max = Math.min(_previous.length, _value.length);
+        while (shared < max && _previous[shared] == _value[shared]){
+            shared++;
+        }
+        writeVarLong(_out, shared);
+        writeVarLong(_out, _value.length - shared);
+        _out.write(_value, shared, _value.length - shared);
+    }
+
+    private static void readPrefixed(DataInputStream _in, Segment _segment) throws IOException {
+        int shared = (int)readVarLong(_in);
+        int suffix = (int)readVarLong(_in);
+        if (shared > _segment.length || suffix < 0){
+            throw new IOException("Binary crate file is corrupt - bad prefix length");
+        }
+        if (shared + suffix > _segment.bytes.length){
+            byte[] bigger = new byte[Math.max(_segment.bytes.length * 2, shared + suffix)];
+            System.arraycopy(_segment.bytes, 0, bigger, 0, shared);
+            _segment.bytes = bigger;
+        }
+        _in.readFully(_segment.bytes, shared, suffix);
+        _segment.length = shared + suffix;
+    }
+
+    static void writeVarLong(DataOutputStream _out, long _value) throws IOException {
+        long value = _value;
+        while ((value & ~0x7FL) != 0){
+            _out.writeByte((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        _out.writeByte((int)value);
+    }
+
+    static long readVarLong(DataInputStream _in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (shift < 64){
+            int b = _in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0){
+                return value;
+            }
+            shift += 7;
+        }
+        throw new IOException("Binary crate file is corrupt - bad number");
+    }
+
+    private static long zigZag(long _value){
+        return (_value << 1) ^ (_value >> 63);
+    }
+
+    private static long unZigZag(long _value){
+        return (_value >>> 1) ^ -(_value & 1);
+    }
+}
@@ -0,0 +1,22 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * A file in a crate, as the walker sees it - whichever way the crate is stored
+ */
+
+public interface CrateFile {
+
+    String getName();
+
+    long getLastModifiedDate();
+
+    long getSize();
+}
@@ -0,0 +1,40 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import java.util.List;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * A folder in a crate, as the walker sees it - whichever way the crate is stored
+ */
+
+public interface CrateFolder {
+
+    String getName();
+
+    String getFullPath();
+
+    /**
+     * @return the files directly in this folder
+     */
+    List<CrateFile> getFiles();
+
+    /**
+     * @return the folders directly in this folder
+     */
+    List<CrateFolder> getChildren();
+
+    boolean childExists(String _name);
+
+    /**
+     * @param _name name of a folder directly in this folder
+     * @return the child folder, or null if there is no folder with this name
+     */
+    CrateFolder moveToChildNode(String _name);
+}
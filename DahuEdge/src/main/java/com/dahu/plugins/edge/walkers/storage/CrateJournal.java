@@ -0,0 +1,309 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import com.dahu.core.trie.Trie;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Append-only journal of the changes made to a crate since it was last saved as a whole.
+ *
+ * Every branch insert, leaf insert and delete is appended as it is made to the crate. The journal is flushed and
+ * forced to disk by sync(), which the storage calls every few seconds, so a crash loses at most the changes since
+ * the last sync. When the crate is saved as a whole (a snapshot), the journal is emptied with reset().
+ * At startup, the snapshot is loaded then the journal is replayed on top of it.
+ *
+ * Each record is  length(varint) payload crc32(int)  where payload is
+ *
+ *  'B' path                                   - insert branch
+ *  'L' path name lastModified(varint) size(varint) - insert leaf
+ *  'D' path                                   - delete node
+ *
+ * and strings are length(varint) UTF-8 bytes. Replay stops at the first record that is incomplete or fails its
+ * checksum - that can only be the record being written when we stopped - and the journal is cut back to there.
+ *
+ * A snapshot can also be written while the crate keeps changing. The journal is rolled at the moment the snapshot is
+ * taken - the current file is set aside as JOURNAL.rolled and a new one started - and the rolled file is only
+ * discarded once the snapshot is safely on disk. Until then, replay reads the rolled file then the current one.
+ * Replaying changes that are already in the snapshot is harmless - each record sets a folder or file to a state, it
+ * does not depend on what was there before.
+ *
+ * Not thread-safe - ProtectedTrie only calls it while holding the crate lock.
+ */
+
+public class CrateJournal {
+
+    private static final int TAG_BRANCH = 'B';
+    private static final int TAG_LEAF = 'L';
+    private static final int TAG_DELETE = 'D';
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public static final String ROLLED_SUFFIX = ".rolled";
+
+    private final File journalFile;
+    private final File rolledFile;
+    private final Logger logger;
+
+    private FileOutputStream fileOut = null;
+    private DataOutputStream out = null;
+    private long size = 0; // bytes in the journal, including those not yet flushed
+
+    // each record is built here first so we know its length and checksum before it is written
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(512);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+
+    public CrateJournal(File _journalFile, Logger _logger){
+        journalFile = _journalFile;
+        rolledFile = new File(_journalFile.getPath() + ROLLED_SUFFIX);
+        logger = _logger;
+    }
+
+    public File getFile(){
+        return journalFile;
+    }
+
+    /**
+     * @return size of the journal in bytes
+     */
+    public long size(){
+        return size;
+    }
+
+    /**
+     * Apply every complete record in the journal file to the crate, in the order they were written, starting with
+     * any rolled journal left by a snapshot that did not finish.
+     * Any incomplete record at the end of the file is cut off, so appending can carry on from a clean record boundary
+     * Must be called before open()
+     * @param _crate Trie to apply the changes to
+     * @return number of records applied
+     * @throws IOException if the journal exists but cannot be read or cut back
+     */
+    public long replay(Trie _crate) throws IOException {
+        return replay(rolledFile, _crate) + replay(journalFile, _crate);
+    }
+
+    private long replay(File _file, Trie _crate) throws IOException {
+        if (! _file.exists()){
+            return 0;
+        }
+
+        long applied = 0;
+        long goodLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file), BUFFER_SIZE))) {
+            while (true){
+                byte[] payload;
+                int recordLength;
+                try {
+                    long length = BinaryCrateFormat.readVarLong(in);
+                    if (length <= 0 || length > Integer.MAX_VALUE){
+                        logger.warn("Crate journal " + _file.getPath() + " has a bad record at offset " + goodLength + " - ignoring the rest of the journal");
+                        break;
+                    }
+                    payload = new byte[(int)length];
+                    in.readFully(payload);
+                    int expectedCrc = in.readInt();
+                    crc.reset();
+                    crc.update(payload, 0, payload.length);
+                    if ((int)crc.getValue() != expectedCrc){
+                        logger.warn("Crate journal " + _file.getPath() + " has a bad checksum at offset " + goodLength + " - ignoring the rest of the journal");
+                        break;
+                    }
+                    recordLength = varLongLength(length) + payload.length + 4;
+                } catch (EOFException eofe){
+                    break; // end of journal, or a record that was only partly written
+                }
+                apply(payload, _crate);
+                applied++;
+                goodLength += recordLength;
+            }
+        }
+
+        if (goodLength < _file.length()){
+            logger.warn("Cutting crate journal " + _file.getPath() + " back from " + _file.length() + " to " + goodLength + " bytes");
+            try (RandomAccessFile raf = new RandomAccessFile(_file, "rw")) {
+                raf.setLength(goodLength);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Open the journal for appending
+     * @throws IOException if the journal file cannot be opened
+     */
+    public void open() throws IOException {
+        fileOut = new FileOutputStream(journalFile, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE));
+        size = journalFile.length();
+    }
+
+    public void appendBranch(String _path) throws IOException {
+        record.writeByte(TAG_BRANCH);
+        writeString(record, _path);
+        writeRecord();
+    }
+
+    public void appendLeaf(String _path, String _name, long _lastModified, long _size) throws IOException {
+        record.writeByte(TAG_LEAF);
+        writeString(record, _path);
+        writeString(record, _name);
+        BinaryCrateFormat.writeVarLong(record, _lastModified);
+        BinaryCrateFormat.writeVarLong(record, _size);
+        writeRecord();
+    }
+
+    public void appendDelete(String _path) throws IOException {
+        record.writeByte(TAG_DELETE);
+        writeString(record, _path);
+        writeRecord();
+    }
+
+    /**
+     * Flush everything appended so far and force it to disk
+     * @throws IOException if the journal cannot be written
+     */
+    public void sync() throws IOException {
+        if (null != out){
+            out.flush();
+            fileOut.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Set the current journal aside and start a new one - called at the moment a snapshot of the crate is taken, so
+     * the new journal holds only the changes made after the snapshot.
+     * If a rolled journal is still here because the last snapshot failed, the current journal is added to the end of it
+     * @throws IOException if the journal cannot be moved or re-opened
+     */
+    public void roll() throws IOException {
+        close();
+        if (rolledFile.exists()){
+            try (FileOutputStream rolled = new FileOutputStream(rolledFile, true)) {
+                Files.copy(journalFile.toPath(), rolled);
+                rolled.getChannel().force(false);
+            }
+            Files.delete(journalFile.toPath());
+        } else if (journalFile.exists()){
+            Files.move(journalFile.toPath(), rolledFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        open();
+    }
+
+    /**
+     * Delete the rolled journal - called once the snapshot taken when it was rolled is safely on disk
+     */
+    public void discardRolled(){
+        if (rolledFile.exists() && ! rolledFile.delete()){
+            logger.warn("Unable to delete rolled crate journal " + rolledFile.getPath() + " - it will be replayed again at startup");
+        }
+    }
+
+    /**
+     * Empty the journal - called once the crate has been saved as a whole, so none of the changes are needed any more
+     * @throws IOException if the journal cannot be emptied or re-opened
+     */
+    public void reset() throws IOException {
+        close();
+        try (FileOutputStream truncate = new FileOutputStream(journalFile, false)) {
+            truncate.getChannel().force(false);
+        }
+        discardRolled();
+        open();
+    }
+
+    public void close() throws IOException {
+        if (null != out){
+            try {
+                sync();
+                out.close();
+            } finally {
+                out = null;
+                fileOut = null;
+            }
+        }
+    }
+
+
+    private void writeRecord() throws IOException {
+        if (null == out){
+            recordBytes.reset();
+            throw new IOException("Crate journal " + journalFile.getPath() + " is not open");
+        }
+        try {
+            record.flush();
+            crc.reset();
+            crc.update(recordBytes.toByteArray(), 0, recordBytes.size());
+            BinaryCrateFormat.writeVarLong(out, recordBytes.size());
+            recordBytes.writeTo(out);
+            out.writeInt((int)crc.getValue());
+            size += varLongLength(recordBytes.size()) + recordBytes.size() + 4;
+        } finally {
+            recordBytes.reset();
+        }
+    }
+
+    private void apply(byte[] _payload, Trie _crate) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(_payload));
+        int tag = in.readUnsignedByte();
+        if (tag == TAG_BRANCH){
+            _crate.insertBranch(readString(in));
+        } else if (tag == TAG_LEAF){
+            String path = readString(in);
+            String name = SegmentDictionary.NAMES.intern(readString(in));
+            long lastModified = BinaryCrateFormat.readVarLong(in);
+            long leafSize = BinaryCrateFormat.readVarLong(in);
+            _crate.insertLeaf(path, name, lastModified, leafSize);
+        } else if (tag == TAG_DELETE){
+            _crate.removeNode(readString(in));
+        } else {
+            logger.warn("Crate journal " + journalFile.getPath() + " has an unknown record type, " + tag + " - skipping it");
+        }
+    }
+
+    private static void writeString(DataOutputStream _out, String _value) throws IOException {
+        byte[] bytes = _value.getBytes(StandardCharsets.UTF_8);
+        BinaryCrateFormat.writeVarLong(_out, bytes.length);
+        _out.write(bytes);
+    }
+
+    private static String readString(DataInputStream _in) throws IOException {
+        byte[] bytes = new byte[(int)BinaryCrateFormat.readVarLong(_in)];
+        _in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int varLongLength(long _value){
+        int length = 1;
+        long value = _value;
+        while ((value & ~0x7FL) != 0){
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,117 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import java.util.Arrays;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Files waiting to be inserted into the crate, collected by a walker while it processes a folder and handed to
+ * ProtectedTrie.insertLeaves() in one go.
+ *
+ * Each file is held as its folder, its name and its lastModified and size as longs, in parallel arrays - nothing
+ * has to be formatted into a string and parsed back again. Files in the same folder share one folder string, and
+ * ProtectedTrie inserts each run of files from the same folder under one lock. File names are interned in the
+ * SegmentDictionary, so the crate holds one copy of each distinct name.
+ *
+ * Not thread-safe - each walker thread has its own batch.
+ */
+
+public class CrateLeafBatch {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] folders = new String[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private long[] lastModifieds = new long[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private int count = 0;
+
+    /**
+     * Add a file
+     * @param _folder path of the folder the file is in
+     * @param _name name of the file
+     * @param _lastModified last modified date of the file
+     * @param _size size of the file in bytes
+     */
+    public void add(String _folder, String _name, long _lastModified, long _size){
+        if (count == folders.length){
+            int capacity = count * 2;
+            folders = Arrays.copyOf(folders, capacity);
+            names = Arrays.copyOf(names, capacity);
+            lastModifieds = Arrays.copyOf(lastModifieds, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        // re-use the folder string of the file before, if it is the same folder
+        String folder = _folder;
+        if (count > 0 && folders[count - 1].equals(_folder)){
+            folder = folders[count - 1];
+        }
+        folders[count] = folder;
+        names[count] = SegmentDictionary.NAMES.intern(_name);
+        lastModifieds[count] = _lastModified;
+        sizes[count] = _size;
+        count++;
+    }
+
+    /**
+     * Add a file by its full path. Windows separators are turned into "/", as the crate expects
+     * @param _path full path to the file
+     * @param _lastModified last modified date of the file
+     * @param _size size of the file in bytes
+     * @return false if the path has no folder, so the file cannot go in the crate
+     */
+    public boolean add(String _path, long _lastModified, long _size){
+        String path = _path.indexOf('\\') >= 0 ? _path.replace('\\', '/') : _path;
+        int slash = path.lastIndexOf('/');
+        if (slash <= 0){
+            return false;
+        }
+        String folder;
+        if (count > 0 && folders[count - 1].length() == slash && path.startsWith(folders[count - 1])){
+            folder = folders[count - 1];
+        } else {
+            folder = path.substring(0, slash);
+        }
+        add(folder, path.substring(slash + 1), _lastModified, _size);
+        return true;
+    }
+
+    public int size(){
+        return count;
+    }
+
+    public boolean isEmpty(){
+        return count == 0;
+    }
+
+    public String getFolder(int _index){
+        return folders[_index];
+    }
+
+    public String getName(int _index){
+        return names[_index];
+    }
+
+    public long getLastModified(int _index){
+        return lastModifieds[_index];
+    }
+
+    public long getSize(int _index){
+        return sizes[_index];
+    }
+
+    /**
+     * Empty the batch, ready for the next folder. The arrays are kept
+     */
+    public void clear(){
+        Arrays.fill(folders, 0, count, null);
+        Arrays.fill(names, 0, count, null);
+        count = 0;
+    }
+}
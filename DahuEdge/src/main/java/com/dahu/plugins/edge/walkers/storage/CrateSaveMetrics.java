@@ -0,0 +1,75 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * How saves of a crate are going - how long they take, how long the walkers were held up by them, how much was
+ * written, and how far the saved crate is behind the one in memory.
+ */
+
+public class CrateSaveMetrics {
+
+    private long saves = 0;
+    private long failedSaves = 0;
+    private long lastSaveTime = 0; // when the last good save finished
+    private long lastSaveMillis = 0; // how long the last good save took
+    private long lastLockedMillis = 0; // how long the crate was locked for the last good save
+    private long maxLockedMillis = 0;
+    private long lastBytes = 0;
+    private long totalBytes = 0;
+    private volatile long staleSince = 0; // when the crate was first changed after the last save - 0 if it has not been
+
+    synchronized void saved(long _saveMillis, long _lockedMillis, long _bytes){
+        saves++;
+        lastSaveTime = System.currentTimeMillis();
+        lastSaveMillis = _saveMillis;
+        lastLockedMillis = _lockedMillis;
+        maxLockedMillis = Math.max(maxLockedMillis, _lockedMillis);
+        lastBytes = _bytes;
+        totalBytes += _bytes;
+    }
+
+    synchronized void failed(){
+        failedSaves++;
+    }
+
+    void changed(){
+        if (staleSince == 0){
+            staleSince = System.currentTimeMillis();
+        }
+    }
+
+    // called when the crate is captured for a save - changes after this are not in the save
+    void captured(){
+        staleSince = 0;
+    }
+
+    public synchronized long getSaves(){ return saves; }
+    public synchronized long getFailedSaves(){ return failedSaves; }
+    public synchronized long getLastSaveTime(){ return lastSaveTime; }
+    public synchronized long getLastSaveMillis(){ return lastSaveMillis; }
+    public synchronized long getLastLockedMillis(){ return lastLockedMillis; }
+    public synchronized long getMaxLockedMillis(){ return maxLockedMillis; }
+    public synchronized long getLastBytes(){ return lastBytes; }
+    public synchronized long getTotalBytes(){ return totalBytes; }
+
+    /**
+     * @return how long the oldest change not yet saved has been waiting, in ms. 0 if everything is saved
+     */
+    public long getStalenessMillis(){
+        long since = staleSince;
+        return since == 0 ? 0 : System.currentTimeMillis() - since;
+    }
+
+    @Override
+    public synchronized String toString(){
+        return "saves=" + saves + " failed=" + failedSaves + " lastSaveMs=" + lastSaveMillis + " lastLockedMs=" + lastLockedMillis
+                + " maxLockedMs=" + maxLockedMillis + " lastBytes=" + lastBytes + " totalBytes=" + totalBytes + " stalenessMs=" + getStalenessMillis();
+    }
+}
@@ -20,6 +20,10 @@ public class FSWalkerStorage extends StorePluginBase<ProtectedTrie> {
 
     private final String CONFIG_CRATEDIR = "crate_path";
     private final String CONFIG_TRIEPATH = "trie_file";
+    private final String CONFIG_CRATEFORMAT = "crate_format"; // "binary" to save the crate in BinaryCrateFormat, "mapped" to hold it off-heap in memory-mapped files. Default is the Trie's own format
+    private final String CONFIG_JOURNAL = "crate_journal"; // "true" to journal each change, and only save the whole crate when the journal is full
+    private final String CONFIG_JOURNAL_COMPACT_MB = "journal_compact_mb"; // journal size that triggers a save of the whole crate. Default = 64MB
+    private final String CONFIG_JOURNAL_SYNC_SECONDS = "journal_sync_seconds"; // how often the journal is forced to disk. Default = 1s
 
     private String name;
 
@@ -52,17 +56,46 @@ public class FSWalkerStorage extends StorePluginBase<ProtectedTrie> {
             dataDirectory.mkdir();
         }
 
-        pt = new ProtectedTrie(cratedir + "/" + triepath, logger);
+        String crateFormat = this.getProperty(CONFIG_CRATEFORMAT);
+        pt = new ProtectedTrie(cratedir + "/" + triepath, null == crateFormat ? ProtectedTrie.FORMAT_TRIE : crateFormat, logger);
 
         if (scheduledExecutorService.isShutdown()){
             scheduledExecutorService = Executors.newScheduledThreadPool(1);
         }
 
+        if ("true".equalsIgnoreCase(this.getProperty(CONFIG_JOURNAL))){
+            long compactMb = 64;
+            long syncSeconds = 1;
+            try {
+                if (null != this.getProperty(CONFIG_JOURNAL_COMPACT_MB)) {
+                    compactMb = Long.parseLong(this.getProperty(CONFIG_JOURNAL_COMPACT_MB));
+                }
+                if (null != this.getProperty(CONFIG_JOURNAL_SYNC_SECONDS)) {
+                    syncSeconds = Long.parseLong(this.getProperty(CONFIG_JOURNAL_SYNC_SECONDS));
+                }
+            } catch (NumberFormatException nfe){
+                logger.warn("Bad config - " + CONFIG_JOURNAL_COMPACT_MB + " and " + CONFIG_JOURNAL_SYNC_SECONDS + " must be integers. Using defaults of " + compactMb + "MB and " + syncSeconds + "s");
+            }
+            if (syncSeconds < 1){
+                syncSeconds = 1;
+            }
+            pt.enableJournal(compactMb * 1024 * 1024);
+            if (pt.isJournaled()) {
+                logger.debug("Crate journal enabled for " + name + " : sync every " + syncSeconds + "s, save whole crate every " + compactMb + "MB");
+                scheduledExecutorService.scheduleWithFixedDelay(new Runnable() {
+                    public void run() {
+                        pt.syncJournal();
+                    }
+                }, syncSeconds, syncSeconds, TimeUnit.SECONDS);
+            }
+        }
+
         scheduledExecutorService.scheduleWithFixedDelay(new Runnable() {
             public void run() {
-                logger.trace(Thread.currentThread().getId() + " :: FSWalker Storage Background Thread is saving the Trie - " + pt.getReadOnlyCrate().getName() + " in Storage, " + name);
+                logger.trace(Thread.currentThread().getId() + " :: FSWalker Storage Background Thread is saving the Trie - " + pt.getName() + " in Storage, " + name);
                 pt.saveTrie();
-                logger.trace(Thread.currentThread().getId() + " :: FSWalker Storage Background Thread finished saving the Trie - " + pt.getReadOnlyCrate().getName() + " in Storage, " + name);
+                logger.trace(Thread.currentThread().getId() + " :: FSWalker Storage Background Thread finished saving the Trie - " + pt.getName() + " in Storage, " + name);
+                logger.debug("Crate save metrics for " + name + " : " + pt.getSaveMetrics());
 
             }
         }, 120,120, TimeUnit.SECONDS);
@@ -81,8 +114,8 @@ public class FSWalkerStorage extends StorePluginBase<ProtectedTrie> {
 
     @Override
     public void doShutdown(Store _store) {
-        logger.trace(Thread.currentThread().getId() + " :: doShutdown called - saving the Trie called " + pt.getReadOnlyCrate().getName() + " in Storage, " + name);
-        pt.saveTrie();
+        logger.trace(Thread.currentThread().getId() + " :: doShutdown called - saving the Trie called " + pt.getName() + " in Storage, " + name);
+        pt.closeTrie();
 
         if (isScheduledServiceRunning) {
 
@@ -0,0 +1,291 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * The last modified date of each folder in a crate when the walker last listed it, when that was, and when the walker
+ * last found something changed in it.
+ *
+ * A folder's own last modified date changes when files or folders are added to it, removed or renamed, so if it has
+ * not changed the walker can skip listing the folder on a refresh.
+ *
+ * Folders are keyed by a 64 bit hash of their path, in an open-addressing table of primitive arrays, so each folder
+ * costs a few dozen bytes rather than a String and a map entry. The stamps are only a hint - if they are lost the
+ * walker lists everything again - so they are saved to their own file each time the crate is saved, and not journaled.
+ *
+ * A folder that has changed also keeps its path, so the folders that change most can be found and refreshed more
+ * often than the rest - see forEachChanged(). The path is dropped once the folder has gone quiet.
+ *
+ *  file : "DFST" version(1 byte) count(int) then count x  key(long) modified(long) listed(long) changed(long)
+ *         hasPath(1 byte) [path(UTF)]
+ *  version 1 files have no changed, hasPath or path
+ */
+
+public class FolderStamps {
+
+    private static final byte[] MAGIC = {'D','F','S','T'};
+    private static final int VERSION = 2;
+
+    private long[] keys = new long[1 << 12]; // 0 = empty
+    private long[] modifieds = new long[keys.length];
+    private long[] listeds = new long[keys.length];
+    private long[] changeds = new long[keys.length]; // 0 = not known to have changed
+    private String[] paths = new String[keys.length]; // only for folders that have changed
+    private int count = 0;
+
+    /**
+     * Visits the folders that have changed
+     */
+    public interface ChangedFolderVisitor {
+        /**
+         * @param _path path to the folder
+         * @param _listed when the folder was last listed
+         * @param _changed when the walker last found something changed in the folder
+         * @return false to forget the path of this folder, until it changes again
+         */
+        boolean visit(String _path, long _listed, long _changed);
+    }
+
+    /**
+     * @param _path path to a folder
+     * @return last modified date of the folder when it was last listed, when it was listed, and when it last changed (0
+     * if we don't know), or null if we don't know the folder
+     */
+    public synchronized long[] get(String _path){
+        int slot = find(keyFor(_path));
+        return keys[slot] == 0 ? null : new long[]{modifieds[slot], listeds[slot], changeds[slot]};
+    }
+
+    /**
+     * Record that a folder has been listed
+     * @param _path path to the folder
+     * @param _modified last modified date of the folder, read before it was listed
+     * @param _listed when it was listed
+     */
+    public synchronized void put(String _path, long _modified, long _listed){
+        put(_path, _modified, _listed, false);
+    }
+
+    /**
+     * Record that a folder has been listed
+     * @param _path path to the folder
+     * @param _modified last modified date of the folder, read before it was listed
+     * @param _listed when it was listed
+     * @param _isChanged true if anything in the folder had changed since it was last listed
+     */
+    public synchronized void put(String _path, long _modified, long _listed, boolean _isChanged){
+        int slot = put(keyFor(_path), _modified, _listed);
+        if (_isChanged){
+            changeds[slot] = _listed;
+            paths[slot] = _path;
+        }
+    }
+
+    /**
+     * Visit every folder that has changed and still has its path
+     * @param _visitor called for each folder, holding the lock on these stamps - so it must be quick
+     */
+    public synchronized void forEachChanged(ChangedFolderVisitor _visitor){
+        for (int i = 0; i < keys.length; i++){
+            if (null != paths[i] && ! _visitor.visit(paths[i], listeds[i], changeds[i])){
+                paths[i] = null;
+            }
+        }
+    }
+
+    public synchronized void remove(String _path){
+        int slot = find(keyFor(_path));
+        if (keys[slot] == 0){
+            return;
+        }
+        // shift later entries of the same run back, so no lookup stops early at the gap
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0){
+            int home = (int)MappedHashIndex.mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)){
+                keys[gap] = keys[next];
+                modifieds[gap] = modifieds[next];
+                listeds[gap] = listeds[next];
+                changeds[gap] = changeds[next];
+                paths[gap] = paths[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        paths[gap] = null;
+        count--;
+    }
+
+    public synchronized int size(){
+        return count;
+    }
+
+    /**
+     * @return a copy of these stamps, eg to save while the walkers carry on changing these
+     */
+    public synchronized FolderStamps copy(){
+        FolderStamps copy = new FolderStamps();
+        copy.keys = keys.clone();
+        copy.modifieds = modifieds.clone();
+        copy.listeds = listeds.clone();
+        copy.changeds = changeds.clone();
+        copy.paths = paths.clone();
+        copy.count = count;
+        return copy;
+    }
+
+    /**
+     * Load stamps saved by save(). A missing or unreadable file leaves us with no stamps - the walker lists everything
+     */
+    public synchronized void load(File _file, Logger _logger){
+        if (! _file.exists()){
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file), 1 << 16))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            for (int i = 0; i < MAGIC.length; i++){
+                if (magic[i] != MAGIC[i]){
+                    throw new IOException("not a folder stamps file");
+                }
+            }
+            int version = in.readUnsignedByte();
+            if (version < 1 || version > VERSION){
+                throw new IOException("unsupported version " + version);
+            }
+            int entries = in.readInt();
+            for (int i = 0; i < entries; i++){
+                int slot = put(in.readLong(), in.readLong(), in.readLong());
+                if (version > 1){
+                    changeds[slot] = in.readLong();
+                    if (in.readBoolean()){
+                        paths[slot] = in.readUTF();
+                    }
+                }
+            }
+        } catch (IOException ioe){
+            _logger.warn("Unable to load folder stamps from " + _file.getPath() + " : " + ioe.getLocalizedMessage() + " - every folder will be listed on the next refresh");
+            keys = new long[1 << 12];
+            modifieds = new long[keys.length];
+            listeds = new long[keys.length];
+            changeds = new long[keys.length];
+            paths = new String[keys.length];
+            count = 0;
+        }
+    }
+
+    /**
+     * Write all stamps to a file, replacing it once the new file is complete
+     */
+    public synchronized void save(File _file) throws IOException {
+        File tmp = new File(_file.getAbsolutePath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16));
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(count);
+            for (int i = 0; i < keys.length; i++){
+                if (keys[i] != 0){
+                    out.writeLong(keys[i]);
+                    out.writeLong(modifieds[i]);
+                    out.writeLong(listeds[i]);
+                    out.writeLong(changeds[i]);
+                    out.writeBoolean(null != paths[i]);
+                    if (null != paths[i]){
+                        out.writeUTF(paths[i]);
+                    }
+                }
+            }
+            out.flush();
+            fos.getChannel().force(true);
+        }
+        Files.move(tmp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    // returns the slot the key is in
+    private int put(long _key, long _modified, long _listed){
+        if ((count + 1) * 2 > keys.length){
+            grow();
+        }
+        int slot = find(_key);
+        if (keys[slot] == 0){
+            keys[slot] = _key;
+            count++;
+        }
+        modifieds[slot] = _modified;
+        listeds[slot] = _listed;
+        return slot;
+    }
+
+    // slot holding this key, or the empty slot where it would go
+    private int find(long _key){
+        int mask = keys.length - 1;
+        int slot = (int)MappedHashIndex.mix(_key) & mask;
+        while (keys[slot] != 0 && keys[slot] != _key){
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow(){
+        long[] oldKeys = keys;
+        long[] oldModifieds = modifieds;
+        long[] oldListeds = listeds;
+        long[] oldChangeds = changeds;
+        String[] oldPaths = paths;
+        keys = new long[oldKeys.length * 2];
+        modifieds = new long[keys.length];
+        listeds = new long[keys.length];
+        changeds = new long[keys.length];
+        paths = new String[keys.length];
+        for (int i = 0; i < oldKeys.length; i++){
+            if (oldKeys[i] != 0){
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                modifieds[slot] = oldModifieds[i];
+                listeds[slot] = oldListeds[i];
+                changeds[slot] = oldChangeds[i];
+                paths[slot] = oldPaths[i];
+            }
+        }
+    }
+
+    // the same folder can arrive as smb://server/share/folder/ or C:\data\folder or data/folder - hash it the way the crate stores it
+    private static long keyFor(String _path){
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (String segment : MappedCrate.segments(_path)){
+            byte[] bytes = segment.getBytes(StandardCharsets.UTF_8);
+            for (byte b : bytes){
+                h ^= (b & 0xff);
+                h *= 0x100000001b3L;
+            }
+            h ^= '/';
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,796 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import com.dahu.core.trie.Trie;
+import com.dahu.core.trie.TrieBranch;
+import com.dahu.core.trie.TrieLeaf;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * A crate held off-heap, in memory-mapped files, so the size of the JVM heap does not depend on how many files
+ * the walker has seen. It offers the same operations the walker uses on a Trie - insert branch, insert leaf,
+ * remove node, find a folder - and the mapped files are the crate, so there is no separate save.
+ *
+ *  - TRIE.nodes           fixed size node records (40 bytes) for every folder and file
+ *  - TRIE.names           dictionary of path segments. Each distinct folder or file name is stored once
+ *  - TRIE.nameidx.N       hash index from a name to its place in the dictionary
+ *  - TRIE.childidx.N      hash index from (folder, name) to the child node
+ *
+ * Node record :  name(int) parent(int) firstChild(int) nextSibling(int) prevSibling(int) type(int) lastModified(long) size(long)
+ * Node 0 holds the header, node 1 is the root folder. Removed nodes are re-used. Names are never removed.
+ *
+ * Paths are split on "/" the same way as the Trie : a "file://" prefix and a leading "/" are dropped, and a scheme
+ * such as "smb://" is kept on the first segment, so getFullPath() returns "smb://server/share/folder".
+ *
+ * The header has a flag that is set while the crate is open. If the crate was not closed cleanly, it is checked
+ * on open - the tree is walked, unreachable nodes are freed and both indexes are rebuilt. If the tree itself is
+ * broken, the crate is started again empty and the walker will treat everything as new.
+ *
+ * All access is synchronized on the MappedCrate.
+ */
+
+public class MappedCrate {
+
+    public static final String NODES_SUFFIX = ".nodes";
+    public static final String NAMES_SUFFIX = ".names";
+    private static final String NAME_INDEX_SUFFIX = ".nameidx";
+    private static final String CHILD_INDEX_SUFFIX = ".childidx";
+
+    private static final int MAGIC = 0x44434d50; // DCMP
+    private static final int VERSION = 1;
+
+    private static final int NODE = 40;
+    private static final int NODE_CHUNK = NODE * (1 << 20);
+    private static final int NAMES_CHUNK = 1 << 24;
+    private static final long INITIAL_INDEX_CAPACITY = 1 << 16;
+
+    // header fields in node 0
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_DIRTY = 8;
+    private static final int H_HIGH_WATER = 12;
+    private static final int H_FREE_HEAD = 16;
+    private static final int H_NAME_INDEX_BITS = 20;
+    private static final int H_CHILD_INDEX_BITS = 24;
+    private static final int H_NAMES_END = 32;
+
+    // node fields
+    private static final int N_NAME = 0;
+    private static final int N_PARENT = 4;
+    private static final int N_FIRST_CHILD = 8;
+    private static final int N_NEXT = 12;
+    private static final int N_PREV = 16;
+    private static final int N_TYPE = 20;
+    private static final int N_LASTMOD = 24;
+    private static final int N_SIZE = 32;
+
+    private static final int TYPE_FREE = 0;
+    private static final int TYPE_FOLDER = 1;
+    private static final int TYPE_FILE = 2;
+
+    private static final int ROOT = 1;
+
+    private final String basePath;
+    private final Logger logger;
+
+    private MappedRegion nodes;
+    private MappedRegion names;
+    private MappedHashIndex nameIndex;
+    private MappedHashIndex childIndex;
+
+    private int highWater; // next node that has never been used
+    private int freeHead; // first removed node available for re-use
+    private long namesEnd; // end of the name dictionary
+
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Open the crate held in the mapped files for this path, or create a new, empty crate
+     * @param _basePath the files are called _basePath.nodes, _basePath.names etc
+     * @param _logger logger
+     * @throws IOException if the files cannot be opened or are not a crate
+     */
+    public MappedCrate(String _basePath, Logger _logger) throws IOException {
+        basePath = _basePath;
+        logger = _logger;
+        open();
+    }
+
+    public String getName(){
+        return new File(basePath).getName();
+    }
+
+    /**
+     * @return true if the files for a mapped crate exist at this path
+     */
+    public static boolean isCreated(String _basePath){
+        File f = new File(_basePath + NODES_SUFFIX);
+        return f.exists() && f.length() > 0;
+    }
+
+
+    public synchronized void insertBranch(String _path) throws IOException {
+        ensureFolder(segments(_path));
+    }
+
+    public synchronized void insertLeaf(String _path, String _name, long _lastModified, long _size) throws IOException {
+        insertLeaf(ensureFolder(segments(_path)), _name, _lastModified, _size);
+    }
+
+    /**
+     * Insert, or update, files that are all in the same folder - the folder is only looked up once
+     * @param _leaves batch of files
+     * @param _from first file in the batch to insert
+     * @param _to one past the last file to insert. Every file from _from to _to must be in the same folder
+     * @throws IOException if the mapped files cannot be extended
+     */
+    public synchronized void insertLeaves(CrateLeafBatch _leaves, int _from, int _to) throws IOException {
+        if (_from >= _to){
+            return;
+        }
+        int folder = ensureFolder(segments(_leaves.getFolder(_from)));
+        for (int i = _from; i < _to; i++){
+            insertLeaf(folder, _leaves.getName(i), _leaves.getLastModified(i), _leaves.getSize(i));
+        }
+    }
+
+    public synchronized void removeNode(String _path){
+        int node = resolve(segments(_path));
+        if (node > ROOT){
+            removeSubtree(node);
+        }
+    }
+
+    public synchronized boolean exists(String _path){
+        return resolve(segments(_path)) != 0;
+    }
+
+    /**
+     * @param _path path to a folder
+     * @return the folder, or null if there is no folder at this path
+     */
+    public synchronized CrateFolder getFolder(String _path){
+        int node = resolve(segments(_path));
+        if (node == 0 || type(node) != TYPE_FOLDER){
+            return null;
+        }
+        return new MappedFolder(node);
+    }
+
+    /**
+     * Copy every folder and file from a Trie into this crate, eg the first time a walker uses a mapped crate
+     * @param _crate Trie to copy
+     * @return number of files copied
+     * @throws IOException if the mapped files cannot be written
+     */
+    public synchronized long importTrie(Trie _crate) throws IOException {
+        long files = 0;
+        Deque<TrieBranch> toVisit = new ArrayDeque<>();
+        toVisit.push(_crate.getRoot());
+        while (! toVisit.isEmpty()){
+            TrieBranch branch = toVisit.pop();
+            List<String> path = segments(branch.getFullPath());
+            int folder = ensureFolder(path);
+            for (TrieLeaf leaf : new ArrayList<>(branch.getFiles())){
+                int node = newNode(folder, internName(leaf.getName()), TYPE_FILE);
+                nodes.putLong(offset(node) + N_LASTMOD, leaf.getLastModifiedDate());
+                nodes.putLong(offset(node) + N_SIZE, leaf.getSize());
+                files++;
+            }
+            for (TrieBranch child : branch.getChildren()){
+                toVisit.push(child);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Write all changes to disk
+     */
+    public synchronized void force(){
+        nodes.force();
+        names.force();
+        nameIndex.force();
+        childIndex.force();
+    }
+
+    public synchronized void close() throws IOException {
+        nodes.putInt(H_DIRTY, 0);
+        nameIndex.close();
+        childIndex.close();
+        names.close();
+        nodes.close();
+    }
+
+
+    // ---------------------------------------------------------------- open, check and rebuild
+
+    private void open() throws IOException {
+        nodes = new MappedRegion(new File(basePath + NODES_SUFFIX), NODE_CHUNK);
+        names = new MappedRegion(new File(basePath + NAMES_SUFFIX), NAMES_CHUNK);
+
+        if (nodes.getInt(H_MAGIC) == 0){
+            initialise();
+        } else {
+            if (nodes.getInt(H_MAGIC) != MAGIC || nodes.getInt(H_VERSION) != VERSION){
+                throw new IOException(basePath + NODES_SUFFIX + " is not a mapped crate, or is from a different version");
+            }
+            highWater = nodes.getInt(H_HIGH_WATER);
+            freeHead = nodes.getInt(H_FREE_HEAD);
+            namesEnd = nodes.getLong(H_NAMES_END);
+            nodes.ensureCapacity((long)highWater * NODE);
+            names.ensureCapacity(namesEnd);
+
+            if (nodes.getInt(H_DIRTY) != 0){
+                logger.warn("Mapped crate " + basePath + " was not closed cleanly - checking it");
+                if (checkAndRepair()){
+                    rebuildIndexes();
+                    logger.warn("Mapped crate " + basePath + " checked and indexes rebuilt");
+                } else {
+                    logger.warn("Mapped crate " + basePath + " is damaged - starting again with an empty crate");
+                    initialise();
+                }
+            } else {
+                nameIndex = new MappedHashIndex(basePath + NAME_INDEX_SUFFIX, 1L << nodes.getInt(H_NAME_INDEX_BITS));
+                childIndex = new MappedHashIndex(basePath + CHILD_INDEX_SUFFIX, 1L << nodes.getInt(H_CHILD_INDEX_BITS));
+                if ((nameIndex.size() == 0 && namesEnd > 0) || (childIndex.size() == 0 && firstChild(ROOT) != 0)){
+                    logger.warn("Mapped crate " + basePath + " is missing an index - rebuilding it");
+                    rebuildIndexes();
+                }
+            }
+        }
+        nameIndex.deleteOldFiles();
+        childIndex.deleteOldFiles();
+
+        nodes.putInt(H_DIRTY, 1);
+        nodes.force();
+    }
+
+    private void initialise() throws IOException {
+        closeIndexes();
+        deleteIndexFiles();
+        highWater = ROOT + 1;
+        freeHead = 0;
+        namesEnd = 0;
+        nodes.putInt(H_MAGIC, MAGIC);
+        nodes.putInt(H_VERSION, VERSION);
+        long root = offset(ROOT);
+        nodes.ensureCapacity(root + NODE);
+        nodes.putInt(root + N_NAME, 0);
+        nodes.putInt(root + N_PARENT, 0);
+        nodes.putInt(root + N_FIRST_CHILD, 0);
+        nodes.putInt(root + N_NEXT, 0);
+        nodes.putInt(root + N_PREV, 0);
+        nodes.putInt(root + N_TYPE, TYPE_FOLDER);
+        nameIndex = new MappedHashIndex(basePath + NAME_INDEX_SUFFIX, INITIAL_INDEX_CAPACITY);
+        childIndex = new MappedHashIndex(basePath + CHILD_INDEX_SUFFIX, INITIAL_INDEX_CAPACITY);
+        writeHeader();
+    }
+
+    /**
+     * Walk the whole tree from the root and check every link. Nodes that cannot be reached are put on the free list
+     * @return false if the tree is broken
+     */
+    private boolean checkAndRepair(){
+        if (highWater <= ROOT || type(ROOT) != TYPE_FOLDER){
+            return false;
+        }
+        BitSet reachable = new BitSet(highWater);
+        reachable.set(ROOT);
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = ROOT;
+        while (top > 0){
+            int folder = stack[--top];
+            int previous = 0;
+            int child = firstChild(folder);
+            while (child != 0){
+                if (child <= ROOT || child >= highWater || reachable.get(child)){
+                    return false;
+                }
+                long offset = offset(child);
+                int childType = nodes.getInt(offset + N_TYPE);
+                int nameId = nodes.getInt(offset + N_NAME);
+                if ((childType != TYPE_FOLDER && childType != TYPE_FILE)
+                        || nodes.getInt(offset + N_PARENT) != folder
+                        || nodes.getInt(offset + N_PREV) != previous
+                        || nameId <= 0 || (long)(nameId - 1) * 4 >= namesEnd){
+                    return false;
+                }
+                reachable.set(child);
+                if (childType == TYPE_FOLDER){
+                    if (top == stack.length){
+                        int[] bigger = new int[stack.length * 2];
+                        System.arraycopy(stack, 0, bigger, 0, top);
+                        stack = bigger;
+                    }
+                    stack[top++] = child;
+                }
+                previous = child;
+                child = nodes.getInt(offset + N_NEXT);
+            }
+        }
+
+        // anything we could not reach is free - including nodes that were being added or removed when we stopped
+        freeHead = 0;
+        for (int node = highWater - 1; node > ROOT; node--){
+            if (! reachable.get(node)){
+                freeNode(node);
+            }
+        }
+        writeHeader();
+        return true;
+    }
+
+    private void rebuildIndexes() throws IOException {
+        closeIndexes();
+        deleteIndexFiles();
+        long nameCount = 0;
+        for (long offset = 0; offset < namesEnd; offset += recordLength(names.getInt(offset))){
+            nameCount++;
+        }
+        nameIndex = new MappedHashIndex(basePath + NAME_INDEX_SUFFIX, capacityFor(nameCount));
+        for (long offset = 0; offset < namesEnd; offset += recordLength(names.getInt(offset))){
+            int length = names.getInt(offset);
+            byte[] bytes = new byte[length];
+            names.getBytes(offset + 4, bytes, length);
+            nameIndex.put(nameKey(bytes), nameIdFor(offset));
+        }
+        childIndex = new MappedHashIndex(basePath + CHILD_INDEX_SUFFIX, capacityFor(highWater));
+        for (int node = ROOT + 1; node < highWater; node++){
+            if (type(node) != TYPE_FREE){
+                childIndex.put(childKey(parent(node), nameOf(node)), node);
+            }
+        }
+        writeHeader();
+    }
+
+    private void closeIndexes() throws IOException {
+        if (null != nameIndex){
+            nameIndex.close();
+            nameIndex = null;
+        }
+        if (null != childIndex){
+            childIndex.close();
+            childIndex = null;
+        }
+    }
+
+    private void deleteIndexFiles(){
+        File base = new File(basePath).getAbsoluteFile();
+        File[] files = null == base.getParentFile() ? null : base.getParentFile().listFiles();
+        if (null != files){
+            for (File f : files){
+                if (f.getName().startsWith(base.getName() + NAME_INDEX_SUFFIX + ".") || f.getName().startsWith(base.getName() + CHILD_INDEX_SUFFIX + ".")){
+                    if (! f.delete()){
+                        f.deleteOnExit();
+                    }
+                }
+            }
+        }
+    }
+
+    private static long capacityFor(long _entries){
+        long capacity = INITIAL_INDEX_CAPACITY;
+        while (capacity < _entries * 3){
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private void writeHeader(){
+        nodes.putInt(H_HIGH_WATER, highWater);
+        nodes.putInt(H_FREE_HEAD, freeHead);
+        nodes.putLong(H_NAMES_END, namesEnd);
+        if (null != nameIndex){
+            nodes.putInt(H_NAME_INDEX_BITS, Long.numberOfTrailingZeros(nameIndex.getCapacity()));
+        }
+        if (null != childIndex){
+            nodes.putInt(H_CHILD_INDEX_BITS, Long.numberOfTrailingZeros(childIndex.getCapacity()));
+        }
+    }
+
+
+    // ---------------------------------------------------------------- names
+
+    private int internName(String _name) throws IOException {
+        if (_name.isEmpty()){
+            return 0;
+        }
+        byte[] bytes = _name.getBytes(StandardCharsets.UTF_8);
+        long key = nameKey(bytes);
+        int id = nameIndex.find(key, candidate -> nameEquals(candidate, bytes));
+        if (id != 0){
+            return id;
+        }
+        long offset = namesEnd;
+        names.ensureCapacity(offset + recordLength(bytes.length));
+        names.putInt(offset, bytes.length);
+        names.putBytes(offset + 4, bytes, bytes.length);
+        namesEnd = offset + recordLength(bytes.length);
+        id = nameIdFor(offset);
+        nameIndex.put(key, id);
+        writeHeader();
+        return id;
+    }
+
+    /**
+     * @return the id of a name already in the dictionary, 0 for the empty name, or -1 if we have never seen it
+     */
+    private int lookupName(String _name){
+        if (_name.isEmpty()){
+            return 0;
+        }
+        byte[] bytes = _name.getBytes(StandardCharsets.UTF_8);
+        int id = nameIndex.find(nameKey(bytes), candidate -> nameEquals(candidate, bytes));
+        return id == 0 ? -1 : id;
+    }
+
+    private String nameString(int _nameId){
+        if (_nameId == 0){
+            return "";
+        }
+        long offset = (long)(_nameId - 1) * 4;
+        int length = names.getInt(offset);
+        byte[] bytes = new byte[length];
+        names.getBytes(offset + 4, bytes, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean nameEquals(int _nameId, byte[] _bytes){
+        long offset = (long)(_nameId - 1) * 4;
+        if (names.getInt(offset) != _bytes.length){
+            return false;
+        }
+        if (scratch.length < _bytes.length){
+            scratch = new byte[_bytes.length * 2];
+        }
+        names.getBytes(offset + 4, scratch, _bytes.length);
+        for (int i = 0; i < _bytes.length; i++){
+            if (scratch[i] != _bytes[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int nameIdFor(long _offset){
+        return (int)(_offset >>> 2) + 1;
+    }
+
+    private static long recordLength(int _nameLength){
+        return 4 + ((_nameLength + 3) & ~3);
+    }
+
+    private static long nameKey(byte[] _bytes){
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (byte b : _bytes){
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+
+    // ---------------------------------------------------------------- nodes
+
+    private static long offset(int _node){
+        return (long)_node * NODE;
+    }
+
+    private int type(int _node){
+        return nodes.getInt(offset(_node) + N_TYPE);
+    }
+
+    private int parent(int _node){
+        return nodes.getInt(offset(_node) + N_PARENT);
+    }
+
+    private int nameOf(int _node){
+        return nodes.getInt(offset(_node) + N_NAME);
+    }
+
+    private int firstChild(int _node){
+        return nodes.getInt(offset(_node) + N_FIRST_CHILD);
+    }
+
+    private int nextSibling(int _node){
+        return nodes.getInt(offset(_node) + N_NEXT);
+    }
+
+    private static long childKey(int _parent, int _nameId){
+        return ((long)_parent << 32) | (_nameId & 0xffffffffL);
+    }
+
+    private int childOf(int _folder, int _nameId){
+        return childIndex.find(childKey(_folder, _nameId), node -> true);
+    }
+
+    private int resolve(List<String> _segments){
+        int node = ROOT;
+        for (String segment : _segments){
+            int nameId = lookupName(segment);
+            if (nameId < 0){
+                return 0;
+            }
+            node = childOf(node, nameId);
+            if (node == 0){
+                return 0;
+            }
+        }
+        return node;
+    }
+
+    private int ensureFolder(List<String> _segments) throws IOException {
+        int node = ROOT;
+        for (String segment : _segments){
+            int nameId = internName(segment);
+            int child = childOf(node, nameId);
+            if (child != 0 && type(child) != TYPE_FOLDER){
+                // was a file, now a folder
+                removeSubtree(child);
+                child = 0;
+            }
+            if (child == 0){
+                child = newNode(node, nameId, TYPE_FOLDER);
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private void insertLeaf(int _folder, String _name, long _lastModified, long _size) throws IOException {
+        int nameId = internName(_name);
+        int node = childOf(_folder, nameId);
+        if (node != 0 && type(node) != TYPE_FILE){
+            // was a folder, now a file
+            removeSubtree(node);
+            node = 0;
+        }
+        if (node == 0){
+            node = newNode(_folder, nameId, TYPE_FILE);
+        }
+        nodes.putLong(offset(node) + N_LASTMOD, _lastModified);
+        nodes.putLong(offset(node) + N_SIZE, _size);
+    }
+
+    private int newNode(int _parent, int _nameId, int _type) throws IOException {
+        int node;
+        if (freeHead != 0){
+            node = freeHead;
+            freeHead = nextSibling(node);
+        } else {
+            node = highWater++;
+            nodes.ensureCapacity(offset(node) + NODE);
+        }
+        long offset = offset(node);
+        int first = firstChild(_parent);
+        nodes.putInt(offset + N_NAME, _nameId);
+        nodes.putInt(offset + N_PARENT, _parent);
+        nodes.putInt(offset + N_FIRST_CHILD, 0);
+        nodes.putInt(offset + N_NEXT, first);
+        nodes.putInt(offset + N_PREV, 0);
+        nodes.putLong(offset + N_LASTMOD, 0);
+        nodes.putLong(offset + N_SIZE, 0);
+        nodes.putInt(offset + N_TYPE, _type);
+        if (first != 0){
+            nodes.putInt(offset(first) + N_PREV, node);
+        }
+        nodes.putInt(offset(_parent) + N_FIRST_CHILD, node);
+        childIndex.put(childKey(_parent, _nameId), node);
+        writeHeader();
+        return node;
+    }
+
+    private void removeSubtree(int _node){
+        // take it out of its folder first
+        long offset = offset(_node);
+        int parent = nodes.getInt(offset + N_PARENT);
+        int previous = nodes.getInt(offset + N_PREV);
+        int next = nodes.getInt(offset + N_NEXT);
+        if (previous != 0){
+            nodes.putInt(offset(previous) + N_NEXT, next);
+        } else {
+            nodes.putInt(offset(parent) + N_FIRST_CHILD, next);
+        }
+        if (next != 0){
+            nodes.putInt(offset(next) + N_PREV, previous);
+        }
+
+        // then free it and everything under it
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = _node;
+        while (top > 0){
+            int node = stack[--top];
+            for (int child = firstChild(node); child != 0; child = nextSibling(child)){
+                if (top == stack.length){
+                    int[] bigger = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, bigger, 0, top);
+                    stack = bigger;
+                }
+                stack[top++] = child;
+            }
+            childIndex.remove(childKey(parent(node), nameOf(node)), node);
+            freeNode(node);
+        }
+        writeHeader();
+    }
+
+    private void freeNode(int _node){
+        long offset = offset(_node);
+        nodes.putInt(offset + N_TYPE, TYPE_FREE);
+        nodes.putInt(offset + N_FIRST_CHILD, 0);
+        nodes.putInt(offset + N_NEXT, freeHead);
+        freeHead = _node;
+    }
+
+    private String fullPath(int _node){
+        List<String> parts = new ArrayList<>();
+        for (int node = _node; node > ROOT; node = parent(node)){
+            parts.add(nameString(nameOf(node)));
+        }
+        Collections.reverse(parts);
+        return String.join("/", parts);
+    }
+
+
+    /**
+     * Split a path into the segments stored in the crate
+     */
+    static List<String> segments(String _path){
+        List<String> segments = new ArrayList<>();
+        if (null == _path){
+            return segments;
+        }
+        String path = _path.replace('\\', '/');
+        if (path.startsWith("file://")){
+            path = path.substring(7);
+        } else {
+            int scheme = path.indexOf("://");
+            if (scheme > 0){
+                segments.add(path.substring(0, scheme + 2)); // eg "smb:/" so that joining with "/" gives back "smb://"
+                path = path.substring(scheme + 3);
+            }
+        }
+        int start = 0;
+        while (start < path.length()){
+            int end = path.indexOf('/', start);
+            if (end < 0){
+                end = path.length();
+            }
+            if (end > start){
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments;
+    }
+
+
+    // ---------------------------------------------------------------- views for the walker
+
+    private class MappedFolder implements CrateFolder {
+
+        private final int node;
+
+        MappedFolder(int _node){
+            node = _node;
+        }
+
+        // the folder may have been removed by another thread since we found it
+        private boolean isLive(){
+            return type(node) == TYPE_FOLDER;
+        }
+
+        @Override
+        public String getName(){
+            synchronized (MappedCrate.this){
+                return isLive() ? nameString(nameOf(node)) : "";
+            }
+        }
+
+        @Override
+        public String getFullPath(){
+            synchronized (MappedCrate.this){
+                return isLive() ? fullPath(node) : "";
+            }
+        }
+
+        @Override
+        public List<CrateFile> getFiles(){
+            synchronized (MappedCrate.this){
+                List<CrateFile> files = new ArrayList<>();
+                if (isLive()){
+                    for (int child = firstChild(node); child != 0; child = nextSibling(child)){
+                        if (type(child) == TYPE_FILE){
+                            long offset = offset(child);
+                            files.add(new MappedFile(nameString(nameOf(child)), nodes.getLong(offset + N_LASTMOD), nodes.getLong(offset + N_SIZE)));
+                        }
+                    }
+                }
+                return files;
+            }
+        }
+
+        @Override
+        public List<CrateFolder> getChildren(){
+            synchronized (MappedCrate.this){
+                List<CrateFolder> children = new ArrayList<>();
+                if (isLive()){
+                    for (int child = firstChild(node); child != 0; child = nextSibling(child)){
+                        if (type(child) == TYPE_FOLDER){
+                            children.add(new MappedFolder(child));
+                        }
+                    }
+                }
+                return children;
+            }
+        }
+
+        @Override
+        public boolean childExists(String _name){
+            return null != moveToChildNode(_name);
+        }
+
+        @Override
+        public CrateFolder moveToChildNode(String _name){
+            synchronized (MappedCrate.this){
+                if (! isLive()){
+                    return null;
+                }
+                int nameId = lookupName(_name);
+                if (nameId < 0){
+                    return null;
+                }
+                int child = childOf(node, nameId);
+                return (child != 0 && type(child) == TYPE_FOLDER) ? new MappedFolder(child) : null;
+            }
+        }
+    }
+
+    private static class MappedFile implements CrateFile {
+
+        private final String name;
+        private final long lastModified;
+        private final long size;
+
+        MappedFile(String _name, long _lastModified, long _size){
+            name = _name;
+            lastModified = _lastModified;
+            size = _size;
+        }
+
+        @Override
+        public String getName(){
+            return name;
+        }
+
+        @Override
+        public long getLastModifiedDate(){
+            return lastModified;
+        }
+
+        @Override
+        public long getSize(){
+            return size;
+        }
+    }
+}
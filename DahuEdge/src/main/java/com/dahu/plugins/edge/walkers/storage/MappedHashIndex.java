@@ -0,0 +1,223 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.IntPredicate;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Open-addressing hash index from a long key to a positive int value, held in a memory-mapped file.
+ * Several entries may share a key - find() is given a predicate to pick the right one.
+ *
+ * Slots are 16 bytes :  key(long) value(int) unused(int)   value 0 = empty, -1 = removed
+ * Slot 0 holds the header :  capacity(long) count(int) removed(int)
+ *
+ * When more than half the slots are used (or removed), the index is rebuilt at twice the size in a new file,
+ * named after the base file and its capacity, and the old file is deleted.
+ *
+ * Not thread-safe.
+ */
+
+class MappedHashIndex {
+
+    private static final int SLOT = 16;
+    private static final int CHUNK = 1 << 24;
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+
+    private final String basePath;
+    private MappedRegion region;
+    private long capacity;
+    private int count;
+    private int removed;
+
+    /**
+     * Open the index file for this capacity, or create it empty
+     * @param _basePath index files are called _basePath.capacity
+     * @param _capacity number of slots - a power of two. Use the value returned by getCapacity() last time the index was open
+     */
+    MappedHashIndex(String _basePath, long _capacity) throws IOException {
+        basePath = _basePath;
+        File file = fileFor(_capacity);
+        boolean isNew = ! file.exists() || file.length() == 0;
+        region = new MappedRegion(file, CHUNK);
+        region.ensureCapacity((_capacity + 1) * SLOT);
+        if (isNew){
+            capacity = _capacity;
+            count = 0;
+            removed = 0;
+            writeHeader();
+        } else {
+            capacity = region.getLong(0);
+            count = region.getInt(8);
+            removed = region.getInt(12);
+        }
+    }
+
+    long getCapacity(){
+        return capacity;
+    }
+
+    int size(){
+        return count;
+    }
+
+    /**
+     * @param _key key to look for
+     * @param _matches decides if a value stored under this key is the one we want
+     * @return the first value under the key accepted by _matches, or 0 if there is none
+     */
+    int find(long _key, IntPredicate _matches){
+        long slot = slotFor(_key);
+        while (true){
+            long offset = (slot + 1) * SLOT;
+            int value = region.getInt(offset + 8);
+            if (value == EMPTY){
+                return 0;
+            }
+            if (value != REMOVED && region.getLong(offset) == _key && _matches.test(value)){
+                return value;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    /**
+     * Add an entry. Does not check if it is already there
+     */
+    void put(long _key, int _value) throws IOException {
+        if ((count + removed + 1) * 2L > capacity){
+            rebuild(count * 4L > capacity ? capacity * 2 : capacity);
+        }
+        long slot = slotFor(_key);
+        while (true){
+            long offset = (slot + 1) * SLOT;
+            int value = region.getInt(offset + 8);
+            if (value == EMPTY || value == REMOVED){
+                if (value == REMOVED){
+                    removed--;
+                }
+                region.putLong(offset, _key);
+                region.putInt(offset + 8, _value);
+                count++;
+                writeHeader();
+                return;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    /**
+     * Remove the entry with this key and value, if there is one
+     */
+    void remove(long _key, int _value){
+        long slot = slotFor(_key);
+        while (true){
+            long offset = (slot + 1) * SLOT;
+            int value = region.getInt(offset + 8);
+            if (value == EMPTY){
+                return;
+            }
+            if (value == _value && region.getLong(offset) == _key){
+                region.putInt(offset + 8, REMOVED);
+                count--;
+                removed++;
+                writeHeader();
+                return;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    void force(){
+        region.force();
+    }
+
+    void close() throws IOException {
+        region.close();
+    }
+
+    /**
+     * Delete index files for this base path, other than the one in use
+     */
+    void deleteOldFiles(){
+        File dir = region.getFile().getAbsoluteFile().getParentFile();
+        String prefix = new File(basePath).getName() + ".";
+        File[] files = null == dir ? null : dir.listFiles();
+        if (null != files){
+            for (File f : files){
+                if (f.getName().startsWith(prefix) && ! f.equals(region.getFile().getAbsoluteFile())){
+                    String suffix = f.getName().substring(prefix.length());
+                    if (suffix.matches("[0-9]+") && ! f.delete()){
+                        f.deleteOnExit();
+                    }
+                }
+            }
+        }
+    }
+
+
+    private File fileFor(long _capacity){
+        return new File(basePath + "." + _capacity).getAbsoluteFile();
+    }
+
+    private long slotFor(long _key){
+        return mix(_key) & (capacity - 1);
+    }
+
+    private void writeHeader(){
+        region.putLong(0, capacity);
+        region.putInt(8, count);
+        region.putInt(12, removed);
+    }
+
+    // copy every live entry into a new index file, then switch to it
+    private void rebuild(long _capacity) throws IOException {
+        File newFile = fileFor(_capacity);
+        if (newFile.exists() && ! newFile.delete()){
+            throw new IOException("Unable to rebuild index - cannot delete " + newFile.getPath());
+        }
+        MappedRegion newRegion = new MappedRegion(newFile, CHUNK);
+        newRegion.ensureCapacity((_capacity + 1) * SLOT);
+        for (long slot = 0; slot < capacity; slot++){
+            long offset = (slot + 1) * SLOT;
+            int value = region.getInt(offset + 8);
+            if (value != EMPTY && value != REMOVED){
+                long key = region.getLong(offset);
+                long newSlot = mix(key) & (_capacity - 1);
+                while (newRegion.getInt((newSlot + 1) * SLOT + 8) != EMPTY){
+                    newSlot = (newSlot + 1) & (_capacity - 1);
+                }
+                newRegion.putLong((newSlot + 1) * SLOT, key);
+                newRegion.putInt((newSlot + 1) * SLOT + 8, value);
+            }
+        }
+        MappedRegion oldRegion = region;
+        region = newRegion;
+        capacity = _capacity;
+        removed = 0;
+        writeHeader();
+        region.force();
+        oldRegion.close();
+        if (! oldRegion.getFile().delete()){
+            oldRegion.getFile().deleteOnExit(); // still mapped on some platforms - it goes when we stop
+        }
+    }
+
+    static long mix(long _key){
+        long h = _key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,119 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * A file mapped into memory in fixed size chunks, so it can grow past 2GB and be extended without re-mapping what
+ * is already mapped. Ints and longs must not straddle two chunks - callers choose a chunk size that is a multiple
+ * of their record size. Byte arrays may straddle chunks.
+ *
+ * Not thread-safe.
+ */
+
+class MappedRegion {
+
+    private final File file;
+    private final int chunkSize;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+    MappedRegion(File _file, int _chunkSize) throws IOException {
+        file = _file;
+        chunkSize = _chunkSize;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        ensureCapacity(Math.max(channel.size(), chunkSize));
+    }
+
+    File getFile(){
+        return file;
+    }
+
+    long capacity(){
+        return (long)chunks.size() * chunkSize;
+    }
+
+    /**
+     * Make sure at least _bytes of the file are mapped, growing the file if needed
+     */
+    void ensureCapacity(long _bytes) throws IOException {
+        while (capacity() < _bytes){
+            chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, capacity(), chunkSize));
+        }
+    }
+
+    int getInt(long _offset){
+        return chunks.get((int)(_offset / chunkSize)).getInt((int)(_offset % chunkSize));
+    }
+
+    void putInt(long _offset, int _value){
+        chunks.get((int)(_offset / chunkSize)).putInt((int)(_offset % chunkSize), _value);
+    }
+
+    long getLong(long _offset){
+        return chunks.get((int)(_offset / chunkSize)).getLong((int)(_offset % chunkSize));
+    }
+
+    void putLong(long _offset, long _value){
+        chunks.get((int)(_offset / chunkSize)).putLong((int)(_offset % chunkSize), _value);
+    }
+
+    void getBytes(long _offset, byte[] _dest, int _length){
+        int copied = 0;
+        while (copied < _length){
+            long offset = _offset + copied;
+            MappedByteBuffer chunk = chunks.get((int)(offset / chunkSize));
+            int inChunk = (int)(offset % chunkSize);
+            int count = Math.min(_length - copied, chunkSize - inChunk);
+            for (int i = 0; i < count; i++){
+                _dest[copied + i] = chunk.get(inChunk + i);
+            }
+            copied += count;
+        }
+    }
+
+    void putBytes(long _offset, byte[] _src, int _length){
+        int copied = 0;
+        while (copied < _length){
+            long offset = _offset + copied;
+            MappedByteBuffer chunk = chunks.get((int)(offset / chunkSize));
+            int inChunk = (int)(offset % chunkSize);
+            int count = Math.min(_length - copied, chunkSize - inChunk);
+            for (int i = 0; i < count; i++){
+                chunk.put(inChunk + i, _src[copied + i]);
+            }
+            copied += count;
+        }
+    }
+
+    /**
+     * Write everything changed in the mapped file to disk
+     */
+    void force(){
+        for (MappedByteBuffer chunk : chunks){
+            chunk.force();
+        }
+    }
+
+    void close() throws IOException {
+        force();
+        chunks.clear(); // the mapping itself goes when the buffers are collected
+        channel.close();
+        raf.close();
+    }
+}
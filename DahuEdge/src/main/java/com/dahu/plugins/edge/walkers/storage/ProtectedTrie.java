@@ -1,9 +1,14 @@
 package com.dahu.plugins.edge.walkers.storage;
 
 import com.dahu.core.trie.Trie;
+import com.dahu.core.trie.TrieBranch;
 import org.apache.logging.log4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
  * Created by :
@@ -13,100 +18,568 @@ import java.util.Set;
  * copyright Dahu Ltd 2019
  * <p>
  * Changed by :
+ *
+ * The crate of a walker. A Trie, with all changes made under a StripedCrateLock so the walker threads and the
+ * background save can share it - threads working under different shares or top level folders change the crate in
+ * parallel, and a save of the whole crate waits until no change is half made.
+ *
+ * The crate can be saved in the Trie's own format, or in the compact BinaryCrateFormat. In binary mode, an existing
+ * crate in the Trie's own format is loaded at startup and converted by the first save, then set aside.
+ *
+ * If a CrateJournal is enabled, each change is also appended to the journal as it is made, and the crate is only
+ * saved as a whole (a snapshot) when the journal has grown past a size limit, or at shutdown. At startup the journal
+ * is replayed on top of the last snapshot.
+ *
+ * In binary mode a save does not hold up the walkers while the crate is written to disk. The journal is rolled, then
+ * the crate is streamed straight to the crate file one folder at a time, each under the lock a walker would take to
+ * change it. Folders changed during the save are put right at startup by replaying the journal started at the roll.
+ * Without a journal the whole crate is locked while it is written. How long saves take, how long the crate was locked
+ * and how far the saved crate is behind are kept in CrateSaveMetrics.
+ *
+ * In mapped mode the crate is a MappedCrate instead of a Trie - held off-heap in memory-mapped files, which are
+ * themselves the saved crate, so there are no snapshots and no journal. An existing Trie crate is copied into the
+ * mapped crate the first time it is opened, then set aside.
+ *
+ * The walker reads the crate through getFolder() and exists(), which work the same way for either kind of crate.
+ *
+ * Alongside the crate we keep FolderStamps - the last modified date of each folder when it was last listed - so the
+ * walker can skip folders that have not changed. They are saved to their own file whenever the crate is saved.
+ *
+ * Each change to the crate is counted, and so are the changes that are safely on disk. A walker that keeps a copy of
+ * its changes somewhere else, eg in a CrawlCheckpoint, can throw the copy away once getDurableChangeCount() has caught
+ * up with getChangeCount() as it was after the changes were made.
  */
 
 public class ProtectedTrie {
 
     private Object myLock = new Object();
+    private final StripedCrateLock locks = new StripedCrateLock(); // held while the Trie is read or changed
+    private final Object journalLock = new Object(); // held while the journal is written
+    private final Predicate<String> stripeExists = path -> null != crate.getNode(path);
     private Trie crate = null; // wrapper around a single Trie structure
-    private boolean isStale = false; // has the crate been changed but not saved?
+    private MappedCrate mappedCrate = null; // if set, the crate is held in memory-mapped files instead of a Trie
+    private volatile boolean isStale = false; // has the crate been changed but not saved?
+    private final AtomicLong changes = new AtomicLong(); // number of times the crate has been changed since it was loaded
+    private volatile long durableChanges = 0; // how many of those changes are safely on disk - in a saved crate or a synced journal
+    private final CrateSaveMetrics saveMetrics = new CrateSaveMetrics();
+    private final FolderStamps folderStamps = new FolderStamps();
+    private volatile boolean isFolderStampsStale = false;
+    private File folderStampsFile = null;
+
+    public static final String BINARY_CRATE_SUFFIX = ".crate"; // binary crate file is saved alongside the trie file, with this suffix
+    public static final String CONVERTED_TRIE_SUFFIX = ".converted"; // trie file is renamed with this suffix once it has been saved as a binary crate
+    public static final String JOURNAL_SUFFIX = ".journal"; // crate journal is saved alongside the trie file, with this suffix
+    public static final String FOLDER_STAMPS_SUFFIX = ".folders"; // folder stamps are saved alongside the trie file, with this suffix
+
+    public static final String FORMAT_TRIE = "trie"; // crate is a Trie, saved in the Trie's own format
+    public static final String FORMAT_BINARY = "binary"; // crate is a Trie, saved in BinaryCrateFormat
+    public static final String FORMAT_MAPPED = "mapped"; // crate is a MappedCrate, held off-heap in memory-mapped files
+
+    private File trieFile = null;
+    private File binaryCrateFile = null; // if set, the crate is saved in BinaryCrateFormat rather than by the Trie
+
+    private CrateJournal journal = null; // if set, changes are journaled and the crate is only saved when the journal is too big
+    private long journalCompactBytes = 0; // save a snapshot and empty the journal once it is bigger than this
+    private boolean isJournalBroken = false; // a journal write failed - the next save must be a full snapshot
 
     Logger logger = null;
 
     public ProtectedTrie(String _triePath, Logger _logger){
+        this(_triePath, FORMAT_TRIE, _logger);
+    }
+
+    /**
+     * @param _triePath path to the trie file. Other files for the crate are kept alongside it
+     * @param _format FORMAT_TRIE, FORMAT_BINARY or FORMAT_MAPPED. Anything else is treated as FORMAT_TRIE
+     * @param _logger logger
+     */
+    public ProtectedTrie(String _triePath, String _format, Logger _logger){
         logger = _logger;
+        trieFile = new File(_triePath);
+        folderStampsFile = new File(_triePath + FOLDER_STAMPS_SUFFIX);
+        folderStamps.load(folderStampsFile, logger);
+        if (FORMAT_MAPPED.equalsIgnoreCase(_format)){
+            try {
+                openMappedCrate(_triePath);
+                return;
+            } catch (IOException ioe){
+                logger.warn("Unable to open mapped crate at " + _triePath + " : " + ioe.getLocalizedMessage() + " - using a Trie instead");
+                mappedCrate = null;
+            }
+        }
         if (crate == null){
             logger.trace("ProtectedTrie is instantiating a new Trie at " + _triePath);
             crate = new Trie(_triePath,_logger);
         }
+        if (FORMAT_BINARY.equalsIgnoreCase(_format)){
+            binaryCrateFile = new File(_triePath + BINARY_CRATE_SUFFIX);
+            if (binaryCrateFile.exists()){
+                long start = System.currentTimeMillis();
+                try {
+                    BinaryCrateFormat.CrateStats stats = BinaryCrateFormat.read(binaryCrateFile, crate);
+                    logger.info("Loaded binary crate " + binaryCrateFile.getPath() + " : " + stats + " in " + (System.currentTimeMillis() - start) + "ms");
+                } catch (IOException ioe){
+                    logger.warn("Unable to load binary crate " + binaryCrateFile.getPath() + " : " + ioe.getLocalizedMessage());
+                }
+            } else if (trieFile.exists()){
+                // first start in binary mode - make sure the crate we just loaded gets written in the new format
+                logger.info("No binary crate at " + binaryCrateFile.getPath() + " - crate loaded from " + _triePath + " will be converted on the next save");
+                markStale();
+            }
+        }
+    }
+
+    // open the mapped crate, copying the Trie crate into it if this is the first time
+    private void openMappedCrate(String _triePath) throws IOException {
+        boolean isNew = ! MappedCrate.isCreated(_triePath);
+        mappedCrate = new MappedCrate(_triePath, logger);
+        if (isNew && trieFile.exists()){
+            long start = System.currentTimeMillis();
+            long files = mappedCrate.importTrie(new Trie(_triePath, logger));
+            mappedCrate.force();
+            logger.info("Copied " + files + " files from trie " + _triePath + " into mapped crate in " + (System.currentTimeMillis() - start) + "ms");
+            File converted = new File(trieFile.getPath() + CONVERTED_TRIE_SUFFIX);
+            if (trieFile.renameTo(converted)){
+                logger.info("Crate converted to mapped format - old trie file moved to " + converted.getPath());
+            } else {
+                logger.warn("Crate converted to mapped format but unable to move old trie file, " + trieFile.getPath());
+            }
+        }
     }
 
+    /**
+     * Replay the journal for this crate on top of the snapshot we just loaded, then keep journaling all changes
+     * Called once, by the storage, before the crate is used
+     * @param _compactBytes size in bytes at which the journal is folded into a new snapshot
+     */
+    public void enableJournal(long _compactBytes){
+        if (null != mappedCrate){
+            logger.info("Crate journal is not needed for a mapped crate - ignoring it");
+            return;
+        }
+        try (StripedCrateLock.Held held = locks.lockAll()) {
+            journalCompactBytes = _compactBytes;
+            CrateJournal newJournal = new CrateJournal(new File(trieFile.getPath() + JOURNAL_SUFFIX), logger);
+            long start = System.currentTimeMillis();
+            try {
+                long replayed = newJournal.replay(crate);
+                if (replayed > 0) {
+                    logger.info("Replayed " + replayed + " changes from crate journal " + newJournal.getFile().getPath() + " in " + (System.currentTimeMillis() - start) + "ms");
+                    markStale();
+                }
+                newJournal.open();
+                journal = newJournal;
+            } catch (IOException ioe) {
+                logger.warn("Unable to use crate journal " + newJournal.getFile().getPath() + " : " + ioe.getLocalizedMessage() + " - crate will be saved as a whole");
+            }
+        }
+    }
+
+    public boolean isJournaled(){
+        return null != journal;
+    }
+
+    /**
+     * @return the Trie holding the crate, or null if this is a mapped crate. Use getFolder() and exists() to read the crate
+     */
     public final Trie getReadOnlyCrate(){return crate;}
 
+    public boolean isBinaryFormat(){
+        return null != binaryCrateFile;
+    }
+
+    public boolean isMapped(){
+        return null != mappedCrate;
+    }
+
+    public CrateSaveMetrics getSaveMetrics(){
+        return saveMetrics;
+    }
+
+    public String getName(){
+        return null != mappedCrate ? mappedCrate.getName() : crate.getName();
+    }
+
+    /**
+     * @param _path path to a folder
+     * @return the folder in the crate, or null if the crate has no folder at this path
+     */
+    public CrateFolder getFolder(String _path){
+        if (null != mappedCrate){
+            return mappedCrate.getFolder(_path);
+        }
+        try (StripedCrateLock.Held held = locks.lockForRead(_path)) {
+            Object node = crate.getNode(_path);
+            return node instanceof TrieBranch ? new TrieCrateFolder((TrieBranch)node, locks) : null;
+        }
+    }
+
+    /**
+     * @param _path path to a folder or file
+     * @return true if the crate has a folder or file at this path
+     */
+    public boolean exists(String _path){
+        if (null != mappedCrate){
+            return mappedCrate.exists(_path);
+        }
+        try (StripedCrateLock.Held held = locks.lockForRead(_path)) {
+            return null != crate.getNode(_path);
+        }
+    }
+
+    /**
+     * @param _path path to a folder
+     * @return {last modified date of the folder when it was last listed, when it was listed, when it last changed (0 if
+     * it has not)}, or null if it has not been listed
+     */
+    public long[] getFolderStamp(String _path){
+        return folderStamps.get(_path);
+    }
+
+    /**
+     * Record that a folder has been listed, and everything in it is in the crate
+     * @param _path path to the folder
+     * @param _modified last modified date of the folder, read before it was listed
+     * @param _listed when it was listed
+     * @param _isChanged true if anything in the folder had changed since it was last listed
+     */
+    public void setFolderStamp(String _path, long _modified, long _listed, boolean _isChanged){
+        folderStamps.put(_path, _modified, _listed, _isChanged);
+        isFolderStampsStale = true;
+    }
+
+    /**
+     * Visit every folder that has changed, eg to decide how often to refresh it
+     * @param _visitor called for each folder that has changed, and not been forgotten by an earlier visitor
+     */
+    public void forEachChangedFolder(FolderStamps.ChangedFolderVisitor _visitor){
+        folderStamps.forEachChanged(_visitor);
+    }
+
+    /**
+     * @return number of changes made to the crate since it was loaded
+     */
+    public long getChangeCount(){
+        return changes.get();
+    }
+
+    /**
+     * @return number of changes made to the crate since it was loaded that are safely on disk. Folder stamps are not
+     * counted - they are only a hint
+     */
+    public long getDurableChangeCount(){
+        return durableChanges;
+    }
+
     protected void saveTrie(){
-        logger.trace("calling saveTrie on crate, " + crate.getName());
+        // take the stamps before the crate, so every folder they say has been listed is in the crate we save
+        FolderStamps stamps = captureFolderStamps();
+        saveCrate();
+        saveFolderStamps(stamps);
+    }
+
+    private void saveCrate(){
+        logger.trace("calling saveTrie on crate, " + getName());
         if (isStale){
             synchronized (myLock) {
+                if (null != mappedCrate){
+                    long start = System.currentTimeMillis();
+                    long upTo = changes.get();
+                    isStale = false;
+                    saveMetrics.captured();
+                    mappedCrate.force();
+                    durableChanges = upTo;
+                    long took = System.currentTimeMillis() - start;
+                    saveMetrics.saved(took, took, 0);
+                    return;
+                }
+                if (null != journal && ! isJournalBroken && journal.size() < journalCompactBytes){
+                    // changes are safe in the journal - no need to save the whole crate yet
+                    syncJournal();
+                    return;
+                }
                 logger.trace("saving trie on crate, " + crate.getName());
+                saveSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Save the crate as a whole, even if the journal is not full yet, and stop journaling. Called at shutdown
+     */
+    protected void closeTrie(){
+        FolderStamps stamps = captureFolderStamps();
+        synchronized (myLock) {
+            if (null != mappedCrate){
+                try {
+                    mappedCrate.close();
+                } catch (IOException ioe){
+                    logger.warn("Unable to close mapped crate " + getName() + " : " + ioe.getLocalizedMessage());
+                }
+                return;
+            }
+            if (isStale) {
+                saveSnapshot();
+            }
+            if (null != journal) {
+                synchronized (journalLock) {
+                    try {
+                        journal.close();
+                    } catch (IOException ioe) {
+                        logger.warn("Unable to close crate journal " + journal.getFile().getPath() + " : " + ioe.getLocalizedMessage());
+                    }
+                    journal = null;
+                }
+            }
+        }
+        saveFolderStamps(stamps);
+    }
+
+    /**
+     * Force all journaled changes to disk. Called by the storage every few seconds, so this is how much we can lose in a crash
+     */
+    protected void syncJournal(){
+        synchronized (journalLock) {
+            if (null != journal && ! isJournalBroken) {
+                try {
+                    // each change is journaled before it is counted, so all of these are in the journal
+                    long upTo = changes.get();
+                    journal.sync();
+                    durableChanges = upTo;
+                    saveMetrics.captured(); // every change is on disk, in the journal
+                } catch (IOException ioe) {
+                    journalFailed(ioe);
+                }
+            }
+        }
+    }
+
+    // save the whole crate, in whichever format we are using, and empty the journal because it is all in the snapshot now
+    private void saveSnapshot(){
+        long start = System.currentTimeMillis();
+        if (null == binaryCrateFile && null == journal) {
+            // the Trie writes itself out as it walks its nodes, so no walker may change it until it is done
+            try (StripedCrateLock.Held held = locks.lockAll()) {
+                long upTo = changes.get();
+                isStale = false;
+                saveMetrics.captured();
                 crate.saveMe(true);
+                durableChanges = upTo;
+            }
+            long took = System.currentTimeMillis() - start;
+            saveMetrics.saved(took, took, trieFile.length());
+        } else if (null == binaryCrateFile) {
+            // no changes can be made between the snapshot and emptying the journal, or they would be lost
+            // the Trie can only write itself to its own file, so the crate stays locked while it does
+            try (StripedCrateLock.Held held = locks.lockAll()) {
+                long upTo = changes.get();
                 isStale = false;
+                saveMetrics.captured();
+                crate.saveMe(true);
+                resetJournal();
+                durableChanges = upTo;
             }
+            long took = System.currentTimeMillis() - start;
+            saveMetrics.saved(took, took, trieFile.length());
+        } else {
+            saveBinaryCrate();
         }
     }
 
-    public void insertBranches(Set<String> _branches){
-        synchronized (crate){
-            for (String s : _branches) {
-                crate.insertBranch(s);
+    private FolderStamps captureFolderStamps(){
+        if (! isFolderStampsStale){
+            return null;
+        }
+        isFolderStampsStale = false;
+        return folderStamps.copy();
+    }
+
+    // the stamps are only a hint, so they are not journaled - at worst a folder is listed again that did not need to be
+    private void saveFolderStamps(FolderStamps _stamps){
+        if (null != _stamps){
+            try {
+                _stamps.save(folderStampsFile);
+            } catch (IOException ioe){
+                logger.warn("Unable to save folder stamps " + folderStampsFile.getPath() + " : " + ioe.getLocalizedMessage());
+                isFolderStampsStale = true;
             }
-            isStale = true;
         }
     }
 
-    public void insertLeaves(Set<String> _leaves){
-        synchronized (crate){
-            for (String s : _leaves){
-                String leaf = new String(s);
-                if (leaf.indexOf("\\")>0) {
-                    leaf = leaf.replaceAll("\\\\","/");
+    private void markStale(){
+        changes.incrementAndGet();
+        saveMetrics.changed();
+        isStale = true;
+    }
+
+    private void resetJournal(){
+        synchronized (journalLock) {
+            if (null != journal) {
+                try {
+                    journal.reset();
+                    isJournalBroken = false;
+                } catch (IOException ioe) {
+                    journalFailed(ioe);
                 }
-                String path = null;
-                String lastModStr = null;
-                String sizeStr = null;
-                String name = null;
-                long lastMod = 0;
-                long size = 0;
-                if (leaf.indexOf("_:_")>0){
-                    path = leaf.substring(0,leaf.indexOf("_:_"));
-                    leaf = leaf.substring(leaf.indexOf("_:_")+3);
-                    if (leaf.indexOf("_:_")>0){
-                        lastModStr = leaf.substring(0,leaf.indexOf("_:_"));
-                        sizeStr = leaf.substring(leaf.indexOf("_:_")+3);
-                    }
+            }
+        }
+    }
+
+    private interface JournalEntry {
+        void appendTo(CrateJournal _journal) throws IOException;
+    }
+
+    // changes in different stripes can reach the journal in any order - they touch different parts of the crate
+    private void journal(JournalEntry _entry){
+        synchronized (journalLock) {
+            if (null != journal && ! isJournalBroken) {
+                try {
+                    _entry.appendTo(journal);
+                } catch (IOException ioe) {
+                    journalFailed(ioe);
+                }
+            }
+        }
+    }
+
+    private void journalFailed(IOException _ioe){
+        logger.warn("Unable to write crate journal " + journal.getFile().getPath() + " : " + _ioe.getLocalizedMessage() + " - crate will be saved as a whole");
+        isJournalBroken = true;
+    }
+
+    private void saveBinaryCrate(){
+        long start = System.currentTimeMillis();
+        long locked = 0;
+        BinaryCrateFormat.CrateStats stats;
+        long upTo;
+        boolean isJournaled;
+        // the consistency point - every change before it is in the crate in memory, every change after it is in the new journal
+        synchronized (journalLock) {
+            upTo = changes.get();
+            isStale = false;
+            saveMetrics.captured();
+            if (isJournalBroken) {
+                resetJournal(); // nothing in it we can trust - start again from this snapshot
+            } else if (null != journal) {
+                try {
+                    journal.roll();
+                } catch (IOException ioe) {
+                    journalFailed(ioe);
                 }
-                if (null != path && path.indexOf("/")>0){
-                    name = path.substring(path.lastIndexOf("/")+1);
-                    path = path.substring(0,path.lastIndexOf("/"));
+            }
+            isJournaled = null != journal && ! isJournalBroken;
+        }
+        try {
+            if (isJournaled) {
+                // stream it straight to disk a folder at a time, while the walkers carry on - any folder written after
+                // they changed it is put right by replaying the new journal over it
+                stats = BinaryCrateFormat.write(crate, binaryCrateFile, locks);
+            } else {
+                // no journal to put a fuzzy snapshot right, so no walker may change the crate until it is written
+                try (StripedCrateLock.Held held = locks.lockAll()) {
+                    stats = BinaryCrateFormat.write(crate, binaryCrateFile);
                 }
+                locked = System.currentTimeMillis() - start;
+            }
+        } catch (IOException | RuntimeException e){
+            // eg disk full - the crate is still in memory, and the rolled journal is still on disk, so try again next time
+            logger.warn("Unable to save binary crate " + binaryCrateFile.getPath() + " : " + e.getLocalizedMessage());
+            markStale();
+            saveMetrics.failed();
+            return;
+        }
+        synchronized (journalLock) {
+            if (null != journal) {
+                journal.discardRolled(); // every change in it is in the snapshot
+            }
+        }
+        durableChanges = upTo;
+        long size = binaryCrateFile.length();
+        saveMetrics.saved(System.currentTimeMillis() - start, locked, size);
+        logger.debug("Saved binary crate " + binaryCrateFile.getPath() + " : " + stats + ", " + size + " bytes in " + (System.currentTimeMillis() - start) + "ms, crate locked for " + locked + "ms");
+        // the crate is now safely in the binary file - don't load the old format again next time we start
+        if (trieFile.exists()){
+            File converted = new File(trieFile.getPath() + CONVERTED_TRIE_SUFFIX);
+            if (trieFile.renameTo(converted)){
+                logger.info("Crate converted to binary format - old trie file moved to " + converted.getPath());
+            } else {
+                logger.warn("Crate converted to binary format but unable to move old trie file, " + trieFile.getPath());
+            }
+        }
+    }
 
-                if (null != lastModStr){
-                    try {
-                        lastMod = Long.parseLong(lastModStr);
-                    } catch (NumberFormatException nfe){
-                        // do nothing. LastMod = 0 is not ideal for a TrieLeaf but if we don't have a lst mod date, we can still insert
-                    }
+    public void insertBranches(Set<String> _branches){
+        for (String s : _branches) {
+            if (null != mappedCrate){
+                try {
+                    mappedCrate.insertBranch(s);
+                } catch (IOException ioe){
+                    logger.warn("Unable to insert folder " + s + " into mapped crate : " + ioe.getLocalizedMessage());
                 }
-                if (null != sizeStr){
-                    try {
-                        size = Long.parseLong(sizeStr);
-                    } catch (NumberFormatException nfe){
-                        // do nothing - size of zero is not a problem for a Trie Leaf
-                    }
+                continue;
+            }
+            try (StripedCrateLock.Held held = locks.lockNode(s, stripeExists)) {
+                crate.insertBranch(s);
+                journal(j -> j.appendBranch(s));
+            }
+        }
+        markStale();
+    }
+
+    /**
+     * Insert, or update, files in the crate
+     * @param _leaves files to insert. Each run of files from the same folder is inserted under one lock, and the
+     *                folder is only looked up once for the run
+     */
+    public void insertLeaves(CrateLeafBatch _leaves){
+        int i = 0;
+        while (i < _leaves.size()){
+            String folder = _leaves.getFolder(i);
+            int end = i + 1;
+            while (end < _leaves.size() && _leaves.getFolder(end) == folder){
+                end++;
+            }
+            if (null != mappedCrate){
+                try {
+                    mappedCrate.insertLeaves(_leaves, i, end);
+                } catch (IOException ioe){
+                    logger.warn("Unable to insert files in " + folder + " into mapped crate : " + ioe.getLocalizedMessage());
                 }
-                if (null != path && null != name){
-                    crate.insertLeaf(path, name, lastMod, size);
+                i = end;
+                continue;
+            }
+            try (StripedCrateLock.Held held = locks.lockContentsOf(folder, stripeExists)) {
+                // find, or create, the folder once and add all its files directly
+                TrieBranch branch = crate.insert(folder);
+                for (; i < end; i++){
+                    final String name = _leaves.getName(i);
+                    final long lastMod = _leaves.getLastModified(i);
+                    final long size = _leaves.getSize(i);
+                    branch.addLeaf(name, lastMod, size);
+                    journal(j -> j.appendLeaf(folder, name, lastMod, size));
                 }
             }
-            isStale = true;
+        }
+        if (! _leaves.isEmpty()){
+            markStale();
         }
     }
 
     public void deleteNodes(Set<String> _nodePaths){
-        synchronized (crate){
-            for (String s : _nodePaths){
+        for (String s : _nodePaths){
+            folderStamps.remove(s);
+            if (null != mappedCrate){
+                mappedCrate.removeNode(s);
+                continue;
+            }
+            try (StripedCrateLock.Held held = locks.lockNode(s, stripeExists)) {
                 crate.removeNode(s);
+                journal(j -> j.appendDelete(s));
             }
-            isStale = true;
         }
+        if (! _nodePaths.isEmpty()){
+            isFolderStampsStale = true;
+        }
+        markStale();
     }
 }
@@ -0,0 +1,89 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * One copy of each file name put in a crate.
+ *
+ * The same names turn up in folder after folder - Thumbs.db, desktop.ini, index.html, 2019.xlsx - and every file the
+ * walker finds comes with a freshly allocated name. Interning them here means the crate keeps one String per
+ * distinct name rather than one per file.
+ *
+ * Names are held weakly, so a name stays in the dictionary only while a crate still holds it - when files are
+ * deleted, or a crate is reloaded or closed, the names nothing uses any more drop out. The dictionary is split into
+ * stripes, each with its own lock, so walker threads rarely wait for each other. A stripe that is full (MAX_ENTRIES
+ * between them) takes no new names until some drop out; names that don't fit are used as they are.
+ */
+
+public final class SegmentDictionary {
+
+    public static final int MAX_ENTRIES = 1 << 20;
+    private static final int STRIPES = 16;
+
+    /** the dictionary shared by every crate in the JVM */
+    static final SegmentDictionary NAMES = new SegmentDictionary(MAX_ENTRIES);
+
+    private final Map<String,WeakReference<String>>[] stripes;
+    private final int maxPerStripe;
+
+    /**
+     * @param _maxEntries most names the dictionary holds at once
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentDictionary(int _maxEntries){
+        stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++){
+            stripes[i] = new WeakHashMap<>();
+        }
+        maxPerStripe = Math.max(1, _maxEntries / STRIPES);
+    }
+
+    /**
+     * @param _segment a file or folder name
+     * @return the copy of this name held by the dictionary, or the name itself if the dictionary has no room for it
+     */
+    public String intern(String _segment){
+        Map<String,WeakReference<String>> stripe = stripeFor(_segment);
+        synchronized (stripe) {
+            WeakReference<String> ref = stripe.get(_segment);
+            String existing = null == ref ? null : ref.get();
+            if (null != existing){
+                return existing;
+            }
+            if (stripe.size() >= maxPerStripe){
+                return _segment;
+            }
+            // the value must not hold the key, or it would never be dropped
+            stripe.put(_segment, new WeakReference<>(_segment));
+            return _segment;
+        }
+    }
+
+    /**
+     * @return number of names held - names no crate holds any more are only dropped once they have been collected
+     */
+    public int size(){
+        int size = 0;
+        for (Map<String,WeakReference<String>> stripe : stripes){
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Map<String,WeakReference<String>> stripeFor(String _segment){
+        int hash = _segment.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+}
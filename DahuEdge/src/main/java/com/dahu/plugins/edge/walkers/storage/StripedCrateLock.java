@@ -0,0 +1,141 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Locks for a crate held in a Trie, so walker threads working in different parts of the file system can change
+ * the crate at the same time.
+ *
+ * The crate is split into stripes at a fixed depth - with the default depth of 3, everything under
+ * smb://server/share is one stripe, and everything under C:/data/projects is another. A stripe is the folder at
+ * that depth and everything below it. A change inside a stripe only touches Trie branches in that stripe, so it
+ * takes a shared structure lock plus the lock for that stripe (stripes are hashed onto a fixed set of locks).
+ *
+ * Changes above the stripe depth, or that create the folder at the top of a stripe, change branches shared by
+ * several stripes and take the structure lock exclusively, as does a save of the whole crate - so a snapshot never
+ * sees a change half made.
+ *
+ * Reads take the same locks as a change to the same folder, so a reader always sees a folder between two changes,
+ * and only waits for changes in its own stripe.
+ */
+
+class StripedCrateLock {
+
+    static final int DEFAULT_STRIPES = 64;
+    static final int DEFAULT_DEPTH = 3;
+
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes;
+    private final int depth;
+
+    /**
+     * Locks held for one change or read. Release with close(), normally from try-with-resources
+     */
+    interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final Held releaseAll = new Held() {
+        @Override
+        public void close(){
+            structureLock.writeLock().unlock();
+        }
+    };
+
+    StripedCrateLock(){
+        this(DEFAULT_STRIPES, DEFAULT_DEPTH);
+    }
+
+    StripedCrateLock(int _stripes, int _depth){
+        stripes = new ReentrantLock[Math.max(1, _stripes)];
+        for (int i = 0; i < stripes.length; i++){
+            stripes[i] = new ReentrantLock();
+        }
+        depth = Math.max(1, _depth);
+    }
+
+    /**
+     * Lock for a change to the contents of a folder - inserting a file into it, or a folder below it
+     * @param _path path to the folder whose contents change
+     * @param _stripeExists tells us if the folder at the top of a stripe is already in the crate
+     * @return the locks held - must be closed
+     */
+    Held lockContentsOf(String _path, Predicate<String> _stripeExists){
+        return lock(MappedCrate.segments(_path), depth, _stripeExists);
+    }
+
+    /**
+     * Lock for a change to a folder or file itself - inserting or removing it - which changes the folder it is in
+     * @param _path path to the folder or file
+     * @param _stripeExists tells us if the folder at the top of a stripe is already in the crate
+     * @return the locks held - must be closed
+     */
+    Held lockNode(String _path, Predicate<String> _stripeExists){
+        return lock(MappedCrate.segments(_path), depth + 1, _stripeExists);
+    }
+
+    /**
+     * Lock to read the contents of a folder
+     * @param _path path to the folder
+     * @return the locks held - must be closed
+     */
+    Held lockForRead(String _path){
+        List<String> segments = MappedCrate.segments(_path);
+        structureLock.readLock().lock();
+        if (segments.size() < depth){
+            // only changed under the exclusive structure lock
+            return structureLock.readLock()::unlock;
+        }
+        return holdStripe(stripeFor(segments));
+    }
+
+    /**
+     * Lock the whole crate, eg to save it
+     * @return the lock held - must be closed
+     */
+    Held lockAll(){
+        structureLock.writeLock().lock();
+        return releaseAll;
+    }
+
+
+    private Held lock(List<String> _segments, int _minimumDepth, Predicate<String> _stripeExists){
+        if (_segments.size() >= _minimumDepth){
+            structureLock.readLock().lock();
+            if (_stripeExists.test(String.join("/", _segments.subList(0, depth)))){
+                return holdStripe(stripeFor(_segments));
+            }
+            structureLock.readLock().unlock();
+        }
+        return lockAll();
+    }
+
+    private Held holdStripe(ReentrantLock _stripe){
+        _stripe.lock();
+        return () -> {
+            _stripe.unlock();
+            structureLock.readLock().unlock();
+        };
+    }
+
+    private ReentrantLock stripeFor(List<String> _segments){
+        int hash = 0;
+        for (int i = 0; i < depth; i++){
+            hash = 31 * hash + _segments.get(i).hashCode();
+        }
+        hash ^= hash >>> 16;
+        return stripes[(hash & 0x7fffffff) % stripes.length];
+    }
+}
@@ -0,0 +1,110 @@
+package com.dahu.plugins.edge.walkers.storage;
+
+import com.dahu.core.trie.TrieBranch;
+import com.dahu.core.trie.TrieLeaf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * CrateFolder for a crate held in a Trie - a thin wrapper around a TrieBranch.
+ * Each call takes the read lock for the folder's stripe, and files are copied out, so the walker sees the folder
+ * as it was between two changes.
+ */
+
+class TrieCrateFolder implements CrateFolder {
+
+    private final TrieBranch branch;
+    private final StripedCrateLock locks;
+
+    TrieCrateFolder(TrieBranch _branch, StripedCrateLock _locks){
+        branch = _branch;
+        locks = _locks;
+    }
+
+    @Override
+    public String getName(){
+        return branch.getName();
+    }
+
+    @Override
+    public String getFullPath(){
+        return branch.getFullPath();
+    }
+
+    @Override
+    public List<CrateFile> getFiles(){
+        try (StripedCrateLock.Held held = locks.lockForRead(branch.getFullPath())) {
+            List<TrieLeaf> leaves = branch.getFiles();
+            List<CrateFile> files = new ArrayList<>(leaves.size());
+            for (TrieLeaf leaf : leaves){
+                files.add(new TrieCrateFile(leaf));
+            }
+            return files;
+        }
+    }
+
+    @Override
+    public List<CrateFolder> getChildren(){
+        try (StripedCrateLock.Held held = locks.lockForRead(branch.getFullPath())) {
+            List<CrateFolder> children = new ArrayList<>();
+            for (TrieBranch child : branch.getChildren()){
+                children.add(new TrieCrateFolder(child, locks));
+            }
+            return children;
+        }
+    }
+
+    @Override
+    public boolean childExists(String _name){
+        try (StripedCrateLock.Held held = locks.lockForRead(branch.getFullPath())) {
+            return branch.childExists(_name);
+        }
+    }
+
+    @Override
+    public CrateFolder moveToChildNode(String _name){
+        try (StripedCrateLock.Held held = locks.lockForRead(branch.getFullPath())) {
+            TrieBranch child = branch.moveToChildNode(_name);
+            return null == child ? null : new TrieCrateFolder(child, locks);
+        }
+    }
+
+
+    // copied out of the TrieLeaf, which may be updated once we let go of the lock
+    static class TrieCrateFile implements CrateFile {
+
+        private final String name;
+        private final long lastModified;
+        private final long size;
+
+        TrieCrateFile(TrieLeaf _leaf){
+            name = _leaf.getName();
+            lastModified = _leaf.getLastModifiedDate();
+            size = _leaf.getSize();
+        }
+
+        @Override
+        public String getName(){
+            return name;
+        }
+
+        @Override
+        public long getLastModifiedDate(){
+            return lastModified;
+        }
+
+        @Override
+        public long getSize(){
+            return size;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.dahu.plugins.edge.walkers.tools;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.core.trie.Trie;
+import com.dahu.plugins.edge.walkers.storage.BinaryCrateFormat;
+import com.dahu.plugins.edge.walkers.storage.ProtectedTrie;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Tool to convert a walker crate between the Trie's own file format and the compact BinaryCrateFormat
+ * Run it while the walker is stopped.
+ *
+ * Usage : java -cp ./run/lib/DahuDEFServer.jar:./target/classes com.dahu.plugins.edge.walkers.tools.CrateConverter toBinary PATH_TO_TRIE_FILE
+ *         java -cp ./run/lib/DahuDEFServer.jar:./target/classes com.dahu.plugins.edge.walkers.tools.CrateConverter toTrie PATH_TO_TRIE_FILE
+ *
+ * where PATH_TO_TRIE_FILE = crate_path/trie_file from the walker storage config
+ *
+ * toBinary - loads the trie file and writes PATH_TO_TRIE_FILE.crate
+ * toTrie   - loads PATH_TO_TRIE_FILE.crate and saves it as the trie file, eg to go back to the old format
+ *
+ */
+
+public class CrateConverter {
+
+    public static void main(String[] args){
+
+        if (args.length != 2){
+            errorExit("Wrong number of arguments");
+        }
+        String direction = args[0];
+        String triePath = args[1];
+        File binaryFile = new File(triePath + ProtectedTrie.BINARY_CRATE_SUFFIX);
+
+        Logger logger = DEFLogManager.getLogger("CrateConverter", Level.INFO);
+        long start = System.currentTimeMillis();
+
+        try {
+            if (direction.equalsIgnoreCase("toBinary")) {
+                if (!new File(triePath).exists()) {
+                    errorExit("No trie file at " + triePath);
+                }
+                Trie crate = new Trie(triePath, logger);
+                System.out.println("Loaded " + triePath + " in " + (System.currentTimeMillis() - start) + "ms");
+                start = System.currentTimeMillis();
+                BinaryCrateFormat.CrateStats stats = BinaryCrateFormat.write(crate, binaryFile);
+                System.out.println("Wrote " + stats + " to " + binaryFile.getPath() + " (" + binaryFile.length() + " bytes) in " + (System.currentTimeMillis() - start) + "ms");
+            } else if (direction.equalsIgnoreCase("toTrie")) {
+                if (!binaryFile.exists()) {
+                    errorExit("No binary crate at " + binaryFile.getPath());
+                }
+                if (new File(triePath).exists()) {
+                    errorExit("Trie file " + triePath + " already exists - move it out of the way first");
+                }
+                Trie crate = new Trie(triePath, logger);
+                BinaryCrateFormat.CrateStats stats = BinaryCrateFormat.read(binaryFile, crate);
+                System.out.println("Loaded " + stats + " from " + binaryFile.getPath() + " in " + (System.currentTimeMillis() - start) + "ms");
+                start = System.currentTimeMillis();
+                crate.saveMe(true);
+                System.out.println("Saved " + triePath + " in " + (System.currentTimeMillis() - start) + "ms");
+            } else {
+                errorExit("Unknown conversion, " + direction);
+            }
+        } catch (IOException ioe){
+            ioe.printStackTrace();
+            errorExit("Conversion failed : " + ioe.getLocalizedMessage());
+        }
+    }
+
+    private static void errorExit(String _message){
+        System.err.println(_message);
+        System.err.println("CrateConverter :: Enter toBinary|toTrie pathToTrieFile");
+        System.err.println("CrateConverter :: \t pathToTrieFile = crate_path/trie_file from the walker storage config");
+        System.exit(1);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.dahu.Edge.benchmarks;
+
+import com.dahu.plugins.edge.walkers.CrawlMessage;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Cost per crawl queue message of reading and writing it - the old way (a new ObjectMapper and readTree for each
+ * message read, an ObjectNode for each message written) against CrawlMessage.
+ *
+ * Not part of the unit tests. Run it with the test classpath, eg from the IDE, or
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat cp.txt) com.dahu.Edge.benchmarks.CrawlMessageBenchmark
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CrawlMessageBenchmark {
+
+    private final String folder = "smb://server/share/projects/2019/client files/reports";
+    private final String message = "{\"id\":\"smb://server/share/projects/2019/client files/reports\",\"level\":4}";
+
+    @Benchmark
+    public String readObjectMapper() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode msgNode = mapper.readTree(message);
+        return msgNode.get("id").getTextValue() + msgNode.get("level").getIntValue();
+    }
+
+    @Benchmark
+    public String readCrawlMessage() throws IOException {
+        CrawlMessage msg = CrawlMessage.fromJson(message);
+        return msg.getId() + msg.getLevel();
+    }
+
+    @Benchmark
+    public String writeObjectNode(){
+        ObjectNode node = new ObjectNode(JsonNodeFactory.instance);
+        node.put("id", folder);
+        node.put("level", 4);
+        return node.toString();
+    }
+
+    @Benchmark
+    public String writeCrawlMessage(){
+        return CrawlMessage.toJson(folder, 4, false);
+    }
+
+    public static void main(String[] _args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CrawlMessageBenchmark.class.getSimpleName()).build()).run();
+    }
+}
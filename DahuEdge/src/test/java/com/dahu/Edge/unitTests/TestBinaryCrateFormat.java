@@ -0,0 +1,93 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.core.trie.Trie;
+import com.dahu.core.trie.TrieBranch;
+import com.dahu.core.trie.TrieLeaf;
+import com.dahu.plugins.edge.walkers.storage.BinaryCrateFormat;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestBinaryCrateFormat {
+
+    Logger logger = DEFLogManager.getLogger("TestBinaryCrateFormat", Level.DEBUG);
+
+    @Test
+    public void testRoundTrip() throws IOException {
+
+        File dir = Files.createTempDirectory("crate").toFile();
+        Trie crate = new Trie(dir.getAbsolutePath() + "/original", logger);
+        crate.insertBranch("smb://server/share/folder1/");
+        crate.insertBranch("smb://server/share/folder1/sub folder/");
+        crate.insertBranch("smb://server/share/folder2/");
+        crate.insertLeaf("smb://server/share/folder1", "report.docx", 1571133600000L, 20480);
+        crate.insertLeaf("smb://server/share/folder1", "report.pdf", 1571133601000L, 1024);
+        crate.insertLeaf("smb://server/share/folder1/sub folder", "résumé.txt", 1500000000000L, 12);
+        crate.insertLeaf("smb://server/share/folder2", "empty.txt", 0, 0);
+
+        File binaryFile = new File(dir, "original.crate");
+        BinaryCrateFormat.CrateStats written = BinaryCrateFormat.write(crate, binaryFile);
+        Assert.assertEquals(written.getLeaves(), 4);
+
+        Trie loaded = new Trie(dir.getAbsolutePath() + "/loaded", logger);
+        BinaryCrateFormat.CrateStats read = BinaryCrateFormat.read(binaryFile, loaded);
+        Assert.assertEquals(read.getBranches(), written.getBranches());
+        Assert.assertEquals(read.getLeaves(), written.getLeaves());
+
+        TrieBranch folder1 = (TrieBranch)loaded.getNode("smb://server/share/folder1");
+        Assert.assertNotNull(folder1);
+        Assert.assertEquals(folder1.getFiles().size(), 2);
+        for (TrieLeaf leaf : folder1.getFiles()){
+            if (leaf.getName().equals("report.docx")){
+                Assert.assertEquals(leaf.getLastModifiedDate(), 1571133600000L);
+                Assert.assertEquals(leaf.getSize(), 20480);
+            } else {
+                Assert.assertEquals(leaf.getName(), "report.pdf");
+            }
+        }
+        TrieBranch subFolder = (TrieBranch)loaded.getNode("smb://server/share/folder1/sub folder");
+        Assert.assertNotNull(subFolder);
+        Assert.assertEquals(subFolder.getFiles().get(0).getName(), "résumé.txt");
+        Assert.assertNotNull(loaded.getNode("smb://server/share/folder2"));
+    }
+
+    @Test
+    public void testTruncatedFileIsRejected() throws IOException {
+
+        File dir = Files.createTempDirectory("crate").toFile();
+        Trie crate = new Trie(dir.getAbsolutePath() + "/original", logger);
+        crate.insertBranch("/crawldocs/folder2add/");
+        crate.insertLeaf("/crawldocs/folder2add", "addme.txt", 1571133600000L, 100);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryCrateFormat.write(crate, out);
+        byte[] bytes = out.toByteArray();
+
+        try {
+            BinaryCrateFormat.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)), new Trie(dir.getAbsolutePath() + "/loaded", logger));
+            Assert.fail("Truncated crate should not load");
+        } catch (IOException ioe){
+            // expected
+        }
+    }
+
+}
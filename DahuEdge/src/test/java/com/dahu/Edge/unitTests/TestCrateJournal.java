@@ -0,0 +1,107 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.core.trie.Trie;
+import com.dahu.core.trie.TrieBranch;
+import com.dahu.plugins.edge.walkers.storage.CrateJournal;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestCrateJournal {
+
+    Logger logger = DEFLogManager.getLogger("TestCrateJournal", Level.DEBUG);
+
+    @Test
+    public void testReplay() throws IOException {
+
+        File dir = Files.createTempDirectory("journal").toFile();
+        File journalFile = new File(dir, "crate.journal");
+
+        CrateJournal journal = new CrateJournal(journalFile, logger);
+        Assert.assertEquals(journal.replay(new Trie(dir.getAbsolutePath() + "/empty", logger)), 0);
+        journal.open();
+        journal.appendBranch("smb://server/share/folder1/");
+        journal.appendLeaf("smb://server/share/folder1", "keep.txt", 1571133600000L, 100);
+        journal.appendLeaf("smb://server/share/folder1", "gone.txt", 1571133600000L, 200);
+        journal.appendDelete("smb://server/share/folder1/gone.txt");
+        journal.sync();
+        Assert.assertEquals(journal.size(), journalFile.length());
+        journal.close();
+
+        // a record that was only half written when we stopped
+        try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+            out.write(new byte[]{40, 'B', 's', 'm'});
+        }
+        long goodLength = journalFile.length() - 4;
+
+        Trie crate = new Trie(dir.getAbsolutePath() + "/replayed", logger);
+        Assert.assertEquals(new CrateJournal(journalFile, logger).replay(crate), 4);
+        Assert.assertEquals(journalFile.length(), goodLength);
+
+        TrieBranch folder = (TrieBranch)crate.getNode("smb://server/share/folder1");
+        Assert.assertNotNull(folder);
+        Assert.assertEquals(folder.getFiles().size(), 1);
+        Assert.assertEquals(folder.getFiles().get(0).getName(), "keep.txt");
+
+        // once the crate has been saved, the journal starts again
+        journal.open();
+        journal.reset();
+        Assert.assertEquals(journalFile.length(), 0);
+        journal.close();
+    }
+
+    @Test
+    public void testRoll() throws IOException {
+
+        File dir = Files.createTempDirectory("journal").toFile();
+        File journalFile = new File(dir, "crate.journal");
+        File rolledFile = new File(dir, "crate.journal" + CrateJournal.ROLLED_SUFFIX);
+
+        CrateJournal journal = new CrateJournal(journalFile, logger);
+        journal.open();
+        journal.appendLeaf("C:/data", "before.txt", 1571133600000L, 100);
+
+        // snapshot taken here - later changes go to a new journal
+        journal.roll();
+        Assert.assertTrue(rolledFile.exists());
+        Assert.assertEquals(journal.size(), 0);
+        journal.appendLeaf("C:/data", "after.txt", 1571133600000L, 200);
+        journal.appendDelete("C:/data/before.txt");
+
+        // snapshot never got written - roll again, both lots of changes are kept, in order
+        journal.roll();
+        journal.appendLeaf("C:/data", "last.txt", 1571133600000L, 300);
+        journal.close();
+
+        Trie crate = new Trie(dir.getAbsolutePath() + "/replayed", logger);
+        Assert.assertEquals(new CrateJournal(journalFile, logger).replay(crate), 4);
+        TrieBranch folder = (TrieBranch)crate.getNode("C:/data");
+        Assert.assertEquals(folder.getFiles().size(), 2);
+        Assert.assertNull(crate.getNode("C:/data/before.txt"));
+
+        // snapshot written - only changes after it are left
+        journal.open();
+        journal.discardRolled();
+        Assert.assertFalse(rolledFile.exists());
+        journal.close();
+        Assert.assertEquals(new CrateJournal(journalFile, logger).replay(new Trie(dir.getAbsolutePath() + "/last", logger)), 1);
+    }
+
+}
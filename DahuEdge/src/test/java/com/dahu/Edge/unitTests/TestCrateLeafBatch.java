@@ -0,0 +1,99 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.plugins.edge.walkers.storage.CrateFile;
+import com.dahu.plugins.edge.walkers.storage.CrateFolder;
+import com.dahu.plugins.edge.walkers.storage.CrateLeafBatch;
+import com.dahu.plugins.edge.walkers.storage.ProtectedTrie;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestCrateLeafBatch {
+
+    Logger logger = DEFLogManager.getLogger("TestCrateLeafBatch", Level.DEBUG);
+
+    @Test
+    public void testAdd(){
+
+        CrateLeafBatch batch = new CrateLeafBatch();
+        Assert.assertTrue(batch.isEmpty());
+
+        Assert.assertTrue(batch.add("smb://server/share/folder1/a.txt", 1571133600000L, 100));
+        Assert.assertTrue(batch.add("smb://server/share/folder1/b.txt", 1571133700000L, 200));
+        Assert.assertTrue(batch.add("C:\\data\\c.txt", 1571133800000L, 300));
+        Assert.assertTrue(batch.add("/data/d.txt", 1571133900000L, 400));
+        Assert.assertFalse(batch.add("nofolder.txt", 0, 0));
+
+        Assert.assertEquals(batch.size(), 4);
+        Assert.assertEquals(batch.getFolder(0), "smb://server/share/folder1");
+        Assert.assertEquals(batch.getName(1), "b.txt");
+        Assert.assertEquals(batch.getLastModified(1), 1571133700000L);
+        Assert.assertEquals(batch.getSize(1), 200);
+        Assert.assertSame(batch.getFolder(0), batch.getFolder(1)); // files in the same folder share the folder
+        Assert.assertEquals(batch.getFolder(2), "C:/data");
+        Assert.assertEquals(batch.getName(2), "c.txt");
+        Assert.assertEquals(batch.getFolder(3), "/data");
+
+        for (int i = 0; i < 1000; i++){
+            batch.add("C:/data/big", "file" + i, i, i);
+        }
+        Assert.assertEquals(batch.size(), 1004);
+        Assert.assertEquals(batch.getName(1003), "file999");
+
+        batch.clear();
+        Assert.assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    public void testInsertLeaves() throws IOException {
+
+        File dir = Files.createTempDirectory("leaves").toFile();
+        ProtectedTrie crate = new ProtectedTrie(dir.getAbsolutePath() + "/crate", logger);
+
+        // two runs of files in folder1, with folder2 between them
+        CrateLeafBatch batch = new CrateLeafBatch();
+        batch.add("smb://server/share/folder1", "a.txt", 100, 1);
+        batch.add("smb://server/share/folder1", "b.txt", 200, 2);
+        batch.add("smb://server/share/folder2", "c.txt", 300, 3);
+        batch.add("smb://server/share/folder1", "d.txt", 400, 4);
+        crate.insertLeaves(batch);
+
+        Map<String,CrateFile> folder1 = filesIn(crate.getFolder("smb://server/share/folder1"));
+        Assert.assertEquals(folder1.size(), 3);
+        Assert.assertEquals(folder1.get("a.txt").getLastModifiedDate(), 100);
+        Assert.assertEquals(folder1.get("b.txt").getSize(), 2);
+        Assert.assertEquals(folder1.get("d.txt").getLastModifiedDate(), 400);
+
+        Map<String,CrateFile> folder2 = filesIn(crate.getFolder("smb://server/share/folder2"));
+        Assert.assertEquals(folder2.size(), 1);
+        Assert.assertEquals(folder2.get("c.txt").getSize(), 3);
+    }
+
+    private static Map<String,CrateFile> filesIn(CrateFolder _folder){
+        Assert.assertNotNull(_folder);
+        Map<String,CrateFile> files = new HashMap<>();
+        for (CrateFile file : _folder.getFiles()){
+            files.put(file.getName(), file);
+        }
+        return files;
+    }
+
+}
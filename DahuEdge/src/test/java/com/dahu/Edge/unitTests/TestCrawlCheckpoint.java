@@ -0,0 +1,161 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.plugins.edge.walkers.CrawlCheckpoint;
+import com.dahu.plugins.edge.walkers.CrawlMessage;
+import com.dahu.plugins.edge.walkers.RefreshScheduler;
+import com.dahu.plugins.edge.walkers.storage.CrateLeafBatch;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestCrawlCheckpoint {
+
+    Logger logger = DEFLogManager.getLogger("TestCrawlCheckpoint", Level.DEBUG);
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+
+        File dir = Files.createTempDirectory("checkpoints").toFile();
+        File file = CrawlCheckpoint.newFile(dir, "walker", 1);
+
+        String message = CrawlMessage.toJson("smb://server/share/projects", 2, false);
+        Set<String> branches = new HashSet<>(Arrays.asList("smb://server/share/projects", "smb://server/share/projects/caf\u00e9"));
+        CrateLeafBatch leaves = new CrateLeafBatch();
+        leaves.add("smb://server/share/projects/a.txt", 1571133600000L, 100);
+        leaves.add("smb://server/share/projects/b.txt", 1571133600000L, 200);
+        leaves.add("smb://server/share/projects/caf\u00e9/c.txt", 1571133600000L, 300);
+        Set<String> deletes = Collections.singleton("smb://server/share/projects/gone");
+        Map<String,Long> stamps = new HashMap<>();
+        stamps.put("smb://server/share/projects", 1571133500000L);
+        Set<String> changed = Collections.singleton("smb://server/share/projects");
+
+        new CrawlCheckpoint(message, false, branches, leaves, deletes, stamps, changed).write(file);
+        Assert.assertFalse(new File(file.getAbsolutePath() + ".tmp").exists());
+
+        CrawlCheckpoint read = CrawlCheckpoint.read(file);
+        Assert.assertEquals(read.getMessage(), message);
+        Assert.assertFalse(read.isFinished());
+        Assert.assertEquals(read.getBranches(), branches);
+        Assert.assertEquals(read.getLeaves().size(), 3);
+        Assert.assertEquals(read.getLeaves().getName(2), "c.txt");
+        Assert.assertEquals(read.getLeaves().getFolder(2), "smb://server/share/projects/caf\u00e9");
+        Assert.assertEquals(read.getLeaves().getSize(1), 200);
+        // files of the same folder share the folder string, as the crate expects
+        Assert.assertSame(read.getLeaves().getFolder(0), read.getLeaves().getFolder(1));
+        Assert.assertEquals(read.getDeletes(), deletes);
+        Assert.assertEquals(read.getStamps(), stamps);
+        Assert.assertEquals(read.getChanged(), changed);
+
+        // a later checkpoint of the same unit replaces it
+        new CrawlCheckpoint(message, true, branches, leaves, deletes, stamps, changed).write(file);
+        Assert.assertTrue(CrawlCheckpoint.read(file).isFinished());
+
+        try (FileOutputStream out = new FileOutputStream(file)){
+            out.write(new byte[]{1, 2, 3, 4, 5});
+        }
+        try {
+            CrawlCheckpoint.read(file);
+            Assert.fail("not a checkpoint");
+        } catch (IOException ioe){
+            // expected
+        }
+    }
+
+    @Test
+    public void testFind() throws IOException {
+
+        File dir = Files.createTempDirectory("checkpoints").toFile();
+        Assert.assertTrue(CrawlCheckpoint.find(new File(dir, "missing"), "walker").isEmpty());
+
+        File first = CrawlCheckpoint.newFile(dir, "walker", 2);
+        File second = CrawlCheckpoint.newFile(dir, "walker", 1);
+        File third = CrawlCheckpoint.newFile(dir, "walker", 2);
+        File otherService = CrawlCheckpoint.newFile(dir, "walker-2", 1);
+        for (File file : Arrays.asList(third, otherService, first, second)){
+            new CrawlCheckpoint("{}", true, Collections.emptySet(), new CrateLeafBatch(), Collections.emptySet(), Collections.emptyMap(), Collections.emptySet()).write(file);
+        }
+        Assert.assertTrue(new File(dir, "walker-1-notes.checkpoint.tmp").createNewFile());
+
+        // in the order they were started, whichever thread started them
+        List<File> found = CrawlCheckpoint.find(dir, "walker");
+        Assert.assertEquals(found, Arrays.asList(first, second, third));
+        Assert.assertEquals(CrawlCheckpoint.find(dir, "walker-2"), Collections.singletonList(otherService));
+    }
+
+    @Test
+    public void testRecoveredOncePerService() throws Exception {
+
+        File dir = Files.createTempDirectory("checkpoints").toFile();
+        // left from before the restart
+        File first = CrawlCheckpoint.newFile(dir, "TestRecovery", 1);
+        File second = CrawlCheckpoint.newFile(dir, "TestRecovery", 2);
+        for (File file : Arrays.asList(first, second)){
+            new CrawlCheckpoint("{}", false, Collections.emptySet(), new CrateLeafBatch(), Collections.emptySet(), Collections.emptyMap(), Collections.emptySet()).write(file);
+        }
+
+        // two walker threads of the service start together - as onStartofService does, only the leader recovers, and a
+        // thread that is crawling already has its checkpoint left alone
+        List<List<File>> recovered = new CopyOnWriteArrayList<>();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch ready = new CountDownLatch(2);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 1; t <= 2; t++){
+            int threadNumber = t;
+            threads.add(new Thread(() -> {
+                try {
+                    RefreshScheduler scheduler = RefreshScheduler.getScheduler("TestRecovery", null, () -> false, logger);
+                    ready.countDown();
+                    ready.await();
+                    if (scheduler.elect(threadNumber)){
+                        recovered.add(CrawlCheckpoint.find(dir, "TestRecovery", scheduler.getCheckpointMark()));
+                    } else {
+                        new CrawlCheckpoint("{}", false, Collections.emptySet(), new CrateLeafBatch(), Collections.emptySet(), Collections.emptyMap(), Collections.emptySet())
+                                .write(CrawlCheckpoint.newFile(dir, "TestRecovery", threadNumber));
+                    }
+                } catch (Throwable e){
+                    errors.add(e);
+                }
+            }));
+        }
+        for (Thread thread : threads){
+            thread.start();
+        }
+        for (Thread thread : threads){
+            thread.join();
+        }
+        RefreshScheduler.getScheduler("TestRecovery", null, () -> false, logger).shutdown();
+
+        Assert.assertTrue(errors.isEmpty(), errors.toString());
+        Assert.assertEquals(recovered.size(), 1);
+        Assert.assertEquals(recovered.get(0), Arrays.asList(first, second));
+        Assert.assertEquals(CrawlCheckpoint.find(dir, "TestRecovery").size(), 3);
+    }
+
+}
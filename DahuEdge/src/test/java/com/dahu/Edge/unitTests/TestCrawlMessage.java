@@ -0,0 +1,54 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.plugins.edge.walkers.CrawlMessage;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestCrawlMessage {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+
+        String json = CrawlMessage.toJson("C:\\data\\\"quoted\" folder\\\u00e9", 3, true);
+        CrawlMessage msg = CrawlMessage.fromJson(json);
+        Assert.assertNotNull(msg);
+        Assert.assertEquals(msg.getId(), "C:\\data\\\"quoted\" folder\\\u00e9");
+        Assert.assertEquals(msg.getLevel(), 3);
+        Assert.assertTrue(msg.isFolderOnly());
+
+        Assert.assertEquals(CrawlMessage.toJson("/data/folder", 0, false), "{\"id\":\"/data/folder\",\"level\":0}");
+    }
+
+    @Test
+    public void testOldAndBadMessages() throws IOException {
+
+        // as written before CrawlMessage, with fields in any order and fields we don't know
+        CrawlMessage msg = CrawlMessage.fromJson("{\"level\":99,\"extra\":{\"a\":[1,2]},\"id\":\"smb://server/share/folder/\"}");
+        Assert.assertNotNull(msg);
+        Assert.assertEquals(msg.getId(), "smb://server/share/folder/");
+        Assert.assertEquals(msg.getLevel(), 99);
+        Assert.assertFalse(msg.isFolderOnly());
+
+        Assert.assertNull(CrawlMessage.fromJson("{\"id\":\"/data/folder\"}"));
+        Assert.assertNull(CrawlMessage.fromJson("{\"level\":2}"));
+        try {
+            CrawlMessage.fromJson("/data/folder");
+            Assert.fail("not JSON");
+        } catch (IOException ioe){
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.plugins.edge.walkers.CrawlPartitioner;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestCrawlPartitioner {
+
+    @Test
+    public void testSamePartition(){
+
+        CrawlPartitioner partitioner = new CrawlPartitioner(Arrays.asList("crawl0", "crawl1", "crawl2"), 4);
+
+        // everything below the anchor goes with it, whichever way the path is written
+        int dept = partitioner.partitionFor("smb://server/share/dept/");
+        Assert.assertEquals(partitioner.partitionFor("smb://server/share/dept"), dept);
+        Assert.assertEquals(partitioner.partitionFor("smb://server/share/dept/a/b/c"), dept);
+
+        int local = partitioner.partitionFor("file:///data/projects/a/b");
+        Assert.assertEquals(partitioner.partitionFor("/data/projects/a/b/c/d"), local);
+
+        int windows = partitioner.partitionFor("C:\\data\\projects\\a");
+        Assert.assertEquals(partitioner.partitionFor("file://C:/data/projects/a/b"), windows);
+
+        Assert.assertEquals(partitioner.queueFor("smb://server/share/dept/x"), "crawl" + dept);
+    }
+
+    @Test
+    public void testSpreadAndMove(){
+
+        CrawlPartitioner three = new CrawlPartitioner(Arrays.asList("crawl0", "crawl1", "crawl2"), 4);
+        CrawlPartitioner four = new CrawlPartitioner(Arrays.asList("crawl0", "crawl1", "crawl2", "crawl3"), 4);
+
+        int folders = 30000;
+        int[] counts = new int[3];
+        int moved = 0;
+        for (int i = 0; i < folders; i++){
+            String folder = "smb://server/share/dept" + i + "/sub";
+            int before = three.partitionFor(folder);
+            int after = four.partitionFor(folder);
+            counts[before]++;
+            if (before != after){
+                moved++;
+                Assert.assertEquals(after, 3); // folders only move to the new node
+            }
+        }
+        for (int count : counts){
+            Assert.assertTrue(count > folders / 3 * 0.8 && count < folders / 3 * 1.2, "uneven spread " + Arrays.toString(counts));
+        }
+        Assert.assertTrue(moved < folders * 0.35, "too many folders moved : " + moved);
+    }
+
+}
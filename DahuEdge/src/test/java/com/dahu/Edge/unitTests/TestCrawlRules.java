@@ -0,0 +1,77 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.plugins.edge.walkers.CrawlRules;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestCrawlRules {
+
+    Logger logger = DEFLogManager.getLogger("TestCrawlRules", Level.DEBUG);
+
+    @Test
+    public void testExcludeFiles(){
+        // same rules as the LocalFiles test config
+        CrawlRules rules = new CrawlRules(new ArrayList<>(), Arrays.asList("DS_Store","not"),
+                Arrays.asList(".*~.*","dir0-0",".*snapshot.*",".*/folder2exclude",".*/notme.txt"), logger);
+
+        Assert.assertTrue(rules.accept("/crawldocs/folder2add/addme.txt"));
+        Assert.assertTrue(rules.accept("/crawldocs/folder2add/"));
+        Assert.assertFalse(rules.accept("/crawldocs/folder2exclude/"));
+        Assert.assertFalse(rules.accept("/crawldocs/folder2add/notme.txt"));
+        Assert.assertFalse(rules.accept("/crawldocs/folder2add/subfolder2add/~exclude.txt"));
+        Assert.assertFalse(rules.accept("/crawldocs/folder2add/addme.not"));
+
+        // decisions are remembered, and still right after they are cleared
+        Assert.assertFalse(rules.accept("/crawldocs/folder2add/notme.txt"));
+        rules.clearDecisions();
+        Assert.assertFalse(rules.accept("/crawldocs/folder2add/notme.txt"));
+        Assert.assertTrue(rules.accept("/crawldocs/folder2add/addme.txt"));
+    }
+
+    @Test
+    public void testCombinedPatternsMatchIndividualPatterns(){
+        List<String> excludes = Arrays.asList(".*\\.ds_store",".*\\.DS_Store",".*\\.exists",".*/tmp/.*",".*\\.bak");
+        CrawlRules many = new CrawlRules(null, null, excludes, logger); // combined into one regex
+        CrawlRules withBackReference = new CrawlRules(null, null, Arrays.asList(".*\\.ds_store",".*\\.DS_Store",".*\\.exists",".*/tmp/.*",".*\\.bak",".*/(a)\\1\\..*"), logger);
+        CrawlRules few = new CrawlRules(null, null, excludes.subList(0,3), logger);
+
+        for (CrawlRules rules : Arrays.asList(many, withBackReference)) {
+            Assert.assertFalse(rules.acceptByFileName("/share/folder/.DS_Store"));
+            Assert.assertFalse(rules.acceptByFileName("/share/tmp/file.txt"));
+            Assert.assertFalse(rules.acceptByFileName("/share/folder/file.bak"));
+            Assert.assertTrue(rules.acceptByFileName("/share/folder/file.txt"));
+            Assert.assertTrue(rules.acceptByFileName("/share/folder/file.bakery"));
+        }
+        Assert.assertFalse(withBackReference.acceptByFileName("/share/folder/aa.txt"));
+        Assert.assertTrue(many.acceptByFileName("/share/folder/aa.txt"));
+
+        Assert.assertFalse(few.acceptByFileName("/share/folder/marker.exists"));
+        Assert.assertTrue(few.acceptByFileName("/share/tmp/file.txt"));
+    }
+
+    @Test
+    public void testFileTypes(){
+        CrawlRules rules = new CrawlRules(Arrays.asList("doc","pdf"), Arrays.asList("pdf"), null, logger);
+        Assert.assertTrue(rules.acceptByFileType("/share/report.doc"));
+        Assert.assertFalse(rules.acceptByFileType("/share/report.pdf"));
+        Assert.assertFalse(rules.acceptByFileType("/share/report.xls"));
+        Assert.assertTrue(rules.acceptByFileType("/share/README"));
+    }
+}
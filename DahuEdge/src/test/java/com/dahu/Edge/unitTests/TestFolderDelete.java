@@ -0,0 +1,51 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.document.DEFFileDocument;
+import com.dahu.core.document.DOCUMENT_CONSTANTS;
+import com.dahu.core.interfaces.iDocument;
+import com.dahu.plugins.edge.walkers.CrawlMessage;
+import com.dahu.plugins.edge.walkers.UniversalFileSysWalker;
+import com.dahu.plugins.edge.walkers.WALKER_CONSTANTS;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestFolderDelete {
+
+    @Test
+    public void testDeleteIdMatchesInsertId() throws Exception {
+
+        File dir = Files.createTempDirectory("deleted").toFile().getAbsoluteFile();
+        File sub = new File(dir, "sub");
+        Assert.assertTrue(sub.mkdir());
+        Files.write(new File(sub, "a.txt").toPath(), "hello".getBytes());
+
+        // the crate holds a local Linux folder without its leading "/"
+        String cratePath = dir.getPath().substring(1);
+
+        // a file is indexed with the id of the document the walker makes for it, from the folder's crate path
+        File folder = new File(CrawlMessage.toFileSysPath(cratePath));
+        String insertId = new DEFFileDocument(new File(new File(folder, "sub"), "a.txt"), "TestFolderDelete").getId();
+
+        iDocument delete = UniversalFileSysWalker.getFolderDelete(cratePath, "TestFolderDelete");
+        Assert.assertEquals(delete.getAction(), DOCUMENT_CONSTANTS.ACTION_DELETE);
+        Assert.assertEquals(delete.getFieldValue(WALKER_CONSTANTS.FIELDNAME_DELETE_SCOPE), WALKER_CONSTANTS.DELETE_SCOPE_FOLDER);
+
+        // Vector deletes every id starting with the folder id and a separator
+        Assert.assertEquals(delete.getId(), dir.getPath());
+        Assert.assertTrue(insertId.startsWith(delete.getId() + "/"), insertId + " is not under " + delete.getId());
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.document.DEFFileDocument;
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.plugins.edge.walkers.FolderEntry;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestFolderEntry {
+
+    Logger logger = DEFLogManager.getLogger("TestFolderEntry", Level.DEBUG);
+
+    @Test
+    public void testDanglingLinkIsKept() throws Exception {
+
+        File dir = Files.createTempDirectory("entries").toFile();
+        Files.write(new File(dir, "a.txt").toPath(), "hello".getBytes());
+        Files.createSymbolicLink(new File(dir, "gone").toPath(), new File(dir, "nothing-here").toPath());
+
+        List<FolderEntry> children = FolderEntry.of(new DEFFileDocument(dir, "TestFolderEntry"), logger).listChildren();
+        Map<String,FolderEntry> byName = new HashMap<>();
+        for (FolderEntry child : children){
+            byName.put(child.getName(), child);
+        }
+        Assert.assertEquals(byName.size(), 2);
+
+        Assert.assertTrue(byName.get("a.txt").isFile());
+        Assert.assertFalse(byName.get("a.txt").isUnreadable());
+
+        // listed, so a refresh does not take it for a file that has gone, but not something we can crawl
+        FolderEntry link = byName.get("gone");
+        Assert.assertTrue(link.isUnreadable());
+        Assert.assertNotNull(link.getReadError());
+        Assert.assertFalse(link.isFile());
+        Assert.assertFalse(link.isDir());
+    }
+
+}
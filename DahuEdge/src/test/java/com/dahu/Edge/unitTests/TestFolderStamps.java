@@ -0,0 +1,119 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.plugins.edge.walkers.storage.FolderStamps;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestFolderStamps {
+
+    Logger logger = DEFLogManager.getLogger("TestFolderStamps", Level.DEBUG);
+
+    @Test
+    public void testPutGetRemove(){
+
+        FolderStamps stamps = new FolderStamps();
+        Assert.assertNull(stamps.get("smb://server/share/folder1"));
+
+        stamps.put("smb://server/share/folder1", 1571133600000L, 1571133700000L);
+        stamps.put("C:\\data\\folder2", 1571133800000L, 1571133900000L);
+
+        long[] stamp = stamps.get("smb://server/share/folder1/"); // same folder, however the path is written
+        Assert.assertNotNull(stamp);
+        Assert.assertEquals(stamp[0], 1571133600000L);
+        Assert.assertEquals(stamp[1], 1571133700000L);
+        Assert.assertEquals(stamps.get("C:/data/folder2")[0], 1571133800000L);
+
+        // enough to grow the table several times, then remove every other one
+        for (int i = 0; i < 20000; i++){
+            stamps.put("C:/data/big/folder" + i, i, i + 1);
+        }
+        for (int i = 0; i < 20000; i += 2){
+            stamps.remove("C:/data/big/folder" + i);
+        }
+        Assert.assertEquals(stamps.size(), 10002);
+        for (int i = 0; i < 20000; i++){
+            if (i % 2 == 0){
+                Assert.assertNull(stamps.get("C:/data/big/folder" + i));
+            } else {
+                Assert.assertEquals(stamps.get("C:/data/big/folder" + i)[0], i);
+            }
+        }
+    }
+
+    @Test
+    public void testChangedFolders() throws IOException {
+
+        FolderStamps stamps = new FolderStamps();
+        stamps.put("C:/data/hot", 100, 1000, true);
+        stamps.put("C:/data/cold", 100, 1000, false);
+        stamps.put("C:/data/quiet", 100, 500, true);
+        Assert.assertEquals(stamps.get("C:/data/hot")[2], 1000);
+        Assert.assertEquals(stamps.get("C:/data/cold")[2], 0);
+
+        File dir = Files.createTempDirectory("stamps").toFile();
+        File stampsFile = new File(dir, "crate.folders");
+        stamps.save(stampsFile);
+        FolderStamps loaded = new FolderStamps();
+        loaded.load(stampsFile, logger);
+
+        // only folders that changed are visited - forget the quiet one
+        List<String> visited = new ArrayList<>();
+        loaded.forEachChanged((path, listed, changed) -> {
+            visited.add(path);
+            return ! path.endsWith("quiet");
+        });
+        Collections.sort(visited);
+        Assert.assertEquals(visited, Arrays.asList("C:/data/hot", "C:/data/quiet"));
+
+        visited.clear();
+        loaded.forEachChanged((path, listed, changed) -> visited.add(path));
+        Assert.assertEquals(visited, Collections.singletonList("C:/data/hot"));
+        Assert.assertNotNull(loaded.get("C:/data/quiet")); // still stamped, just not held by path
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+
+        File dir = Files.createTempDirectory("stamps").toFile();
+        File stampsFile = new File(dir, "crate.folders");
+
+        FolderStamps stamps = new FolderStamps();
+        for (int i = 0; i < 1000; i++){
+            stamps.put("smb://server/share/folder" + i, i, 2000 + i);
+        }
+        stamps.save(stampsFile);
+
+        FolderStamps loaded = new FolderStamps();
+        loaded.load(stampsFile, logger);
+        Assert.assertEquals(loaded.size(), 1000);
+        Assert.assertEquals(loaded.get("smb://server/share/folder999")[1], 2999);
+
+        // an unreadable file leaves us with no stamps, so every folder is listed again
+        Files.write(stampsFile.toPath(), new byte[]{1, 2, 3});
+        FolderStamps broken = new FolderStamps();
+        broken.load(stampsFile, logger);
+        Assert.assertEquals(broken.size(), 0);
+    }
+
+}
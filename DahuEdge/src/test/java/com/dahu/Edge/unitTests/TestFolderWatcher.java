@@ -0,0 +1,181 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.plugins.edge.walkers.FolderWatcher;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestFolderWatcher {
+
+    Logger logger = DEFLogManager.getLogger("TestFolderWatcher", Level.DEBUG);
+
+    private static final long SETTLE_MILLIS = 300;
+
+    // a folder handed to the walker, and when
+    private static class Changed {
+        final String folder;
+        final boolean isFolderOnly;
+        final long at = System.currentTimeMillis();
+
+        Changed(String _folder, boolean _isFolderOnly){
+            folder = _folder;
+            isFolderOnly = _isFolderOnly;
+        }
+    }
+
+    // give the watcher time to register the folders before we change them
+    private static void waitForRegistration() throws InterruptedException {
+        Thread.sleep(SETTLE_MILLIS * 2);
+    }
+
+    @Test
+    public void testCreateModifyDelete() throws Exception {
+
+        File dir = Files.createTempDirectory("watched").toFile();
+        BlockingQueue<Changed> handed = new LinkedBlockingQueue<>();
+        FolderWatcher watcher = FolderWatcher.startWatching("TestWatchChanges", Collections.singletonList(dir.getPath()), SETTLE_MILLIS, (folder, isFolderOnly) -> handed.add(new Changed(folder, isFolderOnly)), () -> false, logger);
+        try {
+            waitForRegistration();
+
+            // create
+            File file = new File(dir, "a.txt");
+            Files.write(file.toPath(), "hello".getBytes());
+            Changed created = handed.poll(SETTLE_MILLIS * 20, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(created);
+            Assert.assertEquals(created.folder, dir.getPath());
+            Assert.assertTrue(created.isFolderOnly);
+
+            // modify
+            Files.write(file.toPath(), "hello again".getBytes());
+            Changed modified = handed.poll(SETTLE_MILLIS * 20, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(modified);
+            Assert.assertEquals(modified.folder, dir.getPath());
+
+            // delete
+            Assert.assertTrue(file.delete());
+            Changed deleted = handed.poll(SETTLE_MILLIS * 20, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(deleted);
+            Assert.assertEquals(deleted.folder, dir.getPath());
+
+            // a new folder is watched too - the change inside it is handed over as that folder
+            File sub = new File(dir, "sub");
+            Assert.assertTrue(sub.mkdir());
+            Changed parent = handed.poll(SETTLE_MILLIS * 20, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(parent);
+            Assert.assertEquals(parent.folder, dir.getPath());
+            Files.write(new File(sub, "b.txt").toPath(), "hello".getBytes());
+            Changed inSub = handed.poll(SETTLE_MILLIS * 20, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(inSub);
+            Assert.assertEquals(inSub.folder, sub.getPath());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testSettleWindow() throws Exception {
+
+        File dir = Files.createTempDirectory("watched").toFile();
+        BlockingQueue<Changed> handed = new LinkedBlockingQueue<>();
+        FolderWatcher watcher = FolderWatcher.startWatching("TestWatchSettle", Collections.singletonList(dir.getPath()), SETTLE_MILLIS, (folder, isFolderOnly) -> handed.add(new Changed(folder, isFolderOnly)), () -> false, logger);
+        try {
+            waitForRegistration();
+
+            // a burst of changes, each within the settle time of the one before
+            long lastChange = 0;
+            for (int i = 0; i < 5; i++){
+                Files.write(new File(dir, "copying.txt").toPath(), ("part " + i).getBytes());
+                lastChange = System.currentTimeMillis();
+                Thread.sleep(SETTLE_MILLIS / 3);
+            }
+
+            // handed over once, and not until it had stopped changing for the settle time
+            Changed settled = handed.poll(SETTLE_MILLIS * 20, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(settled);
+            Assert.assertEquals(settled.folder, dir.getPath());
+            Assert.assertTrue(settled.at - lastChange >= SETTLE_MILLIS, "handed over " + (settled.at - lastChange) + "ms after the last change");
+            Assert.assertNull(handed.poll(SETTLE_MILLIS * 3, TimeUnit.MILLISECONDS));
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testOverflowCrawlsRoots() throws Exception {
+
+        File dir = Files.createTempDirectory("watched").toFile();
+        BlockingQueue<Changed> handed = new LinkedBlockingQueue<>();
+        CountDownLatch release = new CountDownLatch(1);
+        FolderWatcher watcher = FolderWatcher.startWatching("TestWatchOverflow", Collections.singletonList(dir.getPath()), SETTLE_MILLIS, (folder, isFolderOnly) -> {
+            handed.add(new Changed(folder, isFolderOnly));
+            try {
+                release.await(); // hold the watcher up, so the events below pile up unread
+            } catch (InterruptedException ie){
+                Thread.currentThread().interrupt();
+            }
+        }, () -> false, logger);
+        try {
+            waitForRegistration();
+
+            Files.write(new File(dir, "first.txt").toPath(), "hello".getBytes());
+            Assert.assertNotNull(handed.poll(SETTLE_MILLIS * 20, TimeUnit.MILLISECONDS));
+
+            // more events than the WatchService keeps for one folder - it drops them and signals OVERFLOW
+            for (int i = 0; i < 1000; i++){
+                Files.write(new File(dir, "f" + i + ".txt").toPath(), "hello".getBytes());
+            }
+            release.countDown();
+
+            // we can't tell what changed, so the whole root is crawled, not just its own contents
+            Changed overflow = handed.poll(SETTLE_MILLIS * 40, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(overflow);
+            Assert.assertEquals(overflow.folder, dir.getPath());
+            Assert.assertFalse(overflow.isFolderOnly);
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testRestartReplacesWatcher() throws Exception {
+
+        File dir = Files.createTempDirectory("watched").toFile();
+        BlockingQueue<Changed> before = new LinkedBlockingQueue<>();
+        BlockingQueue<Changed> after = new LinkedBlockingQueue<>();
+        FolderWatcher first = FolderWatcher.startWatching("TestWatchRestart", Collections.singletonList(dir.getPath()), SETTLE_MILLIS, (folder, isFolderOnly) -> before.add(new Changed(folder, isFolderOnly)), () -> false, logger);
+
+        // the service restarts before the first watcher has noticed it was stopped
+        FolderWatcher second = FolderWatcher.startWatching("TestWatchRestart", Collections.singletonList(dir.getPath()), SETTLE_MILLIS, (folder, isFolderOnly) -> after.add(new Changed(folder, isFolderOnly)), () -> false, logger);
+        try {
+            Assert.assertNotSame(second, first);
+            waitForRegistration();
+
+            Files.write(new File(dir, "a.txt").toPath(), "hello".getBytes());
+            Assert.assertNotNull(after.poll(SETTLE_MILLIS * 20, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(before.isEmpty());
+        } finally {
+            second.close();
+        }
+    }
+
+}
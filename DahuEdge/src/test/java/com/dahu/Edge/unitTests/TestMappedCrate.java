@@ -0,0 +1,108 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.plugins.edge.walkers.storage.CrateFile;
+import com.dahu.plugins.edge.walkers.storage.CrateFolder;
+import com.dahu.plugins.edge.walkers.storage.MappedCrate;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestMappedCrate {
+
+    Logger logger = DEFLogManager.getLogger("TestMappedCrate", Level.DEBUG);
+
+    @Test
+    public void testInsertAndRemove() throws IOException {
+
+        File dir = Files.createTempDirectory("mapped").toFile();
+        MappedCrate crate = new MappedCrate(dir.getAbsolutePath() + "/crate", logger);
+
+        crate.insertBranch("smb://server/share/folder1/");
+        crate.insertLeaf("smb://server/share/folder1", "a.txt", 1571133600000L, 100);
+        crate.insertLeaf("smb://server/share/folder1", "b.txt", 1571133600000L, 200);
+        crate.insertLeaf("smb://server/share/folder1/sub", "c.txt", 1571133600000L, 300);
+        crate.insertLeaf("smb://server/share/folder1", "a.txt", 1571133700000L, 150); // update
+
+        CrateFolder folder = crate.getFolder("smb://server/share/folder1");
+        Assert.assertNotNull(folder);
+        Assert.assertEquals(folder.getFullPath(), "smb://server/share/folder1");
+        Assert.assertEquals(folder.getName(), "folder1");
+        Assert.assertEquals(folder.getFiles().size(), 2);
+        for (CrateFile file : folder.getFiles()){
+            if (file.getName().equals("a.txt")){
+                Assert.assertEquals(file.getLastModifiedDate(), 1571133700000L);
+                Assert.assertEquals(file.getSize(), 150);
+            }
+        }
+        Assert.assertTrue(folder.childExists("sub"));
+        Assert.assertFalse(folder.childExists("a.txt")); // a file, not a folder
+        Assert.assertEquals(folder.getChildren().size(), 1);
+        Assert.assertEquals(folder.moveToChildNode("sub").getFiles().get(0).getName(), "c.txt");
+
+        Assert.assertTrue(crate.exists("smb://server/share/folder1/b.txt"));
+        Assert.assertNull(crate.getFolder("smb://server/share/folder1/b.txt"));
+        Assert.assertNull(crate.getFolder("smb://server/share/nothere"));
+
+        crate.removeNode("smb://server/share/folder1/sub");
+        crate.removeNode("smb://server/share/folder1/b.txt");
+        Assert.assertFalse(crate.exists("smb://server/share/folder1/sub/c.txt"));
+        Assert.assertEquals(folder.getFiles().size(), 1);
+        Assert.assertEquals(folder.getChildren().size(), 0);
+
+        // removed nodes are re-used
+        crate.insertLeaf("smb://server/share/folder2", "d.txt", 1571133600000L, 400);
+        Assert.assertTrue(crate.exists("smb://server/share/folder2/d.txt"));
+
+        // local paths lose file:// and the leading / the same way as the Trie
+        crate.insertLeaf("file:///data/docs", "e.txt", 1571133600000L, 500);
+        Assert.assertEquals(crate.getFolder("/data/docs").getFullPath(), "data/docs");
+        crate.close();
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+
+        File dir = Files.createTempDirectory("mapped").toFile();
+        String path = dir.getAbsolutePath() + "/crate";
+
+        // enough entries to make both indexes grow
+        MappedCrate crate = new MappedCrate(path, logger);
+        for (int i = 0; i < 200; i++){
+            for (int j = 0; j < 200; j++){
+                crate.insertLeaf("C:/data/folder" + i, "file" + j + ".txt", i * 1000L + j, j);
+            }
+        }
+        crate.close();
+
+        crate = new MappedCrate(path, logger);
+        Assert.assertEquals(crate.getFolder("C:/data/folder199").getFiles().size(), 200);
+        Assert.assertEquals(crate.getFolder("C:/data").getChildren().size(), 200);
+        Assert.assertTrue(crate.exists("C:/data/folder17/file42.txt"));
+        crate.removeNode("C:/data/folder17");
+
+        // stop without closing - next open has to check the crate and rebuild the indexes
+        crate.force();
+        MappedCrate reopened = new MappedCrate(path, logger);
+        Assert.assertFalse(reopened.exists("C:/data/folder17"));
+        Assert.assertTrue(reopened.exists("C:/data/folder18/file42.txt"));
+        Assert.assertEquals(reopened.getFolder("C:/data").getChildren().size(), 199);
+        reopened.close();
+    }
+
+}
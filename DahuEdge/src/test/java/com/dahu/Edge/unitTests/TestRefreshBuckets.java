@@ -0,0 +1,71 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.plugins.edge.walkers.CrawlMessage;
+import com.dahu.plugins.edge.walkers.RefreshBuckets;
+import com.dahu.plugins.edge.walkers.storage.ProtectedTrie;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestRefreshBuckets {
+
+    Logger logger = DEFLogManager.getLogger("TestRefreshBuckets", Level.DEBUG);
+
+    @Test
+    public void testMessagesDue() throws IOException {
+
+        File dir = Files.createTempDirectory("buckets").toFile();
+        ProtectedTrie crate = new ProtectedTrie(dir.getAbsolutePath() + "/crate", logger);
+
+        long now = System.currentTimeMillis();
+        long twoHoursAgo = now - 2 * 3600 * 1000L;
+        // as the walker records them - the crate keeps local linux paths without their leading "/"
+        crate.setFolderStamp("data/docs", twoHoursAgo, twoHoursAgo, true);
+        crate.setFolderStamp("smb://server/share/hot", twoHoursAgo, twoHoursAgo, true);
+        crate.setFolderStamp("C:/data/hot", twoHoursAgo, twoHoursAgo, true);
+        crate.setFolderStamp("data/listed", now, now, true); // just listed - not due yet
+
+        List<String> messages = RefreshBuckets.getMessagesDue(crate, now);
+        Assert.assertEquals(messages.size(), 3);
+        Map<String,CrawlMessage> byId = new HashMap<>();
+        for (String message : messages){
+            CrawlMessage msg = CrawlMessage.fromJson(message);
+            Assert.assertTrue(msg.isFolderOnly());
+            Assert.assertEquals(msg.getLevel(), 0);
+            byId.put(msg.getId(), msg);
+        }
+        // a local folder goes on the queue as an absolute path, not relative to the working directory
+        Assert.assertTrue(byId.containsKey("/data/docs"), byId.keySet().toString());
+        Assert.assertTrue(byId.containsKey("smb://server/share/hot"), byId.keySet().toString());
+        Assert.assertTrue(byId.containsKey("C:/data/hot"), byId.keySet().toString());
+    }
+
+    @Test
+    public void testToFileSysPath(){
+
+        Assert.assertEquals(CrawlMessage.toFileSysPath("data/docs"), "/data/docs");
+        Assert.assertEquals(CrawlMessage.toFileSysPath("file:///data/docs/"), "/data/docs");
+        Assert.assertEquals(CrawlMessage.toFileSysPath("smb://server/share/folder/"), "smb://server/share/folder");
+        Assert.assertEquals(CrawlMessage.toFileSysPath("C:/data/folder"), "C:/data/folder");
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.plugins.edge.walkers.storage.SegmentDictionary;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestSegmentDictionary {
+
+    @Test
+    public void testIntern(){
+
+        SegmentDictionary dictionary = new SegmentDictionary(1000);
+        String name = dictionary.intern(new String("Thumbs.db"));
+        Assert.assertSame(dictionary.intern(new String("Thumbs.db")), name);
+        Assert.assertEquals(dictionary.size(), 1);
+    }
+
+    @Test
+    public void testCap(){
+
+        SegmentDictionary dictionary = new SegmentDictionary(64);
+        String kept = dictionary.intern(new String("desktop.ini"));
+
+        // held here, as a crate would hold them, so none of them can drop out
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 1000; i++){
+            names.add(dictionary.intern("file" + i + ".txt"));
+        }
+        Assert.assertTrue(dictionary.size() <= 64, dictionary.size() + " names held");
+
+        // full - a new name is used as it is, and names already in the dictionary are still shared
+        String extra = new String("file1000.txt");
+        Assert.assertSame(dictionary.intern(extra), extra);
+        Assert.assertSame(dictionary.intern(new String("desktop.ini")), kept);
+    }
+
+    @Test
+    public void testUnusedNamesDropOut() throws InterruptedException {
+
+        SegmentDictionary dictionary = new SegmentDictionary(64);
+        for (int i = 0; i < 1000; i++){
+            dictionary.intern("file" + i + ".txt"); // nothing holds on to these
+        }
+        // the dictionary does not stay full of names no crate uses
+        for (int i = 0; i < 50 && dictionary.size() > 0; i++){
+            System.gc();
+            Thread.sleep(20);
+        }
+        String name = new String("report.docx");
+        Assert.assertSame(dictionary.intern(name), name);
+        Assert.assertSame(dictionary.intern(new String("report.docx")), name);
+    }
+
+}
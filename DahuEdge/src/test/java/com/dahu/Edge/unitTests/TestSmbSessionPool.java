@@ -0,0 +1,89 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.plugins.edge.walkers.SmbSessionPool;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestSmbSessionPool {
+
+    @Test
+    public void testSharedAuth(){
+
+        SmbSessionPool pool = SmbSessionPool.getPool("TestSmbSessionPool", "DOMAIN", "user", "secret", 4);
+        Assert.assertSame(SmbSessionPool.getPool("TestSmbSessionPool", "DOMAIN", "user", "secret", 4), pool);
+        Assert.assertNotNull(pool.getAuth());
+        Assert.assertSame(pool.getAuth(), pool.getAuth());
+
+        Assert.assertNull(new SmbSessionPool(null, null, null, 4).getAuth());
+    }
+
+    @Test
+    public void testNewSettingsNewPool(){
+
+        SmbSessionPool pool = SmbSessionPool.getPool("TestSmbSessionPoolRestart", "DOMAIN", "user", "secret", 4);
+        // restarted with another user - the old credentials must not be kept
+        SmbSessionPool changed = SmbSessionPool.getPool("TestSmbSessionPoolRestart", "DOMAIN", "other", "secret", 4);
+        Assert.assertNotSame(changed, pool);
+        Assert.assertSame(SmbSessionPool.getPool("TestSmbSessionPoolRestart", "DOMAIN", "other", "secret", 4), changed);
+        Assert.assertNotSame(SmbSessionPool.getPool("TestSmbSessionPoolRestart", "DOMAIN", "other", "secret", 8), changed);
+    }
+
+    @Test
+    public void testRequestsPerServer() throws Exception {
+
+        SmbSessionPool pool = new SmbSessionPool("DOMAIN", "user", "secret", 3);
+        AtomicInteger inFlightA = new AtomicInteger();
+        AtomicInteger maxInFlightA = new AtomicInteger();
+        AtomicInteger inFlightB = new AtomicInteger();
+        AtomicInteger maxInFlightB = new AtomicInteger();
+
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 64; i++){
+            // same server, whichever share or case - so all of these share one limit
+            String url = i % 2 == 0 ? "smb://filerA/share" + i + "/folder" : "smb://FILERA/other/" + i;
+            results.add(threads.submit(() -> pool.call(url, () -> {
+                maxInFlightA.accumulateAndGet(inFlightA.incrementAndGet(), Math::max);
+                LockSupport.parkNanos(5000000);
+                inFlightA.decrementAndGet();
+                return url;
+            })));
+            String urlB = "smb://filerB/share/" + i;
+            results.add(threads.submit(() -> pool.call(urlB, () -> {
+                maxInFlightB.accumulateAndGet(inFlightB.incrementAndGet(), Math::max);
+                LockSupport.parkNanos(5000000);
+                inFlightB.decrementAndGet();
+                return urlB;
+            })));
+        }
+        for (Future<String> result : results){
+            Assert.assertNotNull(result.get());
+        }
+        threads.shutdown();
+        Assert.assertTrue(threads.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertTrue(maxInFlightA.get() <= 3, "too many requests to filerA at once : " + maxInFlightA.get());
+        Assert.assertTrue(maxInFlightB.get() <= 3, "too many requests to filerB at once : " + maxInFlightB.get());
+        Assert.assertTrue(maxInFlightA.get() + maxInFlightB.get() > 3, "servers should not share a limit");
+    }
+
+}
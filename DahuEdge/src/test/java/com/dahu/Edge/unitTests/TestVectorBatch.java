@@ -0,0 +1,65 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.plugins.edge.walkers.VectorBatch;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestVectorBatch {
+
+    @Test
+    public void testBatchBySize() throws IOException {
+
+        VectorBatch batch = new VectorBatch(3, 60000);
+        Assert.assertTrue(batch.isEnabled());
+        Assert.assertNull(batch.drain());
+
+        Assert.assertFalse(batch.add("{\"id\":\"/crawldocs/a.txt\",\"action\":\"INSERT\"}"));
+        Assert.assertFalse(batch.add("{\"id\":\"/crawldocs/b.txt\",\"action\":\"INSERT\"}"));
+        Assert.assertTrue(batch.add("{\"id\":\"/crawldocs/c.txt\",\"action\":\"DELETE\"}"));
+
+        JsonNode envelope = new ObjectMapper().readTree(batch.drain());
+        Assert.assertEquals(envelope.get(VectorBatch.FIELD_BATCH).getIntValue(), 3);
+        Assert.assertEquals(envelope.get(VectorBatch.FIELD_DOCUMENTS).size(), 3);
+        Assert.assertEquals(envelope.get(VectorBatch.FIELD_DOCUMENTS).get(0).get("id").getTextValue(), "/crawldocs/a.txt");
+        Assert.assertEquals(envelope.get(VectorBatch.FIELD_DOCUMENTS).get(2).get("action").getTextValue(), "DELETE");
+
+        // drained - the next envelope only holds documents added after the drain
+        Assert.assertTrue(batch.isEmpty());
+        batch.add("{\"id\":\"/crawldocs/d.txt\"}");
+        envelope = new ObjectMapper().readTree(batch.drain());
+        Assert.assertEquals(envelope.get(VectorBatch.FIELD_DOCUMENTS).size(), 1);
+        Assert.assertEquals(envelope.get(VectorBatch.FIELD_DOCUMENTS).get(0).get("id").getTextValue(), "/crawldocs/d.txt");
+    }
+
+    @Test
+    public void testBatchByTime() throws InterruptedException {
+
+        VectorBatch batch = new VectorBatch(1000, 50);
+        Assert.assertFalse(batch.add("{\"id\":\"/crawldocs/a.txt\"}"));
+        Assert.assertFalse(batch.isDue());
+        Thread.sleep(100);
+        Assert.assertTrue(batch.isDue());
+        Assert.assertTrue(batch.add("{\"id\":\"/crawldocs/b.txt\"}"));
+    }
+
+    @Test
+    public void testBatchingOff(){
+        Assert.assertFalse(new VectorBatch(1, 1000).isEnabled());
+        Assert.assertFalse(new VectorBatch(0, 1000).isEnabled());
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.core.logging.DEFLogManager;
+import com.dahu.plugins.edge.walkers.VectorPoster;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestVectorPoster {
+
+    Logger logger = DEFLogManager.getLogger("TestVectorPoster", Level.DEBUG);
+
+    @Test
+    public void testPostInOrder() throws IOException {
+
+        File spillFile = new File(Files.createTempDirectory("spill").toFile(), "walker-1.spill");
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        VectorPoster poster = new VectorPoster("TestVectorPoster", 10, spillFile, message -> sent.add(message), logger);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++){
+            poster.post("doc" + i);
+            expected.add("doc" + i);
+        }
+        poster.flush();
+        Assert.assertEquals(sent, expected);
+        Assert.assertFalse(poster.hasSpilled());
+        poster.close();
+    }
+
+    @Test
+    public void testSpillWhileBrokerDown() throws Exception {
+
+        File spillFile = new File(Files.createTempDirectory("spill").toFile(), "walker-1.spill");
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean isBrokerUp = new AtomicBoolean(true);
+        VectorPoster poster = new VectorPoster("TestVectorPoster", 10, spillFile, message -> isBrokerUp.get() && sent.add(message), logger);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++){
+            if (i == 20){
+                poster.flush();
+                isBrokerUp.set(false);
+            }
+            if (i == 40){
+                poster.flush();
+                isBrokerUp.set(true); // messages from now on must wait behind the ones in the spill file
+            }
+            poster.post("doc" + i);
+            expected.add("doc" + i);
+        }
+        poster.flush();
+        Assert.assertTrue(spillFile.length() > 0);
+
+        // the poster tries the spill file again every few seconds
+        long giveUp = System.currentTimeMillis() + 20000;
+        while (sent.size() < expected.size() && System.currentTimeMillis() < giveUp){
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(sent, expected);
+        Assert.assertFalse(poster.hasSpilled());
+        Assert.assertEquals(spillFile.length(), 0);
+        poster.close();
+    }
+
+    @Test
+    public void testSpillSurvivesRestart() throws Exception {
+
+        File spillFile = new File(Files.createTempDirectory("spill").toFile(), "walker-1.spill");
+        VectorPoster down = new VectorPoster("TestVectorPoster", 10, spillFile, message -> false, logger);
+        for (int i = 0; i < 30; i++){
+            down.post("doc \u00e9 " + i);
+        }
+        down.close();
+        Assert.assertTrue(down.hasSpilled());
+
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        VectorPoster up = new VectorPoster("TestVectorPoster", 10, spillFile, message -> sent.add(message), logger);
+        long giveUp = System.currentTimeMillis() + 10000;
+        while (sent.size() < 30 && System.currentTimeMillis() < giveUp){
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(sent.size(), 30);
+        Assert.assertEquals(sent.get(29), "doc \u00e9 29");
+        up.close();
+    }
+
+    @Test
+    public void testNewPosterTakesOverSpillFile() throws Exception {
+
+        File spillFile = new File(Files.createTempDirectory("spill").toFile(), "walker-1.spill");
+        // still running from before a restart, with a session that no longer works
+        VectorPoster old = new VectorPoster("TestVectorPoster", 10, spillFile, message -> false, logger);
+        for (int i = 0; i < 30; i++){
+            old.post("doc" + i);
+        }
+
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        VectorPoster poster = new VectorPoster("TestVectorPoster", 10, spillFile, message -> sent.add(message), logger);
+        for (int i = 30; i < 40; i++){
+            poster.post("doc" + i);
+        }
+        long giveUp = System.currentTimeMillis() + 10000;
+        while (sent.size() < 40 && System.currentTimeMillis() < giveUp){
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(sent.size(), 40);
+        Assert.assertEquals(sent.get(0), "doc0");
+        Assert.assertEquals(sent.get(39), "doc39");
+        old.close(); // already closed by the new poster - does nothing
+        poster.close();
+    }
+
+    @Test
+    public void testTornSpillFile() throws Exception {
+
+        // two whole messages, then one we stopped part way through writing
+        File spillFile = new File(Files.createTempDirectory("spill").toFile(), "walker-1.spill");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(spillFile))){
+            for (String message : new String[]{"doc0", "doc1"}){
+                byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(100);
+            out.write("doc2".getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        VectorPoster poster = new VectorPoster("TestVectorPoster", 10, spillFile, message -> sent.add(message), logger);
+        Assert.assertEquals(spillFile.length(), 16); // cut back to the whole messages before it sends anything
+        poster.post("doc3");
+        long giveUp = System.currentTimeMillis() + 10000;
+        while (sent.size() < 3 && System.currentTimeMillis() < giveUp){
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(sent, Arrays.asList("doc0", "doc1", "doc3"));
+        poster.close();
+        Assert.assertEquals(spillFile.length(), 0);
+    }
+
+    @Test
+    public void testBadLengthInSpillFile() throws Exception {
+
+        // a length no message could have - must not be read as one
+        File spillFile = new File(Files.createTempDirectory("spill").toFile(), "walker-1.spill");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(spillFile))){
+            out.writeInt(-1);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        VectorPoster poster = new VectorPoster("TestVectorPoster", 10, spillFile, message -> sent.add(message), logger);
+        Assert.assertEquals(spillFile.length(), 0);
+        poster.post("doc0");
+        poster.flush();
+        Assert.assertEquals(sent, Collections.singletonList("doc0"));
+        poster.close();
+    }
+
+}
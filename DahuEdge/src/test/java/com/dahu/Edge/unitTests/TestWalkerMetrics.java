@@ -0,0 +1,95 @@
+package com.dahu.Edge.unitTests;
+
+import com.dahu.plugins.edge.walkers.WalkerMetrics;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestWalkerMetrics {
+
+    @Test
+    public void testTimer(){
+
+        WalkerMetrics.Timer timer = new WalkerMetrics.Timer();
+        Assert.assertEquals(timer.getPercentile(0.95), 0);
+        for (int i = 0; i < 90; i++){
+            timer.record(1000); // 1ms
+        }
+        for (int i = 0; i < 10; i++){
+            timer.record(200000); // 200ms
+        }
+        Assert.assertEquals(timer.getCount(), 100);
+        Assert.assertEquals(timer.getMaxMicros(), 200000);
+        Assert.assertEquals(timer.getMeanMicros(), 20900.0, 0.001);
+        // within a factor of 2, and never above the max
+        Assert.assertTrue(timer.getPercentile(0.5) >= 1000 && timer.getPercentile(0.5) < 2000);
+        Assert.assertTrue(timer.getPercentile(0.95) >= 200000 && timer.getPercentile(0.95) <= 200000);
+    }
+
+    @Test
+    public void testCountersRootsAndDump() throws IOException {
+
+        Object serviceStart = new Object();
+        WalkerMetrics metrics = WalkerMetrics.getMetrics("TestWalkerMetrics", serviceStart);
+        Assert.assertSame(WalkerMetrics.getMetrics("TestWalkerMetrics", serviceStart), metrics);
+        Assert.assertEquals(metrics.getSummary(), "");
+
+        metrics.setRoots(Arrays.asList("smb://server/share/", "smb://server/share/archive", "file:///data"));
+        long start = System.nanoTime();
+        metrics.folderListed("smb://server/share/projects/a", "smb://server/share", Collections.emptyList(), start);
+        metrics.folderListed("smb://server/share/archive/2010", "smb://server/share", Collections.emptyList(), start);
+        metrics.folderListed("/data/x", "file://", Collections.emptyList(), start);
+        metrics.folderListed("/database/x", "file://", Collections.emptyList(), start); // not under /data
+        metrics.count(WalkerMetrics.INSERTS, 5);
+        metrics.count(WalkerMetrics.REJECTS);
+
+        Assert.assertEquals(metrics.getCount(WalkerMetrics.FOLDERS), 4);
+        Assert.assertEquals(metrics.getCount(WalkerMetrics.INSERTS), 5);
+        Assert.assertEquals(metrics.getCount(WalkerMetrics.UPDATES), 0);
+
+        metrics.tick();
+        Assert.assertTrue(metrics.getSummary().contains("inserts=5"), metrics.getSummary());
+        Assert.assertTrue(metrics.getSummary().contains("listings=4"), metrics.getSummary());
+
+        File dir = Files.createTempDirectory("metrics").toFile();
+        File metricsFile = new File(dir, "walker.json");
+        metrics.dump(metricsFile);
+        JsonNode json = new ObjectMapper().readTree(metricsFile);
+        Assert.assertEquals(json.get("counters").get("folders").getLongValue(), 4);
+        Assert.assertEquals(json.get("roots").get("smb://server/share").get("folders").getLongValue(), 1);
+        Assert.assertEquals(json.get("roots").get("smb://server/share/archive").get("folders").getLongValue(), 1);
+        Assert.assertEquals(json.get("roots").get("/data").get("folders").getLongValue(), 1);
+        Assert.assertEquals(json.get("timers").get("listing file://").get("count").getLongValue(), 2);
+        JsonNode buckets = json.get("timers").get("listing file://").get("buckets");
+        long inBuckets = 0;
+        for (int i = 0; i < buckets.size(); i++){
+            inBuckets += buckets.get(i).getLongValue();
+        }
+        Assert.assertEquals(inBuckets, 2);
+
+        // the service restarts - nothing is carried over, not even the roots it had before
+        WalkerMetrics restarted = WalkerMetrics.getMetrics("TestWalkerMetrics", new Object());
+        Assert.assertNotSame(restarted, metrics);
+        Assert.assertEquals(restarted.getCount(WalkerMetrics.FOLDERS), 0);
+        Assert.assertEquals(restarted.getTimer("listing file://").getCount(), 0);
+        Assert.assertEquals(restarted.toJson().get("roots").size(), 0);
+    }
+
+}
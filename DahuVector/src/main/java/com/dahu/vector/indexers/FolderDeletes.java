@@ -0,0 +1,61 @@
+package com.dahu.vector.indexers;
+
+import com.dahu.core.interfaces.iDocument;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * When a walker with delete_by_folder set finds a whole folder has gone, it sends one DELETE document for the folder
+ * rather than one per file under it. The document's id is the path to the folder, and it has a delete_scope field set
+ * to "folder" - every document whose id starts with that path, followed by a separator, is deleted. Only the Solr
+ * indexers handle these, so delete_by_folder is off unless a walker's config turns it on.
+ *
+ * The field name and value must match the ones the Edge walker sets - see WALKER_CONSTANTS in DahuEdge.
+ */
+
+public final class FolderDeletes {
+
+    public static final String FIELDNAME_DELETE_SCOPE = "delete_scope";
+    public static final String DELETE_SCOPE_FOLDER = "folder";
+
+    private FolderDeletes(){
+    }
+
+    /**
+     * @param _iDoc a DELETE document
+     * @return true if this deletes everything under a folder, rather than a single document
+     */
+    public static boolean isFolderDelete(iDocument _iDoc){
+        return DELETE_SCOPE_FOLDER.equalsIgnoreCase(_iDoc.getFieldValue(FIELDNAME_DELETE_SCOPE));
+    }
+
+    /**
+     * @param _folderId id of a folder, with or without a separator on the end
+     * @return what the id of every document under the folder starts with - the folder id followed by a separator, so
+     * deleting /data/a does not also delete /data/ab
+     */
+    public static String prefixOf(String _folderId){
+        if (_folderId.endsWith("/") || _folderId.endsWith("\\")){
+            return _folderId;
+        }
+        // ids of local Windows files use the Windows separator
+        return _folderId + (_folderId.indexOf('/') < 0 && _folderId.indexOf('\\') >= 0 ? "\\" : "/");
+    }
+
+    /**
+     * Build a Solr query for every document under a folder. The prefix query parser takes the rest of the query as
+     * it is, so nothing in the path needs escaping
+     * @param _idField name of the Solr id field
+     * @param _folderId id of the folder
+     * @return query to pass to deleteByQuery
+     */
+    public static String toSolrQuery(String _idField, String _folderId){
+        return "{!prefix f=" + _idField + "}" + prefixOf(_folderId);
+    }
+}
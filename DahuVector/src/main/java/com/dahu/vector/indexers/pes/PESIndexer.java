@@ -9,6 +9,7 @@ import com.dahu.core.logging.DEFLogManager;
 import com.dahu.core.utils.LogUtils;
 import com.dahu.def.exception.BadConfigurationException;
 import com.dahu.def.types.Component;
+import com.dahu.vector.indexers.FolderDeletes;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -105,7 +106,13 @@ public class PESIndexer extends AbstractTerminator {
         String status = null;
         if (_iDoc.getAction().equalsIgnoreCase(DOCUMENT_CONSTANTS.ACTION_DELETE)) {
             // put a message in the Push API Data Store for a client to see what happened
-            status = deleteDoc(_iDoc);
+            if (FolderDeletes.isFolderDelete(_iDoc)){
+                // the PES push API only deletes one file at a time - walkers sending to PES need delete_by_folder=false
+                logger.warn("PESIndexer cannot delete everything under a folder - set delete_by_folder to false in the walker. Folder " + _iDoc.getId() + " not deleted");
+                status = "Error: PES cannot delete a folder";
+            } else {
+                status = deleteDoc(_iDoc);
+            }
         } else if (_iDoc.getAction().equalsIgnoreCase(DOCUMENT_CONSTANTS.ACTION_UPDATE)) {
             // update the last mod
             status = insertDoc(_iDoc);
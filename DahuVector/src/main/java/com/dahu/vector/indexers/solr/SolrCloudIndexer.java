@@ -12,6 +12,7 @@ import com.dahu.def.config.CONFIG_CONSTANTS;
 import com.dahu.def.config.ServerConfig;
 import com.dahu.def.exception.BadConfigurationException;
 import com.dahu.def.types.Component;
+import com.dahu.vector.indexers.FolderDeletes;
 import org.apache.logging.log4j.Level;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.ConcurrentUpdateSolrClient;
@@ -166,7 +167,11 @@ public class SolrCloudIndexer extends AbstractTerminator {
         String status = null;
         if (_iDoc.getAction().equalsIgnoreCase(DOCUMENT_CONSTANTS.ACTION_DELETE)) {
             // put a message in the Push API Data Store for a client to see what happened
-            status = deleteDoc(_iDoc.getId());
+            if (FolderDeletes.isFolderDelete(_iDoc)){
+                status = deleteFolder(_iDoc.getId());
+            } else {
+                status = deleteDoc(_iDoc.getId());
+            }
         } else if (_iDoc.getAction().equalsIgnoreCase(DOCUMENT_CONSTANTS.ACTION_UPDATE)) {
             // update the last mod
             // put a message in the Push API Data Store for a client to see what happened
@@ -394,6 +399,29 @@ public class SolrCloudIndexer extends AbstractTerminator {
     }
 
 
+    /**
+     * Delete every document under a folder with one query, rather than one query per file
+     * @param _folderId id of the folder that has gone
+     * @return status for the Push API
+     */
+    private String deleteFolder(String _folderId){
+        if (this.solr != null) {
+            try {
+                solr.deleteByQuery(FolderDeletes.toSolrQuery(SOLRFIELD_ID, _folderId));
+                return "success";
+            } catch (IOException ioe) {
+                logger.warn("IO Failure from Solr deleting folder " + _folderId + " :: " + ioe.getLocalizedMessage());
+                return "IOError";
+            } catch (SolrServerException sse) {
+                logger.warn("Solr Error deleting folder " + _folderId + " :: " + sse.getLocalizedMessage());
+                return "SolrError";
+            }
+        } else {
+            logger.warn("Solr has not been initialized - failed to delete documents under folder : " + _folderId);
+            return "SolrIndexerError";
+        }
+    }
+
     public void stopIndexer() {
         if (solr != null){
                 solr.close();
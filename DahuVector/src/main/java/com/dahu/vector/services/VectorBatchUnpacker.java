@@ -0,0 +1,202 @@
+package com.dahu.vector.services;
+
+import com.dahu.core.interfaces.iDocument;
+import com.dahu.def.annotations.DEFAnnotationMT;
+import com.dahu.def.exception.BadConfigurationException;
+import com.dahu.def.exception.MQException;
+import com.dahu.def.plugins.ListeningService;
+import com.dahu.def.types.MQueue;
+import com.dahu.def.types.Service;
+import org.apache.logging.log4j.Level;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import javax.jms.JMSException;
+import javax.xml.bind.JAXBException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ *
+ * Sits between a walker and a Vector pipeline. Edge walkers can be configured (vector_batch_size) to send many
+ * documents in one envelope message :
+ *
+ *  { "documents":[ {doc1}, {doc2}, ... ], "def_batch":2 }
+ *
+ * This service reads from its input queue, and posts each document in the envelope to its output queue as a
+ * message of its own, so the Vector pipeline sees exactly what it would have seen if the walker had not batched.
+ * Any message that is not an envelope is passed on unchanged.
+ *
+ * An envelope is never dropped part way through. If a document cannot be posted, even on a new session, we wait and
+ * try again from that document, for as long as the service is running. If the service stops first, processMessage
+ * throws, so the envelope is not acknowledged and comes back when the service starts again - the documents already
+ * posted are posted twice, which Vector handles, but none are lost.
+ *
+ * Config needs ONE input queue (the walker output queue) and ONE output queue (the Vector input queue)
+ */
+
+@DEFAnnotationMT(isMultiThreaded="true")
+public class VectorBatchUnpacker extends ListeningService {
+
+    // field names in the envelope - must match com.dahu.plugins.edge.walkers.VectorBatch in DahuEdge
+    public static final String FIELD_BATCH = "def_batch";
+    public static final String FIELD_DOCUMENTS = "documents";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final long RETRY_MILLIS = 5000; // how long we wait before trying the Vector queue again
+
+    /**
+     * Posts one message to the Vector queue
+     */
+    public interface Poster {
+        /**
+         * @param _message message to post
+         * @return true if the message was posted, false if it could not be
+         */
+        boolean post(String _message);
+    }
+
+    private MQueue vectorQueue;
+    private MQueue.MQueueSession vectorQueueSession;
+
+    public VectorBatchUnpacker(Level _level, Service _service, int _threadNum) throws JAXBException, MQException, BadConfigurationException, JMSException {
+        super(_level, _service, _threadNum);
+
+        if (outputQueues.size() != 1){
+            throw new BadConfigurationException("VectorBatchUnpacker must have exactly ONE output queue for vector");
+        }
+        vectorQueue = this.getFirstOutputQueue();
+        if (null == vectorQueue){
+            throw new BadConfigurationException("Vector queue not defined - must be one output queue");
+        }
+        vectorQueueSession = vectorQueue.getSession(serviceName);
+        if (null == vectorQueueSession){
+            throw new BadConfigurationException("Unable to start service because no session exists on vector queue");
+        }
+        logger.trace("VectorBatchUnpacker posting to " + vectorQueue.getQueueName());
+    }
+
+
+    @Override
+    public void processMessage(String _message){
+
+        List<String> docs = unpack(_message);
+        if (null == docs){
+            // not a batch - pass it on as it is
+            docs = Collections.singletonList(_message);
+        } else {
+            logger.debug("VectorBatchUnpacker unpacking batch of " + docs.size() + " documents");
+        }
+        postAll(docs, this::postMessageToVector, () -> serviceController.isInstanceShutdown(serviceName), RETRY_MILLIS);
+    }
+
+    @Override
+    public void processMessage(iDocument _iDoc){
+        postAll(Collections.singletonList(_iDoc.toJson()), this::postMessageToVector, () -> serviceController.isInstanceShutdown(serviceName), RETRY_MILLIS);
+    }
+
+    /**
+     * Post every document, in order. If one cannot be posted, wait and try again from that document
+     * @param _docs documents to post
+     * @param _poster posts one document
+     * @param _isStopped tells us when the service has been stopped
+     * @param _retryMillis how long to wait before trying again
+     * @throws IllegalStateException if the service stops before every document has been posted - so the message they
+     * came in is not acknowledged, and is delivered again
+     */
+    public static void postAll(List<String> _docs, Poster _poster, BooleanSupplier _isStopped, long _retryMillis){
+        int posted = 0;
+        while (posted < _docs.size()){
+            if (_poster.post(_docs.get(posted))){
+                posted++;
+                continue;
+            }
+            if (_isStopped.getAsBoolean()){
+                throw new IllegalStateException("Service stopped with " + (_docs.size() - posted) + " of " + _docs.size() + " documents not posted to Vector");
+            }
+            try {
+                Thread.sleep(_retryMillis);
+            } catch (InterruptedException ie){
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted with " + (_docs.size() - posted) + " of " + _docs.size() + " documents not posted to Vector");
+            }
+        }
+    }
+
+
+    /**
+     * Split a batch envelope into the documents it carries
+     * @param _message text message from the input queue
+     * @return each document in the envelope, as JSON, in the order they were added. Null if the message is not a batch envelope
+     */
+    public static List<String> unpack(String _message){
+
+        // cheap check before we parse - most messages that are not batches can be passed straight on
+        if (null == _message || _message.indexOf(FIELD_BATCH) < 0){
+            return null;
+        }
+
+        JsonNode msgNode;
+        try {
+            msgNode = mapper.readTree(_message);
+        } catch (IOException ioe){
+            return null;
+        }
+        if (null == msgNode || ! msgNode.has(FIELD_BATCH) || null == msgNode.get(FIELD_DOCUMENTS) || ! msgNode.get(FIELD_DOCUMENTS).isArray()){
+            return null;
+        }
+
+        JsonNode docsNode = msgNode.get(FIELD_DOCUMENTS);
+        List<String> docs = new ArrayList<>(docsNode.size());
+        for (JsonNode doc : docsNode){
+            if (doc.isTextual()){
+                docs.add(doc.getTextValue());
+            } else {
+                docs.add(doc.toString());
+            }
+        }
+        return docs;
+    }
+
+
+    /**
+     * Post a message on the Vector queue. If it fails, open a new session and try once more
+     * @param _message message for the Vector queue
+     * @return true if the message was posted
+     */
+    private boolean postMessageToVector(String _message){
+
+        boolean isPosted = false;
+        try {
+            isPosted = null != vectorQueueSession && vectorQueueSession.postTextMessage(_message);
+        } catch (MQException | JMSException e){
+            logger.debug("Failed to post message to Vector queue, trying a new session : " + e.getLocalizedMessage());
+        }
+
+        if (! isPosted){
+            try {
+                if (null != vectorQueueSession){
+                    vectorQueueSession.close();
+                }
+                vectorQueueSession = null;
+                vectorQueueSession = vectorQueue.getSession(serviceName);
+                isPosted = vectorQueueSession.postTextMessage(_message);
+            } catch (MQException | JMSException e){
+                logger.warn("Unable to post message to Vector queue : " + e.getLocalizedMessage() + " - will try again");
+            }
+        }
+        return isPosted;
+    }
+
+}
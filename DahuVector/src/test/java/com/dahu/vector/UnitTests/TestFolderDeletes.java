@@ -0,0 +1,47 @@
+package com.dahu.vector.UnitTests;
+
+import com.dahu.core.document.DEFDocument;
+import com.dahu.core.document.DOCUMENT_CONSTANTS;
+import com.dahu.core.interfaces.iDocument;
+import com.dahu.vector.indexers.FolderDeletes;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestFolderDeletes {
+
+    @Test
+    public void testFolderDelete(){
+
+        iDocument fileDelete = new DEFDocument("smb://server/share/projects/a/file.docx", "FS:walker");
+        fileDelete.setAction(DOCUMENT_CONSTANTS.ACTION_DELETE);
+        Assert.assertFalse(FolderDeletes.isFolderDelete(fileDelete));
+
+        iDocument folderDelete = new DEFDocument("smb://server/share/projects/a", "FS:walker");
+        folderDelete.setAction(DOCUMENT_CONSTANTS.ACTION_DELETE);
+        folderDelete.addField(FolderDeletes.FIELDNAME_DELETE_SCOPE, FolderDeletes.DELETE_SCOPE_FOLDER);
+        Assert.assertTrue(FolderDeletes.isFolderDelete(folderDelete));
+    }
+
+    @Test
+    public void testSolrQuery(){
+
+        // never matches a folder whose name just starts the same
+        Assert.assertEquals(FolderDeletes.prefixOf("/data/a"), "/data/a/");
+        Assert.assertEquals(FolderDeletes.prefixOf("/data/a/"), "/data/a/");
+        Assert.assertEquals(FolderDeletes.prefixOf("D:\\data\\a"), "D:\\data\\a\\");
+
+        // the prefix parser takes the rest of the query as it is - spaces, quotes and colons included
+        Assert.assertEquals(FolderDeletes.toSolrQuery("id", "smb://server/share/my \"old\" projects"), "{!prefix f=id}smb://server/share/my \"old\" projects/");
+    }
+
+}
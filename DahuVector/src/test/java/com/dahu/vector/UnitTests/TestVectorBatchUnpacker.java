@@ -0,0 +1,70 @@
+package com.dahu.vector.UnitTests;
+
+import com.dahu.vector.services.VectorBatchUnpacker;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by :
+ * Vince McNamara, Dahu
+ * vince@dahu.co.uk
+ * on 18/10/2026
+ * copyright Dahu Ltd 2026
+ * <p>
+ * Changed by :
+ */
+
+public class TestVectorBatchUnpacker {
+
+    @Test
+    public void testUnpack(){
+
+        String envelope = "{\"documents\":[{\"id\":\"/crawldocs/a.txt\",\"action\":\"INSERT\"},{\"id\":\"/crawldocs/b.txt\",\"action\":\"DELETE\"}],\"def_batch\":2}";
+        List<String> docs = VectorBatchUnpacker.unpack(envelope);
+        Assert.assertNotNull(docs);
+        Assert.assertTrue(docs.size() == 2);
+        Assert.assertTrue(docs.get(0).contains("/crawldocs/a.txt"));
+        Assert.assertTrue(docs.get(1).contains("DELETE"));
+
+        // a single document, even one that mentions the batch field, is not a batch
+        Assert.assertNull(VectorBatchUnpacker.unpack("{\"id\":\"/crawldocs/def_batch.txt\",\"action\":\"INSERT\"}"));
+        Assert.assertNull(VectorBatchUnpacker.unpack("{\"id\":\"/crawldocs/a.txt\"}"));
+        Assert.assertNull(VectorBatchUnpacker.unpack("not json def_batch"));
+        Assert.assertNull(VectorBatchUnpacker.unpack(null));
+    }
+
+    @Test
+    public void testPostAllRetries(){
+
+        // the queue fails twice on the second document - it is retried, and nothing is lost or posted twice
+        List<String> posted = new ArrayList<>();
+        AtomicInteger failures = new AtomicInteger(2);
+        VectorBatchUnpacker.postAll(Arrays.asList("doc0", "doc1", "doc2"), message -> {
+            if (message.equals("doc1") && failures.getAndDecrement() > 0){
+                return false;
+            }
+            return posted.add(message);
+        }, () -> false, 10);
+        Assert.assertEquals(posted, Arrays.asList("doc0", "doc1", "doc2"));
+    }
+
+    @Test
+    public void testPostAllStopped(){
+
+        // the service stops while the queue is down - the envelope must not be taken as done
+        List<String> posted = new ArrayList<>();
+        try {
+            VectorBatchUnpacker.postAll(Arrays.asList("doc0", "doc1"), message -> message.equals("doc0") && posted.add(message), () -> true, 10);
+            Assert.fail("envelope not fully posted");
+        } catch (IllegalStateException ise){
+            // expected
+        }
+        Assert.assertEquals(posted, Arrays.asList("doc0"));
+    }
+
+}